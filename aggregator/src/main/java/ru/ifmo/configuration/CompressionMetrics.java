@@ -0,0 +1,67 @@
+package ru.ifmo.configuration;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Per-queue byte counters for message compression, logged every {@code logInterval} messages.
+ */
+@Slf4j
+public class CompressionMetrics {
+
+    private final Map<String, QueueStats> outbound = new ConcurrentHashMap<>();
+    private final Map<String, QueueStats> inbound = new ConcurrentHashMap<>();
+    private final long logInterval;
+
+    public CompressionMetrics(long logInterval) {
+        this.logInterval = logInterval;
+    }
+
+    public void recordOutbound(String queue, int originalBytes, int wireBytes) {
+        record("outbound", outbound.computeIfAbsent(queue, k -> new QueueStats()), queue, originalBytes, wireBytes);
+    }
+
+    public void recordInbound(String queue, int originalBytes, int wireBytes) {
+        record("inbound", inbound.computeIfAbsent(queue, k -> new QueueStats()), queue, originalBytes, wireBytes);
+    }
+
+    public Map<String, String> summary() {
+        Map<String, String> summary = new TreeMap<>();
+        outbound.forEach((queue, stats) -> summary.put("outbound " + queue, stats.toString()));
+        inbound.forEach((queue, stats) -> summary.put("inbound " + queue, stats.toString()));
+        return summary;
+    }
+
+    private void record(String direction, QueueStats stats, String queue, int originalBytes, int wireBytes) {
+        stats.messages.increment();
+        if (wireBytes != originalBytes) {
+            stats.compressedMessages.increment();
+        }
+        stats.originalBytes.add(originalBytes);
+        stats.wireBytes.add(wireBytes);
+
+        if (logInterval > 0 && stats.messages.sum() % logInterval == 0) {
+            log.info("Compression {} {}: {}", direction, queue, stats);
+        }
+    }
+
+    private static class QueueStats {
+        private final LongAdder messages = new LongAdder();
+        private final LongAdder compressedMessages = new LongAdder();
+        private final LongAdder originalBytes = new LongAdder();
+        private final LongAdder wireBytes = new LongAdder();
+
+        @Override
+        public String toString() {
+            long original = originalBytes.sum();
+            long wire = wireBytes.sum();
+            return String.format("%d messages (%d compressed), %d -> %d bytes, %.1f%% saved",
+                    messages.sum(), compressedMessages.sum(), original, wire,
+                    original > 0 ? 100.0 * (original - wire) / original : 0.0);
+        }
+    }
+}
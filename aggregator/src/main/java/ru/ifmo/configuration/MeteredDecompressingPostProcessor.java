@@ -0,0 +1,28 @@
+package ru.ifmo.configuration;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.support.postprocessor.DelegatingDecompressingPostProcessor;
+
+/**
+ * Inflates received bodies according to their {@code content-encoding} header; uncompressed
+ * messages pass through untouched.
+ */
+public class MeteredDecompressingPostProcessor implements MessagePostProcessor {
+
+    private final DelegatingDecompressingPostProcessor decompressor = new DelegatingDecompressingPostProcessor();
+    private final CompressionMetrics metrics;
+
+    public MeteredDecompressingPostProcessor(CompressionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Message postProcessMessage(Message message) {
+        int wireBytes = message.getBody().length;
+        Message result = decompressor.postProcessMessage(message);
+        metrics.recordInbound(String.valueOf(message.getMessageProperties().getConsumerQueue()),
+                result.getBody().length, wireBytes);
+        return result;
+    }
+}
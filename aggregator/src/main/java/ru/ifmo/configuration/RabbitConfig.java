@@ -1,27 +1,64 @@
 package ru.ifmo.configuration;
 
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
-import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import ru.ifmo.configuration.WireCodecMessageConverter.WireCodec;
 
 @Configuration
 public class RabbitConfig {
 
-    public Jackson2JsonMessageConverter messageConverter() {
-        return new Jackson2JsonMessageConverter();
+    @Bean
+    public MessageConverter messageConverter(
+            @Value("${rabbitmq.codec:JSON}") WireCodec outboundCodec
+    ) {
+        return new WireCodecMessageConverter(outboundCodec);
+    }
+
+    @Bean
+    public CompressionMetrics compressionMetrics(
+            @Value("${rabbitmq.compression.metrics.log-interval:1000}") long logInterval
+    ) {
+        return new CompressionMetrics(logInterval);
     }
 
     @Bean
-    public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory) {
+    public RabbitTemplate rabbitTemplate(
+            ConnectionFactory connectionFactory,
+            MessageConverter messageConverter,
+            CompressionMetrics compressionMetrics,
+            @Value("${rabbitmq.compression.enabled:false}") boolean compressionEnabled,
+            @Value("${rabbitmq.compression.threshold:4096}") int compressionThreshold,
+            @Value("${rabbitmq.compression.level:1}") int compressionLevel
+    ) {
         RabbitTemplate template = new RabbitTemplate(connectionFactory);
-        template.setMessageConverter(messageConverter());
+        template.setMessageConverter(messageConverter);
+        if (compressionEnabled) {
+            template.setBeforePublishPostProcessors(
+                    new ThresholdDeflaterPostProcessor(compressionLevel, compressionThreshold, compressionMetrics));
+        }
         return template;
     }
 
+    @Bean
+    public SimpleRabbitListenerContainerFactory rabbitListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            CompressionMetrics compressionMetrics
+    ) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        // Compressed bodies are inflated before the message converter sees them
+        factory.setAfterReceivePostProcessors(new MeteredDecompressingPostProcessor(compressionMetrics));
+        return factory;
+    }
+
     @Bean
     public DirectExchange resultsExchange(
             @Value("${rabbitmq.results.exchange.name}") String exchangeName
@@ -0,0 +1,91 @@
+package ru.ifmo.configuration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.springframework.amqp.core.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Topology of the word count shuffle. Every shard gets its own durable queue, declared by every
+ * aggregator so that no partition is lost while the process owning the shard is not running yet.
+ */
+@Configuration
+@ConditionalOnExpression("${aggregation.shuffle.partitions:0} > 0")
+public class ShuffleConfig {
+
+    @Bean
+    public DirectExchange shuffleExchange(
+            @Value("${rabbitmq.shuffle.exchange.name}") String exchangeName
+    ) {
+        return new DirectExchange(exchangeName);
+    }
+
+    @Bean
+    public Declarables shardQueues(
+            DirectExchange shuffleExchange,
+            @Value("${rabbitmq.shuffle.queue.prefix}") String queuePrefix,
+            @Value("${aggregation.shuffle.partitions}") int partitions
+    ) {
+        List<Declarable> declarables = new ArrayList<>();
+        for (int p = 0; p < partitions; p++) {
+            Queue queue = new Queue(queuePrefix + p);
+            declarables.add(queue);
+            declarables.add(BindingBuilder.bind(queue).to(shuffleExchange).with(String.valueOf(p)));
+        }
+        return new Declarables(declarables);
+    }
+
+    @Bean
+    public Queue shardResultsQueue(
+            @Value("${rabbitmq.shuffle.results.queue.name}") String queueName
+    ) {
+        return new Queue(queueName);
+    }
+
+    /**
+     * Beans of a process that reduces at least one shard.
+     */
+    @Configuration
+    @ConditionalOnExpression("'${aggregation.shuffle.shards:all}' != 'none'")
+    public static class ReducerConfig {
+
+        @Bean
+        public String[] ownedShardQueues(
+                @Value("${rabbitmq.shuffle.queue.prefix}") String queuePrefix,
+                @Value("${aggregation.shuffle.partitions}") int partitions,
+                @Value("${aggregation.shuffle.shards:all}") String shards
+        ) {
+            IntStream owned = shards.isBlank() || shards.equals("all")
+                    ? IntStream.range(0, partitions)
+                    : Arrays.stream(shards.split(",")).map(String::trim).mapToInt(Integer::parseInt);
+            return owned.peek(p -> {
+                        if (p < 0 || p >= partitions) {
+                            throw new IllegalArgumentException("Shard " + p + " is out of range 0.." + (partitions - 1));
+                        }
+                    })
+                    .mapToObj(p -> queuePrefix + p)
+                    .toArray(String[]::new);
+        }
+
+        // Every reducer process needs the expected task counts, so each one gets its own copy of the session info
+        @Bean
+        public Queue reducerSessionInfoQueue() {
+            return new AnonymousQueue();
+        }
+
+        @Bean
+        public Binding reducerSessionInfoBinding(
+                Queue reducerSessionInfoQueue,
+                DirectExchange sessionInfoExchange,
+                @Value("${rabbitmq.session.routing.key}") String routingKey
+        ) {
+            return BindingBuilder.bind(reducerSessionInfoQueue).to(sessionInfoExchange).with(routingKey);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package ru.ifmo.configuration;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.AbstractMessageConverter;
+import org.springframework.amqp.support.converter.MessageConversionException;
+
+/**
+ * Writes messages with the configured codec and reads whichever codec the content-type header
+ * names, so JSON and Smile senders can be mixed while services are upgraded one by one.
+ * Messages without a known content type are read as JSON.
+ */
+public class WireCodecMessageConverter extends AbstractMessageConverter {
+
+    private static final String TYPE_ID_HEADER = "__TypeId__";
+
+    private final WireCodec outboundCodec;
+    private final ObjectMapper jsonMapper;
+    private final ObjectMapper smileMapper;
+
+    public WireCodecMessageConverter(WireCodec outboundCodec) {
+        this.outboundCodec = outboundCodec;
+        this.jsonMapper = configure(new ObjectMapper());
+        this.smileMapper = configure(new ObjectMapper(new SmileFactory()));
+    }
+
+    @Override
+    protected Message createMessage(Object object, MessageProperties messageProperties) {
+        try {
+            byte[] body = mapper(outboundCodec).writeValueAsBytes(object);
+            messageProperties.setContentType(outboundCodec.getContentType());
+            if (outboundCodec == WireCodec.JSON) {
+                messageProperties.setContentEncoding(StandardCharsets.UTF_8.name());
+            }
+            messageProperties.setContentLength(body.length);
+            // Kept for consumers that still use Jackson2JsonMessageConverter
+            messageProperties.setHeader(TYPE_ID_HEADER, object.getClass().getName());
+            return new Message(body, messageProperties);
+        } catch (IOException e) {
+            throw new MessageConversionException("Failed to encode " + object.getClass().getSimpleName()
+                    + " as " + outboundCodec, e);
+        }
+    }
+
+    @Override
+    public Object fromMessage(Message message) throws MessageConversionException {
+        MessageProperties properties = message.getMessageProperties();
+        WireCodec codec = WireCodec.forContentType(properties.getContentType());
+        Type targetType = properties.getInferredArgumentType();
+
+        if (targetType == null || targetType == byte[].class) {
+            return message.getBody();
+        }
+        if (targetType == String.class && codec == WireCodec.JSON) {
+            return new String(message.getBody(), StandardCharsets.UTF_8);
+        }
+
+        ObjectMapper mapper = mapper(codec);
+        try {
+            return mapper.readValue(message.getBody(), mapper.constructType(targetType));
+        } catch (IOException e) {
+            throw new MessageConversionException("Failed to decode " + codec + " message as " + targetType, e);
+        }
+    }
+
+    private ObjectMapper mapper(WireCodec codec) {
+        return codec == WireCodec.SMILE ? smileMapper : jsonMapper;
+    }
+
+    private static ObjectMapper configure(ObjectMapper mapper) {
+        mapper.registerModule(new JavaTimeModule());
+        // Newer senders may add fields during a rolling upgrade
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        return mapper;
+    }
+
+    public enum WireCodec {
+        JSON("application/json"),
+        SMILE("application/x-jackson-smile");
+
+        private final String contentType;
+
+        WireCodec(String contentType) {
+            this.contentType = contentType;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        static WireCodec forContentType(String contentType) {
+            if (contentType != null && contentType.startsWith(SMILE.contentType)) {
+                return SMILE;
+            }
+            return JSON;
+        }
+    }
+}
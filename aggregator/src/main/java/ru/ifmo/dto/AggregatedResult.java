@@ -14,11 +14,22 @@ public class AggregatedResult {
     private Long processingDurationMs;
     private int totalSections;
     private List<String> processedTaskIds;
+    private Map<String, String> failedTasks; // task ID -> error of the tasks that failed on every retry
+    private List<String> errors; // why the result is incomplete, e.g. the producer failed part-way
 
     private Long totalWordCount;
 
     private Map<String, Integer> mergedTopWords;
 
+    // Merged from the word summaries when every section carries one
+    private List<WordEstimate> globalTopWords;
+    private Long globalTopWordsMaxError; // no word's estimatedCount exceeds its true count by more than this
+    private Integer guaranteedTopWords; // the first this many globalTopWords are certainly in the true top-N
+
+    // Assembled from the reducer shards in shuffle mode
+    private Map<String, Integer> exactTopWords;
+    private Long exactDistinctWords;
+
     private String overallSentiment; // POSITIVE, NEGATIVE, NEUTRAL
     private Double averageSentimentScore;
     private Map<String, Integer> sentimentDistribution;
@@ -13,4 +13,5 @@ public class SectionResult {
     private Double sentimentScore;
     private String modifiedText;
     private List<String> sortedSentences;
+    private int[] sortedSentenceOffsets; // kept instead of the sentences when the corpus could not be read
 }
\ No newline at end of file
@@ -0,0 +1,14 @@
+package ru.ifmo.dto;
+
+import java.util.Map;
+
+import lombok.Data;
+
+@Data
+public class ShardResult {
+    private String sessionId;
+    private int shard;
+    private Map<String, Integer> topWords; // exact counts, most frequent first
+    private int distinctWords;
+    private long totalCount;
+}
@@ -0,0 +1,12 @@
+package ru.ifmo.dto;
+
+import java.util.Map;
+
+import lombok.Data;
+
+@Data
+public class WordCountPartition {
+    private String taskId;
+    private int partition;
+    private Map<String, Integer> counts; // every word of the section that hashes to this partition
+}
@@ -0,0 +1,10 @@
+package ru.ifmo.dto;
+
+import lombok.Data;
+
+@Data
+public class WordEstimate {
+    private String word;
+    private long estimatedCount; // upper bound of the true count
+    private long guaranteedCount; // lower bound of the true count
+}
@@ -0,0 +1,15 @@
+package ru.ifmo.dto;
+
+import java.util.Map;
+
+import lombok.Data;
+
+/**
+ * Fixed-size mergeable summary of a section's word frequencies: the exact counts of its most
+ * frequent words and an upper bound for the count of every word left out.
+ */
+@Data
+public class WordSummary {
+    private Map<String, Integer> counts; // most frequent first
+    private int residualCount; // no word missing from counts occurs more often than this in the section
+}
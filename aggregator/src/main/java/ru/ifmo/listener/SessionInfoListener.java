@@ -1,13 +1,12 @@
 package ru.ifmo.listener;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.stereotype.Component;
 import ru.ifmo.dto.SessionInfo;
 import ru.ifmo.service.AggregationService;
+import ru.ifmo.service.SessionCompletionService;
 
 @Component
 @RequiredArgsConstructor
@@ -15,14 +14,12 @@ import ru.ifmo.service.AggregationService;
 public class SessionInfoListener {
 
     private final AggregationService aggregationService;
-    private final ObjectMapper objectMapper;
-
-    @RabbitListener(queues = "${rabbitmq.session.queue.name}")
-    public void receiveSessionInfo(String message) {
-        log.info("Received session info message: {}", message);
+    private final SessionCompletionService sessionCompletionService;
 
+    @RabbitListener(queues = "${rabbitmq.session.queue.name}",
+            autoStartup = "#{!${aggregation.shuffle.reducer-only:false}}")
+    public void receiveSessionInfo(SessionInfo sessionInfo) {
         try {
-            SessionInfo sessionInfo = objectMapper.readValue(message, SessionInfo.class);
             log.info("Processing session info: {} with expected {} tasks",
                     sessionInfo.getSessionId(), sessionInfo.getExpectedTaskCount());
 
@@ -38,11 +35,20 @@ public class SessionInfoListener {
                 );
             }
 
+            if (sessionInfo.getError() != null) {
+                aggregationService.addSessionError(sessionInfo.getSessionId(),
+                        "Producer failed after " + sessionInfo.getExpectedTaskCount() + " tasks: "
+                                + sessionInfo.getError());
+            }
+
             log.info("Successfully registered session {} with {} expected tasks",
                     sessionInfo.getSessionId(), sessionInfo.getExpectedTaskCount());
 
-        } catch (JsonProcessingException e) {
-            log.error("Failed to parse message as SessionInfo: {}", e.getMessage());
+            // Streaming producers announce the session after its tasks, so results may already be here
+            if (aggregationService.getResultCount(sessionInfo.getSessionId()) > 0) {
+                sessionCompletionService.checkAndTriggerAggregation(sessionInfo.getSessionId());
+            }
+
         } catch (Exception e) {
             log.error("Error processing session info: {}", e.getMessage(), e);
         }
@@ -0,0 +1,34 @@
+package ru.ifmo.listener;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+import ru.ifmo.dto.ShardResult;
+import ru.ifmo.service.AggregationService;
+import ru.ifmo.service.SessionCompletionService;
+
+@Component
+@ConditionalOnExpression("${aggregation.shuffle.partitions:0} > 0")
+@RequiredArgsConstructor
+@Slf4j
+public class ShardResultsListener {
+
+    private final AggregationService aggregationService;
+    private final SessionCompletionService sessionCompletionService;
+
+    @RabbitListener(queues = "${rabbitmq.shuffle.results.queue.name}",
+            autoStartup = "#{!${aggregation.shuffle.reducer-only:false}}")
+    public void receiveShardResult(ShardResult result) {
+        try {
+            aggregationService.addShardResult(result);
+
+            sessionCompletionService.checkAndTriggerAggregation(result.getSessionId());
+
+        } catch (Exception e) {
+            log.error("Error processing result of shard {} for session {}: {}",
+                    result.getShard(), result.getSessionId(), e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package ru.ifmo.listener;
+
+final class TaskIds {
+
+    private TaskIds() {
+    }
+
+    static String sessionId(String taskId) {
+        // taskId format "session-001-task-001"
+        if (taskId != null && taskId.contains("-")) {
+            String[] parts = taskId.split("-");
+            if (parts.length >= 2) {
+                return parts[0] + "-" + parts[1];
+            }
+        }
+        return "default-session";
+    }
+}
@@ -0,0 +1,38 @@
+package ru.ifmo.listener;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+import ru.ifmo.dto.SessionInfo;
+import ru.ifmo.dto.WordCountPartition;
+import ru.ifmo.service.WordCountReducerService;
+
+@Component
+@ConditionalOnExpression("${aggregation.shuffle.partitions:0} > 0 and '${aggregation.shuffle.shards:all}' != 'none'")
+@RequiredArgsConstructor
+@Slf4j
+public class WordCountPartitionListener {
+
+    private final WordCountReducerService wordCountReducerService;
+
+    @RabbitListener(queues = "#{@ownedShardQueues}")
+    public void receivePartition(WordCountPartition partition) {
+        try {
+            wordCountReducerService.addPartition(TaskIds.sessionId(partition.getTaskId()), partition);
+        } catch (Exception e) {
+            log.error("Error reducing partition {} of task {}: {}",
+                    partition.getPartition(), partition.getTaskId(), e.getMessage(), e);
+        }
+    }
+
+    @RabbitListener(queues = "#{@reducerSessionInfoQueue.name}")
+    public void receiveSessionInfo(SessionInfo sessionInfo) {
+        try {
+            wordCountReducerService.setExpectedTaskCount(sessionInfo.getSessionId(), sessionInfo.getExpectedTaskCount());
+        } catch (Exception e) {
+            log.error("Error processing session info for reducers: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -1,33 +1,64 @@
 package ru.ifmo.service;
 
+import java.io.IOException;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import ru.ifmo.dto.AggregatedResult;
 import ru.ifmo.dto.SectionResult;
+import ru.ifmo.dto.ShardResult;
 import ru.ifmo.dto.TextProcessingResult;
+import ru.ifmo.dto.WordEstimate;
+import ru.ifmo.dto.WordSummary;
 
 @Service
+@RequiredArgsConstructor
 @Slf4j
 public class AggregationService {
 
+    private final CorpusStoreService corpusStoreService;
+
+    // Lists are synchronized: results keep arriving while another thread aggregates the session
     private final Map<String, List<TextProcessingResult>> aggregationSessions = new ConcurrentHashMap<>();
 
     private final Map<String, Integer> expectedTaskCounts = new ConcurrentHashMap<>();
     
     private final Map<String, LocalDateTime> sessionStartTimes = new ConcurrentHashMap<>();
 
+    private final Map<String, Map<Integer, ShardResult>> shardResults = new ConcurrentHashMap<>();
+
+    private final Map<String, Set<String>> receivedTaskIds = new ConcurrentHashMap<>();
+
+    private final Map<String, List<String>> sessionErrors = new ConcurrentHashMap<>();
+
+    // When each session got all its task results but still missed shard results
+    private final Map<String, Long> shardWaitStarts = new ConcurrentHashMap<>();
+
+    @Value("${aggregation.global-top-words:10}")
+    private int globalTopWords;
+
+    @Value("${aggregation.shuffle.partitions:0}")
+    private int shufflePartitions;
+
+    @Value("${aggregation.shuffle.shard-timeout-ms:60000}")
+    private long shardTimeoutMs;
+
     public void setExpectedTaskCount(String sessionId, int expectedCount) {
         expectedTaskCounts.put(sessionId, expectedCount);
         log.info("Set expected task count for session {}: {}", sessionId, expectedCount);
@@ -38,14 +69,35 @@ public class AggregationService {
         log.info("Set start time for session {}: {}", sessionId, startTime);
     }
 
+    /**
+     * Records why the session's result will be incomplete. The session still aggregates what it has.
+     */
+    public void addSessionError(String sessionId, String error) {
+        sessionErrors.computeIfAbsent(sessionId, k -> new CopyOnWriteArrayList<>()).add(error);
+        log.warn("Session {} is incomplete: {}", sessionId, error);
+    }
+
     public void addResult(String sessionId, TextProcessingResult result) {
-        aggregationSessions.computeIfAbsent(sessionId, k -> new ArrayList<>()).add(result);
+        // Workers in batch mode send the results of a requeued batch again
+        if (!receivedTaskIds.computeIfAbsent(sessionId, k -> ConcurrentHashMap.newKeySet()).add(result.getTaskId())) {
+            log.info("Ignoring duplicate result for task {} of session {}", result.getTaskId(), sessionId);
+            return;
+        }
+        aggregationSessions.computeIfAbsent(sessionId, k -> Collections.synchronizedList(new ArrayList<>()))
+                .add(result);
         log.info("Added result for task {} to session {} ({}/{})",
                 result.getTaskId(), sessionId,
                 getResultCount(sessionId),
                 expectedTaskCounts.get(sessionId));
     }
 
+    public void addShardResult(ShardResult result) {
+        Map<Integer, ShardResult> shards = shardResults.computeIfAbsent(result.getSessionId(), k -> new ConcurrentHashMap<>());
+        shards.put(result.getShard(), result);
+        log.info("Added result of shard {} to session {} ({}/{})",
+                result.getShard(), result.getSessionId(), shards.size(), shufflePartitions);
+    }
+
     public boolean isReadyForAggregation(String sessionId) {
         Integer expectedCount = expectedTaskCounts.get(sessionId);
         if (expectedCount == null) {
@@ -54,7 +106,22 @@ public class AggregationService {
         }
 
         int currentCount = getResultCount(sessionId);
-        boolean ready = currentCount + 2 >= expectedCount;
+        boolean ready = currentCount >= expectedCount;
+
+        // Exact word counts are only complete once every shard has reduced all tasks
+        if (ready && shufflePartitions > 0) {
+            int shardCount = shardResults.getOrDefault(sessionId, Map.of()).size();
+            if (shardCount < shufflePartitions) {
+                long waitingSince = shardWaitStarts.computeIfAbsent(sessionId, k -> System.currentTimeMillis());
+                if (System.currentTimeMillis() - waitingSince < shardTimeoutMs) {
+                    log.info("Session {} is waiting for shard results: {}/{}", sessionId, shardCount, shufflePartitions);
+                    return false;
+                }
+                // A shard that lost its reducer or a partition must not hold the session forever
+                log.warn("Session {} got {}/{} shard results within {} ms, aggregating without exact word counts",
+                        sessionId, shardCount, shufflePartitions, shardTimeoutMs);
+            }
+        }
 
         if (ready) {
             log.info("Session {} is ready for aggregation: {}/{} tasks completed",
@@ -64,14 +131,51 @@ public class AggregationService {
         return ready;
     }
 
+    /**
+     * @return ms until the session stops waiting for its missing shard results, or -1 if it is not waiting
+     */
+    public long getShardWaitRemainingMs(String sessionId) {
+        Long waitingSince = shardWaitStarts.get(sessionId);
+        if (waitingSince == null) {
+            return -1;
+        }
+        return Math.max(0, waitingSince + shardTimeoutMs - System.currentTimeMillis());
+    }
+
     public AggregatedResult aggregateResults(String sessionId) {
-        List<TextProcessingResult> results = aggregationSessions.get(sessionId);
-        if (results == null || results.isEmpty()) {
+        List<TextProcessingResult> sessionResults = aggregationSessions.get(sessionId);
+        List<TextProcessingResult> received;
+        if (sessionResults == null) {
+            received = List.of();
+        } else {
+            synchronized (sessionResults) {
+                received = new ArrayList<>(sessionResults);
+            }
+        }
+        if (received.isEmpty()) {
             log.warn("No results found for session {}", sessionId);
             return null;
         }
 
-        log.info("Aggregating {} results for session {}", results.size(), sessionId);
+        // Failure results only count towards completion of the session
+        List<TextProcessingResult> results = received.stream()
+                .filter(r -> r.getError() == null)
+                .collect(Collectors.toList());
+        Map<String, String> failedTasks = received.stream()
+                .filter(r -> r.getError() != null)
+                .collect(Collectors.toMap(TextProcessingResult::getTaskId, TextProcessingResult::getError,
+                        (e1, e2) -> e1, LinkedHashMap::new));
+
+        log.info("Aggregating {} results for session {}, {} tasks failed", results.size(), sessionId,
+                failedTasks.size());
+
+        List<String> errors = new ArrayList<>(sessionErrors.getOrDefault(sessionId, List.of()));
+        for (TextProcessingResult result : results) {
+            String error = resolveSentenceOffsets(result);
+            if (error != null) {
+                errors.add(error);
+            }
+        }
 
         AggregatedResult aggregated = new AggregatedResult();
         aggregated.setAggregationId(sessionId);
@@ -91,11 +195,27 @@ public class AggregationService {
         aggregated.setProcessedTaskIds(results.stream()
                 .map(TextProcessingResult::getTaskId)
                 .collect(Collectors.toList()));
+        if (!failedTasks.isEmpty()) {
+            aggregated.setFailedTasks(failedTasks);
+        }
+        // Partial shard results would pass off a part of the vocabulary as exact counts
+        Map<Integer, ShardResult> shards = shardResults.getOrDefault(sessionId, Map.of());
+        if (shards.size() >= shufflePartitions) {
+            mergeShardResults(shards, aggregated);
+        } else {
+            errors.add(String.format("Only %d/%d shard results arrived, exact word counts are left out",
+                    shards.size(), shufflePartitions));
+        }
+        if (!errors.isEmpty()) {
+            aggregated.setErrors(errors);
+        }
 
         aggregated.setTotalWordCount(aggregateWordCounts(results));
 
         aggregated.setMergedTopWords(mergeTopWords(results));
 
+        mergeWordSummaries(results, aggregated);
+
         aggregateSentiment(results, aggregated);
 
         aggregateModifiedText(results, aggregated);
@@ -108,7 +228,11 @@ public class AggregationService {
         return aggregated;
     }
 
+    // Null when the job did not request word counts
     private Long aggregateWordCounts(List<TextProcessingResult> results) {
+        if (results.stream().allMatch(r -> r.getWordCount() == null)) {
+            return null;
+        }
         return results.stream()
                 .filter(r -> r.getWordCount() != null)
                 .mapToLong(r -> r.getWordCount().longValue())
@@ -116,6 +240,9 @@ public class AggregationService {
     }
 
     private Map<String, Integer> mergeTopWords(List<TextProcessingResult> results) {
+        if (results.stream().allMatch(r -> r.getTopWords() == null)) {
+            return null;
+        }
         Map<String, Integer> mergedWords = new HashMap<>();
 
         for (TextProcessingResult result : results) {
@@ -136,11 +263,90 @@ public class AggregationService {
                 ));
     }
 
+    /**
+     * Merges the section summaries into estimates with guaranteed bounds. A word's count lies
+     * between the sum of its counts in the summaries that list it and that sum plus the residual
+     * counts of all the other summaries; a word listed nowhere occurs at most the sum of all
+     * residual counts times.
+     */
+    private void mergeWordSummaries(List<TextProcessingResult> results, AggregatedResult aggregated) {
+        if (results.stream().anyMatch(r -> r.getWordSummary() == null)) {
+            return;
+        }
+
+        long totalResidual = 0;
+        Map<String, long[]> bounds = new HashMap<>(); // word -> {listed count, residual of the listing summaries}
+        for (TextProcessingResult result : results) {
+            WordSummary summary = result.getWordSummary();
+            totalResidual += summary.getResidualCount();
+            summary.getCounts().forEach((word, count) -> {
+                long[] wordBounds = bounds.computeIfAbsent(word, k -> new long[2]);
+                wordBounds[0] += count;
+                wordBounds[1] += summary.getResidualCount();
+            });
+        }
+
+        List<WordEstimate> estimates = new ArrayList<>(bounds.size());
+        for (Map.Entry<String, long[]> entry : bounds.entrySet()) {
+            WordEstimate estimate = new WordEstimate();
+            estimate.setWord(entry.getKey());
+            estimate.setGuaranteedCount(entry.getValue()[0]);
+            estimate.setEstimatedCount(entry.getValue()[0] + totalResidual - entry.getValue()[1]);
+            estimates.add(estimate);
+        }
+        estimates.sort(Comparator.comparingLong(WordEstimate::getEstimatedCount).reversed()
+                .thenComparing(Comparator.comparingLong(WordEstimate::getGuaranteedCount).reversed())
+                .thenComparing(WordEstimate::getWord));
+
+        List<WordEstimate> top = new ArrayList<>(estimates.subList(0, Math.min(globalTopWords, estimates.size())));
+
+        // A listed word is certainly in the top-N if no word outside the list can reach its lower bound
+        long bestOutside = totalResidual;
+        if (estimates.size() > top.size()) {
+            bestOutside = Math.max(bestOutside, estimates.get(top.size()).getEstimatedCount());
+        }
+        int guaranteed = 0;
+        while (guaranteed < top.size() && top.get(guaranteed).getGuaranteedCount() >= bestOutside) {
+            guaranteed++;
+        }
+
+        aggregated.setGlobalTopWords(top);
+        // Every word's bounds are at most the total residual apart
+        aggregated.setGlobalTopWordsMaxError(totalResidual);
+        aggregated.setGuaranteedTopWords(guaranteed);
+    }
+
+    /**
+     * Every word belongs to exactly one shard, so the global top-N is the top-N of the shard top-Ns.
+     */
+    private void mergeShardResults(Map<Integer, ShardResult> shards, AggregatedResult aggregated) {
+        if (shards == null || shards.isEmpty()) {
+            return;
+        }
+
+        long distinctWords = 0;
+        Map<String, Integer> candidates = new HashMap<>();
+        for (ShardResult shard : shards.values()) {
+            distinctWords += shard.getDistinctWords();
+            candidates.putAll(shard.getTopWords());
+        }
+
+        aggregated.setExactTopWords(candidates.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(globalTopWords)
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (e1, e2) -> e1, LinkedHashMap::new)));
+        aggregated.setExactDistinctWords(distinctWords);
+    }
+
     private void aggregateSentiment(List<TextProcessingResult> results, AggregatedResult aggregated) {
         List<String> sentiments = results.stream()
                 .map(TextProcessingResult::getSentiment)
                 .filter(Objects::nonNull)
                 .toList();
+        if (sentiments.isEmpty()) {
+            return;
+        }
 
         List<Double> scores = results.stream()
                 .map(TextProcessingResult::getSentimentScore)
@@ -171,6 +377,9 @@ public class AggregationService {
                 .map(TextProcessingResult::getModifiedText)
                 .filter(Objects::nonNull)
                 .collect(Collectors.toList());
+        if (modifiedSections.isEmpty()) {
+            return;
+        }
 
         aggregated.setModifiedTextSections(modifiedSections);
 
@@ -179,6 +388,9 @@ public class AggregationService {
     }
 
     private List<String> aggregateSortedSentences(List<TextProcessingResult> results) {
+        if (results.stream().allMatch(r -> r.getSortedSentences() == null)) {
+            return null;
+        }
         List<String> allSentences = new ArrayList<>();
 
         for (TextProcessingResult result : results) {
@@ -192,6 +404,59 @@ public class AggregationService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Creates the sentences of a result that only carries their offsets, reading its section from
+     * the corpus store; the sentences are normalized the way the worker does it. A result whose
+     * section cannot be read keeps its offsets.
+     *
+     * @return why the sentences could not be created, or null
+     */
+    private String resolveSentenceOffsets(TextProcessingResult result) {
+        int[] offsets = result.getSortedSentenceOffsets();
+        if (offsets == null || result.getSortedSentences() != null) {
+            return null;
+        }
+        if (result.getCorpusRef() == null || result.getOffset() == null || result.getLength() == null) {
+            return String.format("Sentences of task %s have offsets but no corpus section", result.getTaskId());
+        }
+
+        List<String> sentences = new ArrayList<>(offsets.length / 2);
+        try {
+            String text = corpusStoreService.readSection(result.getCorpusRef(), result.getOffset(), result.getLength());
+            for (int i = 0; i + 1 < offsets.length; i += 2) {
+                sentences.add(normalizeSentence(text, offsets[i], offsets[i + 1]));
+            }
+        } catch (IOException | IndexOutOfBoundsException e) {
+            log.error("Failed to resolve sentences of task {}: {}", result.getTaskId(), e.getMessage());
+            return String.format("Sentences of task %s could not be read from %s: %s",
+                    result.getTaskId(), result.getCorpusRef(), e.getMessage());
+        }
+        result.setSortedSentences(sentences);
+        result.setSortedSentenceOffsets(null);
+        return null;
+    }
+
+    // SentenceIndex.normalize of the worker; both are tested on the same sentence corpus
+    static String normalizeSentence(String text, int offset, int length) {
+        StringBuilder sb = new StringBuilder(length + 1);
+        boolean previousSpace = false;
+        for (int i = offset; i < offset + length; i++) {
+            char c = text.charAt(i);
+            boolean space = c == ' ' || (c >= '\t' && c <= '\r');
+            if (!space) {
+                sb.append(c);
+            } else if (!previousSpace) {
+                sb.append(' ');
+            }
+            previousSpace = space;
+        }
+        char last = sb.isEmpty() ? ' ' : sb.charAt(sb.length() - 1);
+        if (last != '.' && last != '!' && last != '?') {
+            sb.append('.');
+        }
+        return sb.toString();
+    }
+
     private List<SectionResult> createSectionResults(List<TextProcessingResult> results) {
         return results.stream()
                 .map(this::convertToSectionResult)
@@ -207,6 +472,7 @@ public class AggregationService {
         section.setSentimentScore(result.getSentimentScore());
         section.setModifiedText(result.getModifiedText());
         section.setSortedSentences(result.getSortedSentences());
+        section.setSortedSentenceOffsets(result.getSortedSentenceOffsets());
         return section;
     }
 
@@ -214,6 +480,10 @@ public class AggregationService {
         aggregationSessions.remove(sessionId);
         expectedTaskCounts.remove(sessionId);
         sessionStartTimes.remove(sessionId);
+        shardResults.remove(sessionId);
+        receivedTaskIds.remove(sessionId);
+        sessionErrors.remove(sessionId);
+        shardWaitStarts.remove(sessionId);
         log.info("Cleared session {}", sessionId);
     }
 
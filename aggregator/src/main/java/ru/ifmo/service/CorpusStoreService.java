@@ -0,0 +1,119 @@
+package ru.ifmo.service;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+@Service
+public class CorpusStoreService {
+
+    @Value("${text.processing.claim-check.dir:corpora}")
+    private String storeDirectory;
+
+    @Value("${text.processing.claim-check.max-open-files:64}")
+    private int maxOpenFiles;
+
+    // One channel per corpus, shared by all threads: positional reads leave no position to contend for
+    private final Map<Path, FileChannel> channels = new ConcurrentHashMap<>();
+
+    // Read buffers are reused by every section read on the same thread
+    private final ThreadLocal<ByteBuffer> readBuffers = ThreadLocal.withInitial(() -> ByteBuffer.allocate(64 * 1024));
+
+    /**
+     * Reads a section of a corpus in the shared store. The corpus stays open between sections and
+     * each section is read at its offset into a buffer of the calling thread, so a task costs one
+     * read call instead of opening the file and mapping and unmapping the section.
+     */
+    public String readSection(String corpusRef, long offset, int length) throws IOException {
+        Path store = Paths.get(storeDirectory).toAbsolutePath().normalize();
+        Path corpus = store.resolve(corpusRef).normalize();
+        if (!corpus.startsWith(store)) {
+            throw new IOException("Corpus reference outside of the store: " + corpusRef);
+        }
+
+        while (true) {
+            FileChannel channel = channel(corpus);
+            try {
+                return read(channel, corpusRef, offset, length);
+            } catch (ClosedChannelException e) {
+                // Evicted by another thread, or closed by the interrupt of a thread reading it
+                channels.remove(corpus, channel);
+                if (Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        channels.values().forEach(CorpusStoreService::closeQuietly);
+        channels.clear();
+    }
+
+    private String read(FileChannel channel, String corpusRef, long offset, int length) throws IOException {
+        long size = channel.size();
+        if (offset < 0 || length < 0 || offset + length > size) {
+            throw new IOException(String.format("Section [%d, %d) is outside of corpus %s (%d bytes)",
+                    offset, offset + length, corpusRef, size));
+        }
+
+        ByteBuffer buffer = readBuffers.get();
+        if (buffer.capacity() < length) {
+            buffer = ByteBuffer.allocate(Math.max(length, buffer.capacity() * 2));
+            readBuffers.set(buffer);
+        }
+        buffer.clear().limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Corpus " + corpusRef + " ended within section at " + offset);
+            }
+        }
+        return new String(buffer.array(), 0, length, StandardCharsets.UTF_8);
+    }
+
+    private FileChannel channel(Path corpus) throws IOException {
+        FileChannel channel = channels.get(corpus);
+        if (channel != null) {
+            return channel;
+        }
+
+        if (channels.size() >= maxOpenFiles) {
+            // Any other corpus will do: sessions rarely share a worker for long
+            Iterator<FileChannel> open = channels.values().iterator();
+            if (open.hasNext()) {
+                FileChannel evicted = open.next();
+                open.remove();
+                closeQuietly(evicted);
+            }
+        }
+        FileChannel opened = FileChannel.open(corpus, StandardOpenOption.READ);
+        FileChannel existing = channels.putIfAbsent(corpus, opened);
+        if (existing != null) {
+            closeQuietly(opened);
+            return existing;
+        }
+        return opened;
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Read-only, nothing is lost
+        }
+    }
+}
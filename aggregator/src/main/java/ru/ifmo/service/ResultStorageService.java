@@ -83,56 +83,99 @@ public class ResultStorageService {
         report.append("Total Sections Processed: ").append(result.getTotalSections()).append("\n");
         report.append("Processed Task IDs: ").append(String.join(", ", result.getProcessedTaskIds())).append("\n\n");
 
-        report.append("=== WORD COUNT SUMMARY ===\n");
-        report.append("Total Words: ").append(result.getTotalWordCount()).append("\n\n");
+        if (result.getErrors() != null) {
+            report.append("=== ERRORS ===\n");
+            result.getErrors().forEach(error -> report.append(error).append("\n"));
+            report.append("\n");
+        }
+
+        if (result.getFailedTasks() != null) {
+            report.append("=== FAILED TASKS ===\n");
+            result.getFailedTasks().forEach((taskId, error) ->
+                    report.append(String.format("%s: %s\n", taskId, error)));
+            report.append("\n");
+        }
+
+        // Sections of operations the job did not request are left out
+        if (result.getTotalWordCount() != null) {
+            report.append("=== WORD COUNT SUMMARY ===\n");
+            report.append("Total Words: ").append(result.getTotalWordCount()).append("\n\n");
+        }
 
-        report.append("=== TOP WORDS SUMMARY ===\n");
         if (result.getMergedTopWords() != null) {
+            report.append("=== TOP WORDS SUMMARY ===\n");
             result.getMergedTopWords().entrySet().stream()
                     .limit(10)
                     .forEach(entry -> report.append(String.format("%-20s: %d\n", entry.getKey(), entry.getValue())));
+            report.append("\n");
+        }
+
+        if (result.getGlobalTopWords() != null) {
+            report.append("=== GLOBAL TOP WORDS (FROM WORD SUMMARIES) ===\n");
+            report.append("Max Error: ").append(result.getGlobalTopWordsMaxError())
+                  .append(", Guaranteed In Top: ").append(result.getGuaranteedTopWords()).append("\n");
+            result.getGlobalTopWords().forEach(estimate -> report.append(String.format("%-20s: %d..%d\n",
+                    estimate.getWord(), estimate.getGuaranteedCount(), estimate.getEstimatedCount())));
+            report.append("\n");
+        }
+
+        if (result.getExactTopWords() != null) {
+            report.append("=== EXACT TOP WORDS (FROM REDUCER SHARDS) ===\n");
+            report.append("Distinct Words: ").append(result.getExactDistinctWords()).append("\n");
+            result.getExactTopWords().forEach((word, count) ->
+                    report.append(String.format("%-20s: %d\n", word, count)));
+            report.append("\n");
         }
-        report.append("\n");
 
-        report.append("=== SENTIMENT ANALYSIS SUMMARY ===\n");
-        report.append("Overall Sentiment: ").append(result.getOverallSentiment()).append("\n");
-        report.append("Average Sentiment Score: ").append(String.format("%.3f", result.getAverageSentimentScore())).append("\n");
-        if (result.getSentimentDistribution() != null) {
-            report.append("Sentiment Distribution:\n");
-            result.getSentimentDistribution().forEach((sentiment, count) ->
-                    report.append(String.format("  %s: %d sections\n", sentiment, count)));
+        if (result.getOverallSentiment() != null) {
+            report.append("=== SENTIMENT ANALYSIS SUMMARY ===\n");
+            report.append("Overall Sentiment: ").append(result.getOverallSentiment()).append("\n");
+            report.append("Average Sentiment Score: ").append(String.format("%.3f", result.getAverageSentimentScore())).append("\n");
+            if (result.getSentimentDistribution() != null) {
+                report.append("Sentiment Distribution:\n");
+                result.getSentimentDistribution().forEach((sentiment, count) ->
+                        report.append(String.format("  %s: %d sections\n", sentiment, count)));
+            }
+            report.append("\n");
         }
-        report.append("\n");
 
-        report.append("=== TEXT MODIFICATION SUMMARY ===\n");
-        report.append("Modified Text Sections: ").append(result.getModifiedTextSections() != null ?
-                result.getModifiedTextSections().size() : 0).append("\n");
-        if (result.getCombinedModifiedText() != null) {
-            report.append("Combined Text Length: ").append(result.getCombinedModifiedText().length()).append(" " +
-                    "characters\n");
+        if (result.getModifiedTextSections() != null) {
+            report.append("=== TEXT MODIFICATION SUMMARY ===\n");
+            report.append("Modified Text Sections: ").append(result.getModifiedTextSections().size()).append("\n");
+            if (result.getCombinedModifiedText() != null) {
+                report.append("Combined Text Length: ").append(result.getCombinedModifiedText().length()).append(" " +
+                        "characters\n");
+            }
+            report.append("\n");
         }
-        report.append("\n");
 
-        report.append("=== SENTENCE SORTING SUMMARY ===\n");
-        report.append("Total Sorted Sentences: ").append(result.getAllSortedSentences() != null ?
-                result.getAllSortedSentences().size() : 0).append("\n");
-        if (result.getAllSortedSentences() != null && !result.getAllSortedSentences().isEmpty()) {
-            report.append("Shortest Sentence: ").append(result.getAllSortedSentences().getFirst()).append("\n");
-            report.append("Longest Sentence: ").append(result.getAllSortedSentences().getLast()).append("\n");
+        if (result.getAllSortedSentences() != null) {
+            report.append("=== SENTENCE SORTING SUMMARY ===\n");
+            report.append("Total Sorted Sentences: ").append(result.getAllSortedSentences().size()).append("\n");
+            if (!result.getAllSortedSentences().isEmpty()) {
+                report.append("Shortest Sentence: ").append(result.getAllSortedSentences().getFirst()).append("\n");
+                report.append("Longest Sentence: ").append(result.getAllSortedSentences().getLast()).append("\n");
+            }
+            report.append("\n");
         }
-        report.append("\n");
 
         report.append("=== PER-SECTION SUMMARY ===\n");
         if (result.getSectionResults() != null) {
             result.getSectionResults().forEach(section -> {
                 report.append(String.format("Task ID: %s\n", section.getTaskId()));
-                report.append(String.format("  Word Count: %d\n", section.getWordCount()));
-                report.append(String.format("  Sentiment: %s (%.3f)\n", section.getSentiment(),
-                        section.getSentimentScore()));
-                report.append(String.format("  Top Words: %d\n", section.getTopWords() != null ?
-                        section.getTopWords().size() : 0));
-                report.append(String.format("  Sentences: %d\n", section.getSortedSentences() != null ?
-                        section.getSortedSentences().size() : 0));
+                if (section.getWordCount() != null) {
+                    report.append(String.format("  Word Count: %d\n", section.getWordCount()));
+                }
+                if (section.getSentiment() != null) {
+                    report.append(String.format("  Sentiment: %s (%.3f)\n", section.getSentiment(),
+                            section.getSentimentScore()));
+                }
+                if (section.getTopWords() != null) {
+                    report.append(String.format("  Top Words: %d\n", section.getTopWords().size()));
+                }
+                if (section.getSortedSentences() != null) {
+                    report.append(String.format("  Sentences: %d\n", section.getSortedSentences().size()));
+                }
                 report.append("\n");
             });
         }
@@ -0,0 +1,122 @@
+package ru.ifmo.service;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.ifmo.dto.AggregatedResult;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SessionCompletionService {
+
+    private final AggregationService aggregationService;
+    private final ResultStorageService resultStorageService;
+    private final RabbitTemplate rabbitTemplate;
+
+    private final ScheduledExecutorService deadlineTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "shard-deadline");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Set<String> pendingDeadlines = ConcurrentHashMap.newKeySet();
+    private final Map<String, Object> sessionLocks = new ConcurrentHashMap<>();
+    // Sessions whose result was published; their late triggers are ignored
+    private final Set<String> completedSessions = ConcurrentHashMap.newKeySet();
+
+    @Value("${rabbitmq.final.exchange.name}")
+    private String finalExchange;
+
+    @Value("${rabbitmq.final.routing.key}")
+    private String finalRoutingKey;
+
+    @PreDestroy
+    public void shutdown() {
+        deadlineTimer.shutdownNow();
+    }
+
+    /**
+     * The only way into aggregation. Results, session info and shard results arrive on different
+     * listener threads and the shard deadline fires on the timer thread, so the readiness check and
+     * the aggregation run under a lock of the session, and a session is aggregated and published once.
+     */
+    public void checkAndTriggerAggregation(String sessionId) {
+        if (completedSessions.contains(sessionId)) {
+            log.info("Session {} is already aggregated", sessionId);
+            return;
+        }
+        synchronized (sessionLocks.computeIfAbsent(sessionId, k -> new Object())) {
+            if (completedSessions.contains(sessionId)) {
+                log.info("Session {} is already aggregated", sessionId);
+                return;
+            }
+            if (aggregationService.isReadyForAggregation(sessionId)) {
+                log.info("Session {} is ready for aggregation, triggering...", sessionId);
+                if (triggerAggregation(sessionId)) {
+                    completedSessions.add(sessionId);
+                    sessionLocks.remove(sessionId);
+                }
+            } else {
+                int resultCount = aggregationService.getResultCount(sessionId);
+                log.info("Session {} not ready yet: {} results received", sessionId, resultCount);
+                scheduleShardDeadline(sessionId);
+            }
+        }
+    }
+
+    // No message may arrive once the session only misses shard results, so its deadline is checked on a timer
+    private void scheduleShardDeadline(String sessionId) {
+        long delayMs = aggregationService.getShardWaitRemainingMs(sessionId);
+        if (delayMs < 0 || !pendingDeadlines.add(sessionId)) {
+            return;
+        }
+        deadlineTimer.schedule(() -> {
+            pendingDeadlines.remove(sessionId);
+            // Goes through the same guard as the listeners, which may have completed the session meanwhile
+            checkAndTriggerAggregation(sessionId);
+        }, delayMs + 1, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return whether the session was aggregated
+     */
+    private boolean triggerAggregation(String sessionId) {
+        try {
+            log.info("Triggering aggregation for session: {}", sessionId);
+
+            AggregatedResult aggregatedResult = aggregationService.aggregateResults(sessionId);
+            if (aggregatedResult != null) {
+                resultStorageService.storeResult(aggregatedResult);
+
+                publishFinalResult(aggregatedResult);
+
+                log.info("Aggregation completed and published for session: {}", sessionId);
+                return true;
+            }
+
+        } catch (Exception e) {
+            log.error("Error during aggregation for session {}: {}", sessionId, e.getMessage(), e);
+        }
+        return false;
+    }
+
+    private void publishFinalResult(AggregatedResult result) {
+        try {
+            rabbitTemplate.convertAndSend(finalExchange, finalRoutingKey, result);
+            log.info("Final result published for aggregation: {}", result.getAggregationId());
+        } catch (Exception e) {
+            log.error("Failed to publish final result for aggregation {}: {}",
+                    result.getAggregationId(), e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package ru.ifmo.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Counts the words of one reducer shard in open-addressing arrays: a word's count is a plain int
+ * next to the word itself rather than a boxed map value.
+ */
+class ShardCounter {
+
+    private String[] words = new String[1024];
+    private int[] counts = new int[1024];
+    private int size;
+    private long totalCount;
+
+    void add(String word, int count) {
+        int mask = words.length - 1;
+        int slot = spread(word.hashCode()) & mask;
+        while (words[slot] != null) {
+            if (words[slot].equals(word)) {
+                counts[slot] += count;
+                totalCount += count;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        words[slot] = word;
+        counts[slot] = count;
+        totalCount += count;
+        if (++size * 2 > words.length) {
+            grow();
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    long totalCount() {
+        return totalCount;
+    }
+
+    /**
+     * @return the {@code n} most frequent words, most frequent first; equal counts alphabetically
+     */
+    Map<String, Integer> top(int n) {
+        int limit = Math.min(n, size);
+        // Min-heap of slots, heap[0] is the weakest word selected so far
+        int[] heap = new int[limit];
+        int heapSize = 0;
+        for (int slot = 0; slot < words.length && limit > 0; slot++) {
+            if (words[slot] == null) {
+                continue;
+            }
+            if (heapSize < limit) {
+                heap[heapSize] = slot;
+                siftUp(heap, heapSize++);
+            } else if (ranksAbove(slot, heap[0])) {
+                heap[0] = slot;
+                siftDown(heap, heapSize);
+            }
+        }
+
+        int[] ordered = new int[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            ordered[i] = heap[0];
+            heap[0] = heap[i];
+            siftDown(heap, i);
+        }
+        Map<String, Integer> top = new LinkedHashMap<>();
+        for (int slot : ordered) {
+            top.put(words[slot], counts[slot]);
+        }
+        return top;
+    }
+
+    private boolean ranksAbove(int slot, int otherSlot) {
+        if (counts[slot] != counts[otherSlot]) {
+            return counts[slot] > counts[otherSlot];
+        }
+        return words[slot].compareTo(words[otherSlot]) < 0;
+    }
+
+    private void siftUp(int[] heap, int index) {
+        int slot = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!ranksAbove(heap[parent], slot)) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = slot;
+    }
+
+    private void siftDown(int[] heap, int heapSize) {
+        int index = 0;
+        int slot = heap[0];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && ranksAbove(heap[child], heap[child + 1])) {
+                child++;
+            }
+            if (!ranksAbove(slot, heap[child])) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = slot;
+    }
+
+    private void grow() {
+        String[] oldWords = words;
+        int[] oldCounts = counts;
+        words = new String[oldWords.length * 2];
+        counts = new int[oldWords.length * 2];
+        int mask = words.length - 1;
+        for (int i = 0; i < oldWords.length; i++) {
+            if (oldWords[i] != null) {
+                int slot = spread(oldWords[i].hashCode()) & mask;
+                while (words[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                words[slot] = oldWords[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    // Words of one shard share hashCode mod the partition count, so the low bits alone cluster badly
+    private static int spread(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
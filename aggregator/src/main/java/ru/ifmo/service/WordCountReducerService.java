@@ -0,0 +1,132 @@
+package ru.ifmo.service;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.ifmo.dto.ShardResult;
+import ru.ifmo.dto.WordCountPartition;
+
+/**
+ * Reduces the word count partitions of the shards this process owns. A shard of a session is
+ * complete once it has one partition from every task of the session; its exact top words are
+ * then sent to the aggregator and its counters dropped. Partitions are deduplicated by task id,
+ * so redelivered messages are not counted twice. Completed shards are remembered for the retention
+ * to drop late redeliveries; incomplete shards that get no partition for as long are given up.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class WordCountReducerService {
+
+    private final RabbitTemplate rabbitTemplate;
+
+    @Value("${rabbitmq.shuffle.results.queue.name}")
+    private String shardResultsQueue;
+
+    @Value("${aggregation.global-top-words:10}")
+    private int globalTopWords;
+
+    @Value("${aggregation.shuffle.shard-retention-ms:3600000}")
+    private long retentionMs;
+
+    private final Map<String, ShardState> shards = new HashMap<>();
+    private final Map<String, ExpectedCount> expectedTaskCounts = new HashMap<>();
+    private final Map<String, Long> completedShards = new HashMap<>(); // shard key -> completion time
+    private long lastPruneTime;
+
+    public synchronized void setExpectedTaskCount(String sessionId, int expectedCount) {
+        prune();
+        expectedTaskCounts.put(sessionId, new ExpectedCount(expectedCount, System.currentTimeMillis()));
+        // Streaming producers announce the session after its tasks, so shards may already be complete
+        shards.entrySet().removeIf(entry -> entry.getValue().sessionId.equals(sessionId) && tryComplete(entry.getValue()));
+    }
+
+    public synchronized void addPartition(String sessionId, WordCountPartition partition) {
+        prune();
+        String key = sessionId + "#" + partition.getPartition();
+        if (completedShards.containsKey(key)) {
+            log.debug("Ignoring late partition of task {} for completed shard {}", partition.getTaskId(), key);
+            return;
+        }
+
+        ShardState shard = shards.computeIfAbsent(key, k -> new ShardState(sessionId, partition.getPartition()));
+        if (!shard.taskIds.add(partition.getTaskId())) {
+            log.debug("Ignoring duplicate partition of task {} for shard {}", partition.getTaskId(), key);
+            return;
+        }
+        partition.getCounts().forEach(shard.counter::add);
+        shard.lastUpdateTime = System.currentTimeMillis();
+
+        if (tryComplete(shard)) {
+            shards.remove(key);
+        }
+    }
+
+    private boolean tryComplete(ShardState shard) {
+        ExpectedCount expectedCount = expectedTaskCounts.get(shard.sessionId);
+        if (expectedCount == null || shard.taskIds.size() < expectedCount.taskCount()) {
+            return false;
+        }
+
+        ShardResult result = new ShardResult();
+        result.setSessionId(shard.sessionId);
+        result.setShard(shard.shard);
+        result.setTopWords(shard.counter.top(globalTopWords));
+        result.setDistinctWords(shard.counter.size());
+        result.setTotalCount(shard.counter.totalCount());
+        rabbitTemplate.convertAndSend(shardResultsQueue, result);
+
+        completedShards.put(shard.sessionId + "#" + shard.shard, System.currentTimeMillis());
+        log.info("Shard {} of session {} reduced: {} distinct words from {} tasks",
+                shard.shard, shard.sessionId, result.getDistinctWords(), shard.taskIds.size());
+        return true;
+    }
+
+    private void prune() {
+        long now = System.currentTimeMillis();
+        if (now - lastPruneTime < Math.min(retentionMs / 4, 60_000)) {
+            return;
+        }
+        lastPruneTime = now;
+
+        completedShards.values().removeIf(completionTime -> now - completionTime > retentionMs);
+        shards.values().removeIf(shard -> {
+            if (now - shard.lastUpdateTime <= retentionMs) {
+                return false;
+            }
+            log.warn("Giving up shard {} of session {}: {} tasks reduced, no partition for {} ms",
+                    shard.shard, shard.sessionId, shard.taskIds.size(), retentionMs);
+            return true;
+        });
+
+        // A session's count is still needed while any of its shards is open or remembered
+        Set<String> liveSessions = new HashSet<>();
+        shards.values().forEach(shard -> liveSessions.add(shard.sessionId));
+        completedShards.keySet().forEach(key -> liveSessions.add(key.substring(0, key.lastIndexOf('#'))));
+        expectedTaskCounts.entrySet().removeIf(entry -> !liveSessions.contains(entry.getKey())
+                && now - entry.getValue().announcedTime() > retentionMs);
+    }
+
+    private record ExpectedCount(int taskCount, long announcedTime) {
+    }
+
+    private static class ShardState {
+        private final String sessionId;
+        private final int shard;
+        private final Set<String> taskIds = new HashSet<>();
+        private final ShardCounter counter = new ShardCounter();
+        private long lastUpdateTime = System.currentTimeMillis();
+
+        private ShardState(String sessionId, int shard) {
+            this.sessionId = sessionId;
+            this.shard = shard;
+        }
+    }
+}
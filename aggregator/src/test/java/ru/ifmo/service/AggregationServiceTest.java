@@ -0,0 +1,200 @@
+package ru.ifmo.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.ifmo.dto.AggregatedResult;
+import ru.ifmo.dto.SectionResult;
+import ru.ifmo.dto.TextProcessingResult;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AggregationServiceTest {
+
+    private static final String SESSION = "session-1a2b3c4d";
+    private static final Pattern SENTENCE_BREAK = Pattern.compile("(?<=[.!?])\\s+(?=[A-ZА-Я])");
+
+    @TempDir
+    Path store;
+
+    private CorpusStoreService corpusStoreService;
+    private AggregationService aggregationService;
+
+    @BeforeEach
+    void setUp() {
+        corpusStoreService = new CorpusStoreService();
+        ReflectionTestUtils.setField(corpusStoreService, "storeDirectory", store.toString());
+        ReflectionTestUtils.setField(corpusStoreService, "maxOpenFiles", 64);
+        aggregationService = new AggregationService(corpusStoreService);
+        ReflectionTestUtils.setField(aggregationService, "globalTopWords", 10);
+        ReflectionTestUtils.setField(aggregationService, "shardTimeoutMs", 60_000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        corpusStoreService.close();
+    }
+
+    @Test
+    void resolvesSentenceOffsetsLikeTheWorkerSentences() throws IOException {
+        List<String> corpus = corpus();
+        // The sections follow each other in one corpus file, as the producer cuts them
+        StringBuilder file = new StringBuilder("Preamble that no section covers.\n");
+        List<TextProcessingResult> results = new ArrayList<>();
+        List<List<String>> expected = new ArrayList<>();
+        for (int i = 0; i < corpus.size(); i++) {
+            String text = corpus.get(i);
+            List<int[]> spans = sentenceSpans(text);
+            if (spans.isEmpty()) {
+                continue;
+            }
+            List<int[]> sorted = spans.stream()
+                    .sorted(Comparator.comparingInt(span -> regexSentence(text, span).length()))
+                    .toList();
+            int[] pairs = new int[sorted.size() * 2];
+            List<String> sentences = new ArrayList<>();
+            for (int s = 0; s < sorted.size(); s++) {
+                pairs[2 * s] = sorted.get(s)[0];
+                pairs[2 * s + 1] = sorted.get(s)[1] - sorted.get(s)[0];
+                sentences.add(regexSentence(text, sorted.get(s)));
+            }
+
+            TextProcessingResult result = new TextProcessingResult();
+            result.setTaskId(SESSION + "-task-" + i);
+            result.setCorpusRef(SESSION + "-corpus.txt");
+            result.setOffset((long) file.toString().getBytes(StandardCharsets.UTF_8).length);
+            result.setLength(text.getBytes(StandardCharsets.UTF_8).length);
+            result.setSortedSentenceOffsets(pairs);
+            results.add(result);
+            expected.add(sentences);
+            file.append(text);
+        }
+        Files.writeString(store.resolve(SESSION + "-corpus.txt"), file, StandardCharsets.UTF_8);
+
+        AggregatedResult aggregated = aggregate(results);
+
+        assertNull(aggregated.getErrors());
+        List<SectionResult> sections = aggregated.getSectionResults();
+        for (int i = 0; i < sections.size(); i++) {
+            assertEquals(expected.get(i), sections.get(i).getSortedSentences(), sections.get(i).getTaskId());
+            assertNull(sections.get(i).getSortedSentenceOffsets());
+        }
+        assertEquals(expected.stream().mapToInt(List::size).sum(), aggregated.getAllSortedSentences().size());
+    }
+
+    @Test
+    void keepsTheOffsetsAndReportsAnUnreadableCorpus() {
+        TextProcessingResult result = new TextProcessingResult();
+        result.setTaskId(SESSION + "-task-0");
+        result.setCorpusRef(SESSION + "-missing.txt");
+        result.setOffset(0L);
+        result.setLength(10);
+        result.setSortedSentenceOffsets(new int[]{0, 4, 5, 5});
+
+        AggregatedResult aggregated = aggregate(List.of(result));
+
+        assertNotNull(aggregated.getErrors());
+        assertEquals(1, aggregated.getErrors().size());
+        assertTrue(aggregated.getErrors().get(0).contains(SESSION + "-task-0"));
+        SectionResult section = aggregated.getSectionResults().get(0);
+        assertNull(section.getSortedSentences());
+        assertArrayEquals(new int[]{0, 4, 5, 5}, section.getSortedSentenceOffsets());
+    }
+
+    @Test
+    void normalizesTheCorpusSentencesLikeTheRegexSplit() throws IOException {
+        for (String text : corpus()) {
+            for (int[] span : sentenceSpans(text)) {
+                assertEquals(regexSentence(text, span),
+                        AggregationService.normalizeSentence(text, span[0], span[1] - span[0]));
+            }
+        }
+    }
+
+    private AggregatedResult aggregate(List<TextProcessingResult> results) {
+        aggregationService.setExpectedTaskCount(SESSION, results.size());
+        results.forEach(result -> aggregationService.addResult(SESSION, result));
+        return aggregationService.aggregateResults(SESSION);
+    }
+
+    // The sentences of the worker's regex split, as start/end spans of the original text
+    private static List<int[]> sentenceSpans(String text) {
+        int start = 0;
+        int end = text.length();
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        List<int[]> spans = new ArrayList<>();
+        if (start == end) {
+            return spans;
+        }
+        Matcher matcher = SENTENCE_BREAK.matcher(text).region(start, end);
+        int sentenceStart = start;
+        while (matcher.find()) {
+            spans.add(new int[]{sentenceStart, matcher.start()});
+            sentenceStart = matcher.end();
+        }
+        spans.add(new int[]{sentenceStart, end});
+        return spans;
+    }
+
+    private static String regexSentence(String text, int[] span) {
+        String sentence = text.substring(span[0], span[1]).replaceAll("\\s+", " ");
+        return sentence.matches(".*[.!?]$") ? sentence : sentence + ".";
+    }
+
+    /**
+     * The sentence corpus the worker's SentenceIndex is tested on, one text per line with
+     * {@code \n}, {@code \r}, {@code \t}, {@code \f} and {@code \}{@code uXXXX} escapes.
+     */
+    private static List<String> corpus() throws IOException {
+        try (InputStream in = AggregationServiceTest.class.getResourceAsStream("/sentences.txt")) {
+            String content = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            return content.lines().map(AggregationServiceTest::unescape).toList();
+        }
+    }
+
+    private static String unescape(String line) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c != '\\' || i + 1 == line.length()) {
+                text.append(c);
+                continue;
+            }
+            char escape = line.charAt(++i);
+            switch (escape) {
+                case 'n' -> text.append('\n');
+                case 'r' -> text.append('\r');
+                case 't' -> text.append('\t');
+                case 'f' -> text.append('\f');
+                case 'u' -> {
+                    text.append((char) Integer.parseInt(line.substring(i + 1, i + 5), 16));
+                    i += 4;
+                }
+                default -> text.append(escape);
+            }
+        }
+        return text.toString();
+    }
+}
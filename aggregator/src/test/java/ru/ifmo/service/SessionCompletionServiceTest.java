@@ -0,0 +1,203 @@
+package ru.ifmo.service;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.ifmo.dto.AggregatedResult;
+import ru.ifmo.dto.SessionInfo;
+import ru.ifmo.dto.ShardResult;
+import ru.ifmo.dto.TextProcessingResult;
+import ru.ifmo.listener.ResultsListener;
+import ru.ifmo.listener.SessionInfoListener;
+import ru.ifmo.listener.ShardResultsListener;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SessionCompletionServiceTest {
+
+    private static final int TASKS = 300;
+    private static final int RESULT_CONSUMERS = 3;
+
+    @TempDir
+    Path store;
+
+    private CorpusStoreService corpusStoreService;
+    private AggregationService aggregationService;
+    private SessionCompletionService sessionCompletionService;
+    private final List<AggregatedResult> published = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        corpusStoreService = new CorpusStoreService();
+        ReflectionTestUtils.setField(corpusStoreService, "storeDirectory", store.toString());
+        ReflectionTestUtils.setField(corpusStoreService, "maxOpenFiles", 64);
+        aggregationService = new AggregationService(corpusStoreService);
+        ReflectionTestUtils.setField(aggregationService, "globalTopWords", 10);
+        ReflectionTestUtils.setField(aggregationService, "shardTimeoutMs", 60_000L);
+
+        ResultStorageService resultStorageService = new ResultStorageService(null) {
+            @Override
+            public void storeResult(AggregatedResult result) {
+            }
+        };
+        RabbitTemplate rabbitTemplate = new RabbitTemplate() {
+            @Override
+            public void convertAndSend(String exchange, String routingKey, Object message) {
+                published.add((AggregatedResult) message);
+            }
+        };
+        sessionCompletionService = new SessionCompletionService(aggregationService, resultStorageService,
+                rabbitTemplate);
+    }
+
+    @AfterEach
+    void tearDown() {
+        sessionCompletionService.shutdown();
+        corpusStoreService.close();
+    }
+
+    @Test
+    void aggregatesOnceWhenTheSessionInfoArrivesWhileResultsDo() throws Exception {
+        ResultsListener resultsListener = new ResultsListener(aggregationService, sessionCompletionService);
+        SessionInfoListener sessionInfoListener = new SessionInfoListener(aggregationService, sessionCompletionService);
+        ExecutorService consumers = Executors.newFixedThreadPool(RESULT_CONSUMERS + 1);
+        try {
+            for (int round = 0; round < 50; round++) {
+                published.clear();
+                String sessionId = String.format("session-%08x", round);
+
+                List<Future<?>> deliveries = new ArrayList<>();
+                for (int consumer = 0; consumer < RESULT_CONSUMERS; consumer++) {
+                    int first = consumer;
+                    deliveries.add(consumers.submit(() -> {
+                        for (int task = first; task < TASKS; task += RESULT_CONSUMERS) {
+                            resultsListener.receiveResult(result(sessionId, task));
+                        }
+                    }));
+                }
+                // Streaming producers announce the session after publishing its tasks, while results still arrive
+                deliveries.add(consumers.submit(() -> {
+                    while (aggregationService.getResultCount(sessionId) < TASKS / 2) {
+                        Thread.onSpinWait();
+                    }
+                    SessionInfo sessionInfo = new SessionInfo();
+                    sessionInfo.setSessionId(sessionId);
+                    sessionInfo.setExpectedTaskCount(TASKS);
+                    sessionInfoListener.receiveSessionInfo(sessionInfo);
+                }));
+                for (Future<?> delivery : deliveries) {
+                    delivery.get();
+                }
+
+                assertEquals(1, published.size(), "final results of " + sessionId);
+                assertEquals(TASKS, published.getFirst().getTotalSections());
+                assertEquals(Long.valueOf(TASKS), published.getFirst().getTotalWordCount());
+            }
+        } finally {
+            consumers.shutdownNow();
+        }
+    }
+
+    @Test
+    void aggregatesOnceWhenShardResultsAndTheShardDeadlineRaceTheResults() throws Exception {
+        int partitions = 2;
+        long shardTimeoutMs = 5;
+        ReflectionTestUtils.setField(aggregationService, "shufflePartitions", partitions);
+        ReflectionTestUtils.setField(aggregationService, "shardTimeoutMs", shardTimeoutMs);
+        ResultsListener resultsListener = new ResultsListener(aggregationService, sessionCompletionService);
+        ShardResultsListener shardResultsListener = new ShardResultsListener(aggregationService,
+                sessionCompletionService);
+        ExecutorService consumers = Executors.newFixedThreadPool(RESULT_CONSUMERS + 1);
+        Random random = new Random(15);
+        try {
+            for (int round = 0; round < 50; round++) {
+                published.clear();
+                String sessionId = String.format("session-%08x", round);
+                aggregationService.setExpectedTaskCount(sessionId, TASKS);
+
+                List<Future<?>> deliveries = new ArrayList<>();
+                for (int consumer = 0; consumer < RESULT_CONSUMERS; consumer++) {
+                    int first = consumer;
+                    deliveries.add(consumers.submit(() -> {
+                        for (int task = first; task < TASKS; task += RESULT_CONSUMERS) {
+                            resultsListener.receiveResult(result(sessionId, task));
+                        }
+                    }));
+                }
+                // Every other round a shard result is lost, so the deadline timer completes the session
+                int shards = round % 2 == 0 ? partitions : partitions - 1;
+                long shardDelayMs = random.nextInt((int) shardTimeoutMs * 2);
+                deliveries.add(consumers.submit(() -> {
+                    Thread.sleep(shardDelayMs);
+                    for (int shard = 0; shard < shards; shard++) {
+                        shardResultsListener.receiveShardResult(shardResult(sessionId, shard));
+                    }
+                    return null;
+                }));
+                for (Future<?> delivery : deliveries) {
+                    delivery.get();
+                }
+
+                long deadline = System.currentTimeMillis() + 5_000;
+                while (published.isEmpty() && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(1);
+                }
+                // Leaves the timer time to fire a second time
+                Thread.sleep(shardTimeoutMs * 4);
+
+                assertEquals(1, published.size(), "final results of " + sessionId);
+                assertEquals(TASKS, published.getFirst().getTotalSections());
+                // Shards that come after the deadline are left out, and the result says so
+                AggregatedResult result = published.getFirst();
+                assertTrue(result.getExactTopWords() != null || result.getErrors() != null);
+                assertTrue(shards == partitions || result.getExactTopWords() == null);
+            }
+        } finally {
+            consumers.shutdownNow();
+        }
+    }
+
+    @Test
+    void ignoresTriggersOfAnAggregatedSession() {
+        String sessionId = "session-0000abcd";
+        aggregationService.setExpectedTaskCount(sessionId, 1);
+        aggregationService.addResult(sessionId, result(sessionId, 0));
+
+        sessionCompletionService.checkAndTriggerAggregation(sessionId);
+        aggregationService.addResult(sessionId, result(sessionId, 1));
+        sessionCompletionService.checkAndTriggerAggregation(sessionId);
+
+        assertEquals(1, published.size());
+    }
+
+    private static TextProcessingResult result(String sessionId, int task) {
+        TextProcessingResult result = new TextProcessingResult();
+        result.setTaskId(String.format("%s-task-%04d", sessionId, task));
+        result.setWordCount(1);
+        return result;
+    }
+
+    private static ShardResult shardResult(String sessionId, int shard) {
+        ShardResult result = new ShardResult();
+        result.setSessionId(sessionId);
+        result.setShard(shard);
+        result.setTopWords(Map.of("word" + shard, 1));
+        result.setDistinctWords(1);
+        result.setTotalCount(1);
+        return result;
+    }
+}
@@ -1,28 +1,80 @@
 package ru.ifmo.configuration;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
-import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import ru.ifmo.configuration.WireCodecMessageConverter.WireCodec;
 
 @Configuration
+@Slf4j
 public class RabbitConfig {
 
     @Bean
-    public Jackson2JsonMessageConverter messageConverter() {
-        return new Jackson2JsonMessageConverter();
+    public MessageConverter messageConverter(
+            @Value("${rabbitmq.codec:JSON}") WireCodec outboundCodec
+    ) {
+        return new WireCodecMessageConverter(outboundCodec);
+    }
+
+    @Bean
+    public CompressionMetrics compressionMetrics(
+            @Value("${rabbitmq.compression.metrics.log-interval:1000}") long logInterval
+    ) {
+        return new CompressionMetrics(logInterval);
     }
 
     @Bean
-    public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory) {
+    public RabbitTemplate rabbitTemplate(
+            ConnectionFactory connectionFactory,
+            MessageConverter messageConverter,
+            CompressionMetrics compressionMetrics,
+            @Value("${rabbitmq.compression.enabled:false}") boolean compressionEnabled,
+            @Value("${rabbitmq.compression.threshold:4096}") int compressionThreshold,
+            @Value("${rabbitmq.compression.level:1}") int compressionLevel,
+            @Value("${rabbitmq.publisher.confirms.enabled:false}") boolean confirmsEnabled
+    ) {
         RabbitTemplate template = new RabbitTemplate(connectionFactory);
-        template.setMessageConverter(messageConverter());
+        template.setMessageConverter(messageConverter);
+        if (compressionEnabled) {
+            template.setBeforePublishPostProcessors(
+                    new ThresholdDeflaterPostProcessor(compressionLevel, compressionThreshold, compressionMetrics));
+        }
+        if (confirmsEnabled) {
+            // Unroutable tasks come back and are retried by PublishWindow instead of being dropped silently
+            template.setMandatory(true);
+            template.setReturnsCallback(returned -> log.warn("Message returned by broker: {} {} (routing key {})",
+                    returned.getReplyCode(), returned.getReplyText(), returned.getRoutingKey()));
+        }
         return template;
     }
 
+    /**
+     * PublishWindow waits for confirms and returns only when they are enabled, so only then does the
+     * connection factory turn them on; otherwise publishes skip the confirm round-trips.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "rabbitmq.publisher.confirms.enabled", havingValue = "true")
+    public static BeanPostProcessor publisherConfirms() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof CachingConnectionFactory connectionFactory) {
+                    connectionFactory.setPublisherConfirmType(CachingConnectionFactory.ConfirmType.CORRELATED);
+                    connectionFactory.setPublisherReturns(true);
+                }
+                return bean;
+            }
+        };
+    }
+
     @Bean
     public DirectExchange tasksExchange(
             @Value("${rabbitmq.tasks.exchange.name}") String exchangeName
@@ -36,4 +88,29 @@ public class RabbitConfig {
     ) {
         return new DirectExchange(exchangeName);
     }
+
+    @Bean
+    public DirectExchange timingExchange(
+            @Value("${rabbitmq.timing.exchange.name}") String exchangeName
+    ) {
+        return new DirectExchange(exchangeName);
+    }
+
+    @Bean
+    public Queue timingQueue(
+            @Value("${rabbitmq.timing.queue.name}") String queueName,
+            @Value("${rabbitmq.timing.queue.ttl-ms:60000}") int ttlMs
+    ) {
+        // Timings only matter while a session is being split, stale ones expire instead of piling up
+        return QueueBuilder.durable(queueName).ttl(ttlMs).build();
+    }
+
+    @Bean
+    public Binding timingBinding(
+            Queue timingQueue,
+            DirectExchange timingExchange,
+            @Value("${rabbitmq.timing.routing.key}") String routingKey
+    ) {
+        return BindingBuilder.bind(timingQueue).to(timingExchange).with(routingKey);
+    }
 }
@@ -0,0 +1,30 @@
+package ru.ifmo.configuration;
+
+import org.springframework.amqp.core.Correlation;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.support.postprocessor.DeflaterPostProcessor;
+
+/**
+ * Deflates bodies of at least {@code threshold} bytes and marks them with a {@code content-encoding}
+ * header. Smaller bodies are sent as they are, compressing them costs more than it saves.
+ */
+public class ThresholdDeflaterPostProcessor extends DeflaterPostProcessor {
+
+    private final int threshold;
+    private final CompressionMetrics metrics;
+
+    public ThresholdDeflaterPostProcessor(int level, int threshold, CompressionMetrics metrics) {
+        super(level);
+        this.threshold = threshold;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Message postProcessMessage(Message message, Correlation correlation, String exchange, String routingKey) {
+        int originalBytes = message.getBody().length;
+        Message result = originalBytes >= threshold ? postProcessMessage(message) : message;
+        metrics.recordOutbound(exchange == null || exchange.isEmpty() ? routingKey : exchange + "/" + routingKey,
+                originalBytes, result.getBody().length);
+        return result;
+    }
+}
@@ -0,0 +1,110 @@
+package ru.ifmo.controller;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import ru.ifmo.dto.BackpressureStatus;
+import ru.ifmo.dto.JobStatus;
+import ru.ifmo.dto.TaskOperation;
+import ru.ifmo.service.JobStatusService;
+import ru.ifmo.service.MessagePublisherService;
+import ru.ifmo.service.TextProcessingJobService;
+import ru.ifmo.service.TextProcessingJobService.SplitStrategy;
+
+@RestController
+@RequestMapping("/api/jobs")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Jobs", description = "Text processing job submission and status")
+public class TextProcessingController {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final TextProcessingJobService textProcessingJobService;
+    private final JobStatusService jobStatusService;
+    private final MessagePublisherService messagePublisherService;
+
+    @Value("${text.processing.jobs.upload-timeout-ms:3600000}")
+    private long uploadTimeoutMs;
+
+    /**
+     * Splits the request body while it is still arriving. The response is a stream of JSON lines:
+     * the job status with the session ID as soon as the job starts, and the final status once the
+     * whole body has been split and published. {@code operations} selects the analyses the workers
+     * run, e.g. {@code operations=WORD_COUNT,TOP_WORDS}; by default the configured ones.
+     */
+    @Operation(summary = "Submit a text as a streamed request body")
+    @PostMapping(consumes = {MediaType.TEXT_PLAIN_VALUE, MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<ResponseBodyEmitter> submitJob(
+            HttpServletRequest request,
+            @RequestParam(defaultValue = "BY_PARAGRAPHS") SplitStrategy strategy,
+            @RequestParam(defaultValue = "1000") int splitSize,
+            @RequestParam(required = false) Set<TaskOperation> operations,
+            @RequestParam(required = false) String description
+    ) throws IOException {
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(uploadTimeoutMs);
+        String jobDescription = description != null ? description : "Uploaded text";
+
+        textProcessingJobService.submitTextStream(request.getInputStream(), strategy, splitSize, operations,
+                jobDescription,
+                status -> {
+                    try {
+                        sendLine(emitter, status);
+                    } catch (IOException e) {
+                        emitter.completeWithError(e);
+                    }
+                },
+                finalStatus -> {
+                    try {
+                        sendLine(emitter, finalStatus);
+                        emitter.complete();
+                    } catch (IOException e) {
+                        // The client is gone; the job itself has finished regardless
+                        log.debug("Could not send final status of {}: {}", finalStatus.getSessionId(), e.getMessage());
+                        emitter.completeWithError(e);
+                    }
+                });
+
+        return ResponseEntity.accepted().contentType(NDJSON).body(emitter);
+    }
+
+    @Operation(summary = "Get the status of a job")
+    @GetMapping("/{sessionId}")
+    public ResponseEntity<JobStatus> getJob(@PathVariable String sessionId) {
+        JobStatus status = jobStatusService.getStatus(sessionId);
+        return status != null ? ResponseEntity.ok(status) : ResponseEntity.notFound().build();
+    }
+
+    @Operation(summary = "List running and recently finished jobs")
+    @GetMapping
+    public List<JobStatus> getJobs() {
+        return jobStatusService.getStatuses();
+    }
+
+    @Operation(summary = "Get the fill level of the worker queue")
+    @GetMapping("/backpressure")
+    public BackpressureStatus getBackpressure() {
+        return messagePublisherService.getBackpressureStatus();
+    }
+
+    private void sendLine(ResponseBodyEmitter emitter, JobStatus status) throws IOException {
+        emitter.send(status, MediaType.APPLICATION_JSON);
+        emitter.send("\n", MediaType.TEXT_PLAIN);
+    }
+}
@@ -0,0 +1,19 @@
+package ru.ifmo.dto;
+
+import lombok.Data;
+
+@Data
+public class BackpressureStatus {
+    private boolean enabled;
+    private String queueName;
+    private long targetDepth;
+    private long resumeDepth;
+    private boolean depthKnown; // false when the last passive declare failed; publishing is not throttled then
+    private long queueDepth; // as of the last passive declare
+    private long estimatedDepth; // queueDepth plus tasks published since
+    private int consumers;
+    private double fillLevel; // estimatedDepth / targetDepth
+    private boolean paused;
+    private long pauseCount;
+    private long totalPausedMs;
+}
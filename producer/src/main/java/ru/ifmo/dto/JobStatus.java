@@ -0,0 +1,22 @@
+package ru.ifmo.dto;
+
+import java.time.LocalDateTime;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class JobStatus {
+    private String sessionId;
+    private String description;
+    private String strategy;
+    private String state; // RECEIVING, COMPLETED, FAILED
+    private long bytesReceived;
+    private long tasksPublished;
+    private Integer expectedTaskCount; // set once the whole body has been split
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private String error;
+    private PublishStats publishStats;
+}
@@ -0,0 +1,17 @@
+package ru.ifmo.dto;
+
+import lombok.Data;
+
+@Data
+public class PublishStats {
+    private String sessionId;
+    private boolean confirmed; // false when tasks were published without publisher confirms
+    private long publishedTasks;
+    private long confirmedTasks;
+    private long retriedTasks;
+    private long failedTasks;
+    private long durationMs;
+    private double publishRatePerSecond;
+    private double averageConfirmLatencyMs;
+    private double maxConfirmLatencyMs;
+}
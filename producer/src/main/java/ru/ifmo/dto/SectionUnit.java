@@ -0,0 +1,11 @@
+package ru.ifmo.dto;
+
+/**
+ * The units the producer cut a section into. Inline sections join them with a blank line
+ * (paragraphs) or a single space (sentences and words).
+ */
+public enum SectionUnit {
+    PARAGRAPH,
+    SENTENCE,
+    WORD
+}
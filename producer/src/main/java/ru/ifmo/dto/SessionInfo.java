@@ -10,4 +10,5 @@ public class SessionInfo {
     private int expectedTaskCount;
     private String description;
     private LocalDateTime startTime;
+    private String error; // the producer failed part-way: only expectedTaskCount tasks were published
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+package ru.ifmo.dto;
+
+import lombok.Data;
+
+@Data
+public class TaskTiming {
+    private String taskId;
+    private long processingTimeMicros;
+}
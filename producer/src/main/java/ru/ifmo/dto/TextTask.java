@@ -1,11 +1,20 @@
 package ru.ifmo.dto;
 
+import java.util.Set;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 
 @Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class TextTask {
     private String taskId;
-    private String text;
+    private String text; // null in claim-check mode, the worker reads the section from the corpus store
     private int topN; // for top-N words task, default will be handled in service
     private String nameReplacement; // for name replacement task, default will be handled in service
-}
\ No newline at end of file
+    private String corpusRef; // claim-check mode: corpus file relative to the shared corpus store
+    private long offset; // claim-check mode: byte offset of the section in the corpus
+    private int length; // claim-check mode: byte length of the section
+    private SectionUnit unit; // claim-check mode: the units of the section, which the worker joins like inline text
+    private Set<TaskOperation> operations; // null runs every operation
+}
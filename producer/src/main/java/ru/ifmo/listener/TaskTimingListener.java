@@ -0,0 +1,19 @@
+package ru.ifmo.listener;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+import ru.ifmo.dto.TaskTiming;
+import ru.ifmo.service.AdaptiveSizingService;
+
+@Component
+@RequiredArgsConstructor
+public class TaskTimingListener {
+
+    private final AdaptiveSizingService adaptiveSizingService;
+
+    @RabbitListener(queues = "${rabbitmq.timing.queue.name}")
+    public void receiveTiming(TaskTiming timing) {
+        adaptiveSizingService.onTaskTiming(timing);
+    }
+}
@@ -0,0 +1,59 @@
+package ru.ifmo.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.ifmo.dto.TaskTiming;
+import ru.ifmo.split.AdaptiveSectionSizer;
+
+@Service
+@Slf4j
+public class AdaptiveSizingService {
+
+    @Value("${text.processing.adaptive.target-latency-ms:50}")
+    private long targetLatencyMs;
+
+    @Value("${text.processing.adaptive.min-section-chars:200}")
+    private int minSectionChars;
+
+    @Value("${text.processing.adaptive.max-section-chars:200000}")
+    private int maxSectionChars;
+
+    // Sections cut without any timing before a session warns that none arrive (0 = never)
+    @Value("${text.processing.adaptive.timing-warn-tasks:1000}")
+    private long timingWarnTasks;
+
+    private final Map<String, AdaptiveSectionSizer> sizers = new ConcurrentHashMap<>();
+
+    public AdaptiveSectionSizer open(String sessionId, int initialSize) {
+        AdaptiveSectionSizer sizer = new AdaptiveSectionSizer(sessionId, initialSize, targetLatencyMs,
+                minSectionChars, maxSectionChars, timingWarnTasks);
+        sizers.put(sessionId, sizer);
+        return sizer;
+    }
+
+    /**
+     * Stops adapting the session; timings that arrive later are ignored.
+     */
+    public void close(String sessionId) {
+        sizers.remove(sessionId);
+    }
+
+    public void onTaskTiming(TaskTiming timing) {
+        String taskId = timing.getTaskId();
+        int taskSuffix = taskId != null ? taskId.lastIndexOf("-task-") : -1;
+        if (taskSuffix < 0) {
+            log.warn("Ignoring timing for unexpected task id: {}", taskId);
+            return;
+        }
+
+        AdaptiveSectionSizer sizer = sizers.get(taskId.substring(0, taskSuffix));
+        if (sizer != null) {
+            sizer.taskProcessed(taskId, TimeUnit.MICROSECONDS.toNanos(timing.getProcessingTimeMicros()));
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package ru.ifmo.service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+@Service
+@Slf4j
+public class CorpusStoreService {
+
+    // Entries are named <session ID>-<file name>, see TextSplitterService.generateSessionId
+    private static final Pattern ENTRY_NAME = Pattern.compile("session-[0-9a-f]{8}-.+");
+    private static final Pattern PRODUCER_ID = Pattern.compile("[A-Za-z0-9_-][A-Za-z0-9._-]*");
+
+    @Value("${text.processing.claim-check.dir:corpora}")
+    private String storeDirectory;
+
+    // Entries go to a directory of this name inside the store; producers sharing a store need distinct IDs
+    @Value("${text.processing.claim-check.producer-id:producer}")
+    private String producerId;
+
+    // Store entries are deleted this long after their session registered them (0 = never)
+    @Value("${text.processing.claim-check.ttl-ms:86400000}")
+    private long ttlMs;
+
+    // Registration time of every entry this producer is responsible for
+    private final Map<Path, Long> entries = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService cleaner;
+
+    @PostConstruct
+    public void init() {
+        if (!PRODUCER_ID.matcher(producerId).matches()) {
+            throw new IllegalStateException("text.processing.claim-check.producer-id must be a plain directory name: "
+                    + producerId);
+        }
+        if (ttlMs <= 0) {
+            return;
+        }
+        // Entries this producer left in an earlier run get a full TTL from now, their sessions may still
+        // be running. Other producers' directories are theirs to clean up
+        Path directory = entryDirectory();
+        if (Files.isDirectory(directory)) {
+            long now = System.currentTimeMillis();
+            try (DirectoryStream<Path> existing = Files.newDirectoryStream(directory,
+                    entry -> ENTRY_NAME.matcher(entry.getFileName().toString()).matches())) {
+                existing.forEach(entry -> entries.put(entry, now));
+            } catch (IOException e) {
+                log.warn("Failed to list corpus store directory {}: {}", directory, e.getMessage());
+            }
+        }
+
+        cleaner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "corpus-store-cleaner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000, Math.min(ttlMs / 4, TimeUnit.HOURS.toMillis(1)));
+        cleaner.scheduleWithFixedDelay(this::deleteExpired, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (cleaner != null) {
+            cleaner.shutdownNow();
+        }
+    }
+
+    /**
+     * Makes the file available to the workers through the shared store and returns its reference,
+     * {@code <producer ID>/<session ID>-<file name>}. The file is hard-linked or, across filesystems,
+     * copied into the store, also when it is already inside the store. Every session thus reads its
+     * own entry, which neither changes when the original file is replaced nor outlives the TTL.
+     */
+    public String register(String filePath, String sessionId) throws IOException {
+        Path directory = entryDirectory();
+        Path file = Paths.get(filePath).toAbsolutePath().normalize();
+        if (!Files.exists(file)) {
+            throw new IOException("File not found: " + filePath);
+        }
+
+        Files.createDirectories(directory);
+        String entryName = sessionId + "-" + file.getFileName();
+        String corpusRef = producerId + "/" + entryName;
+        Path target = directory.resolve(entryName);
+        try {
+            Files.createLink(target, file);
+            log.info("Linked corpus {} into the store as {}", filePath, corpusRef);
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(file, target);
+            log.info("Copied corpus {} into the store as {}", filePath, corpusRef);
+        }
+        entries.put(target, System.currentTimeMillis());
+        return corpusRef;
+    }
+
+    void deleteExpired() {
+        long expiredBefore = System.currentTimeMillis() - ttlMs;
+        entries.forEach((entry, registered) -> {
+            if (registered >= expiredBefore) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(entry);
+                entries.remove(entry);
+                log.info("Deleted corpus store entry {} after {} ms", entry.getFileName(), ttlMs);
+            } catch (IOException e) {
+                log.warn("Failed to delete corpus store entry {}: {}", entry, e.getMessage());
+            }
+        });
+    }
+
+    private Path entryDirectory() {
+        return Paths.get(storeDirectory).toAbsolutePath().normalize().resolve(producerId);
+    }
+}
@@ -0,0 +1,90 @@
+package ru.ifmo.service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ru.ifmo.dto.JobStatus;
+
+/**
+ * Live progress of a submitted job, updated from the job's thread and read by status requests.
+ */
+class JobProgress {
+
+    private final String sessionId;
+    private final String description;
+    private final String strategy;
+    private final LocalDateTime startTime = LocalDateTime.now();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong tasksPublished = new AtomicLong();
+
+    private volatile String state = "RECEIVING";
+    private volatile Integer expectedTaskCount;
+    private volatile LocalDateTime endTime;
+    private volatile String error;
+
+    JobProgress(String sessionId, String description, String strategy) {
+        this.sessionId = sessionId;
+        this.description = description;
+        this.strategy = strategy;
+    }
+
+    InputStream track(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    bytesReceived.incrementAndGet();
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0) {
+                    bytesReceived.addAndGet(n);
+                }
+                return n;
+            }
+        };
+    }
+
+    void taskPublished() {
+        tasksPublished.incrementAndGet();
+    }
+
+    void completed(int taskCount) {
+        expectedTaskCount = taskCount;
+        endTime = LocalDateTime.now();
+        state = "COMPLETED";
+    }
+
+    void failed(Exception e) {
+        error = e.getMessage();
+        endTime = LocalDateTime.now();
+        state = "FAILED";
+    }
+
+    boolean isFinished() {
+        return endTime != null;
+    }
+
+    JobStatus toStatus() {
+        JobStatus status = new JobStatus();
+        status.setSessionId(sessionId);
+        status.setDescription(description);
+        status.setStrategy(strategy);
+        status.setState(state);
+        status.setBytesReceived(bytesReceived.get());
+        status.setTasksPublished(tasksPublished.get());
+        status.setExpectedTaskCount(expectedTaskCount);
+        status.setStartTime(startTime);
+        status.setEndTime(endTime);
+        status.setError(error);
+        return status;
+    }
+}
@@ -0,0 +1,74 @@
+package ru.ifmo.service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.ifmo.dto.JobStatus;
+import ru.ifmo.service.TextProcessingJobService.SplitStrategy;
+
+/**
+ * Tracks submitted jobs. Only the latest {@code historySize} finished jobs are kept.
+ */
+@Service
+@RequiredArgsConstructor
+public class JobStatusService {
+
+    private final MessagePublisherService messagePublisherService;
+
+    @Value("${text.processing.jobs.history-size:1000}")
+    private int historySize;
+
+    private final Map<String, JobProgress> jobs = new LinkedHashMap<>();
+
+    synchronized JobProgress start(String sessionId, String description, SplitStrategy strategy) {
+        JobProgress progress = new JobProgress(sessionId, description, strategy.name());
+        jobs.put(sessionId, progress);
+        evictFinished();
+        return progress;
+    }
+
+    public JobStatus getStatus(String sessionId) {
+        JobProgress progress;
+        synchronized (this) {
+            progress = jobs.get(sessionId);
+        }
+        if (progress == null) {
+            return null;
+        }
+        JobStatus status = progress.toStatus();
+        status.setPublishStats(messagePublisherService.getPublishStats(sessionId));
+        return status;
+    }
+
+    public List<JobStatus> getStatuses() {
+        List<String> sessionIds;
+        synchronized (this) {
+            sessionIds = new ArrayList<>(jobs.keySet());
+        }
+        List<JobStatus> statuses = new ArrayList<>(sessionIds.size());
+        for (String sessionId : sessionIds) {
+            JobStatus status = getStatus(sessionId);
+            if (status != null) {
+                statuses.add(status);
+            }
+        }
+        return statuses;
+    }
+
+    private void evictFinished() {
+        long finished = jobs.values().stream().filter(JobProgress::isFinished).count();
+        Iterator<JobProgress> it = jobs.values().iterator();
+        while (finished > historySize && it.hasNext()) {
+            if (it.next().isFinished()) {
+                it.remove();
+                finished--;
+            }
+        }
+    }
+}
@@ -1,12 +1,16 @@
 package ru.ifmo.service;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import ru.ifmo.dto.BackpressureStatus;
+import ru.ifmo.dto.PublishStats;
 import ru.ifmo.dto.SessionInfo;
 import ru.ifmo.dto.TextTask;
 
@@ -16,6 +20,7 @@ import ru.ifmo.dto.TextTask;
 public class MessagePublisherService {
     
     private final RabbitTemplate rabbitTemplate;
+    private final QueueDepthThrottle queueDepthThrottle;
     
     @Value("${rabbitmq.tasks.exchange.name}")
     private String tasksExchange;
@@ -28,6 +33,26 @@ public class MessagePublisherService {
 
     @Value("${rabbitmq.queue.name}")
     private String queueName;
+
+    @Value("${rabbitmq.publisher.confirms.enabled:false}")
+    private boolean confirmsEnabled;
+
+    @Value("${rabbitmq.publisher.max-in-flight:1000}")
+    private int maxInFlight;
+
+    @Value("${rabbitmq.publisher.max-retries:3}")
+    private int maxRetries;
+
+    @Value("${rabbitmq.publisher.confirm-timeout-ms:30000}")
+    private long confirmTimeoutMs;
+
+    @Value("${rabbitmq.queue.max-priority:0}")
+    private int maxPriority;
+
+    @Value("${rabbitmq.scheduling.priority-base-tasks:16}")
+    private int priorityBaseTasks;
+
+    private final Map<String, PublishStats> publishStats = new ConcurrentHashMap<>();
     
     public void publishSessionInfo(SessionInfo sessionInfo) {
         try {
@@ -41,33 +66,33 @@ public class MessagePublisherService {
         }
     }
     
-    public void publishTasks(List<TextTask> tasks) {
+    public PublishWindow openWindow(String sessionId) {
+        return new PublishWindow(rabbitTemplate, queueDepthThrottle, queueName, sessionId,
+                confirmsEnabled, maxInFlight, maxRetries, confirmTimeoutMs, maxPriority, priorityBaseTasks,
+                stats -> publishStats.put(stats.getSessionId(), stats));
+    }
+
+    public PublishStats publishTasks(String sessionId, List<TextTask> tasks) {
         if (tasks == null || tasks.isEmpty()) {
             log.warn("No tasks to publish");
-            return;
+            return null;
         }
-        
+
         log.info("Publishing {} tasks to exchange {}", tasks.size(), tasksExchange);
-        
-        int successCount = 0;
-        int failureCount = 0;
-        
-        for (TextTask task : tasks) {
-            try {
-                rabbitTemplate.convertAndSend(queueName, task);
-                successCount++;
-                log.debug("Published task: {}", task.getTaskId());
-            } catch (Exception e) {
-                failureCount++;
-                log.error("Failed to publish task {}: {}", task.getTaskId(), e.getMessage(), e);
+
+        try (PublishWindow window = openWindow(sessionId)) {
+            for (TextTask task : tasks) {
+                window.publish(task);
             }
+            return window.complete();
         }
-        
-        log.info("Task publishing completed. Success: {}, Failures: {}", successCount, failureCount);
-        
-        if (failureCount > 0) {
-            throw new RuntimeException(String.format("Failed to publish %d out of %d tasks", 
-                                                    failureCount, tasks.size()));
-        }
+    }
+
+    public PublishStats getPublishStats(String sessionId) {
+        return publishStats.get(sessionId);
+    }
+
+    public BackpressureStatus getBackpressureStatus() {
+        return queueDepthThrottle.getStatus();
     }
 }
\ No newline at end of file
@@ -0,0 +1,263 @@
+package ru.ifmo.service;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import ru.ifmo.dto.PublishStats;
+import ru.ifmo.dto.TextTask;
+
+/**
+ * Publishes the tasks of one session. With confirms enabled up to {@code maxInFlight} tasks
+ * may be unconfirmed at a time; nacked and returned tasks are resent up to {@code maxRetries}
+ * times from the publishing thread. New tasks wait for room in the worker queue first.
+ * <p>
+ * With {@code maxPriority > 0} the first {@code priorityBase} tasks of the session get the top
+ * priority and every further doubling of the task count lowers it by one, so the tasks of a
+ * small session overtake the backlog of a large one. Top priority tasks also skip the queue
+ * depth throttle. Not thread-safe: a session is published from one thread.
+ * <p>
+ * Closing a window that was not completed completes it, so a session whose split fails still
+ * waits for the tasks already in flight and reports its stats.
+ */
+@Slf4j
+public class PublishWindow implements AutoCloseable {
+
+    private final RabbitTemplate rabbitTemplate;
+    private final QueueDepthThrottle throttle;
+    private final String routingKey;
+    private final String sessionId;
+    private final boolean confirms;
+    private final int maxInFlight;
+    private final int maxRetries;
+    private final long confirmTimeoutNanos;
+    private final int maxPriority;
+    private final int priorityBase;
+    private final Consumer<PublishStats> statsListener;
+
+    private final Semaphore permits;
+    private boolean completed;
+    private final Queue<PendingTask> retries = new ConcurrentLinkedQueue<>();
+
+    private final long startNanos = System.nanoTime();
+    private final AtomicLong lastProgressNanos = new AtomicLong(startNanos);
+    private final LongAdder published = new LongAdder();
+    private final LongAdder confirmed = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder confirmsReceived = new LongAdder();
+    private final LongAdder confirmLatencyNanos = new LongAdder();
+    private final LongAccumulator maxConfirmLatencyNanos = new LongAccumulator(Math::max, 0);
+
+    PublishWindow(RabbitTemplate rabbitTemplate, QueueDepthThrottle throttle, String routingKey, String sessionId,
+                  boolean confirms, int maxInFlight, int maxRetries, long confirmTimeoutMs,
+                  int maxPriority, int priorityBase, Consumer<PublishStats> statsListener) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.throttle = throttle;
+        this.routingKey = routingKey;
+        this.sessionId = sessionId;
+        this.confirms = confirms;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.maxRetries = maxRetries;
+        this.confirmTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(confirmTimeoutMs);
+        this.maxPriority = maxPriority;
+        this.priorityBase = Math.max(1, priorityBase);
+        this.statsListener = statsListener;
+        this.permits = new Semaphore(this.maxInFlight);
+    }
+
+    public void publish(TextTask task) {
+        int priority = priority(published.sum());
+        throttle.awaitCapacity(maxPriority > 0 && priority == maxPriority);
+        if (!confirms) {
+            sendUnconfirmed(task, priority);
+            return;
+        }
+        resendRetries();
+        send(new PendingTask(task, 0, priority));
+    }
+
+    /**
+     * Waits until every task is confirmed or has failed for good.
+     *
+     * @throws RuntimeException if some tasks could not be published
+     */
+    public PublishStats complete() {
+        completed = true;
+        long unconfirmed = 0;
+        if (confirms) {
+            while (true) {
+                resendRetries();
+                if (tryAcquireAll()) {
+                    permits.release(maxInFlight);
+                    if (retries.isEmpty()) {
+                        break;
+                    }
+                } else if (System.nanoTime() - lastProgressNanos.get() > confirmTimeoutNanos) {
+                    unconfirmed = maxInFlight - permits.availablePermits();
+                    log.error("Session {}: {} tasks still unconfirmed after {} ms without progress",
+                            sessionId, unconfirmed, TimeUnit.NANOSECONDS.toMillis(confirmTimeoutNanos));
+                    break;
+                }
+            }
+        }
+
+        PublishStats stats = buildStats();
+        statsListener.accept(stats);
+        log.info("Session {} publishing completed: {} tasks in {} ms ({} tasks/s), confirmed: {}, retried: {}, " +
+                        "failed: {}, avg confirm latency: {} ms, max confirm latency: {} ms",
+                sessionId, stats.getPublishedTasks(), stats.getDurationMs(),
+                String.format("%.1f", stats.getPublishRatePerSecond()), stats.getConfirmedTasks(),
+                stats.getRetriedTasks(), stats.getFailedTasks(),
+                String.format("%.2f", stats.getAverageConfirmLatencyMs()),
+                String.format("%.2f", stats.getMaxConfirmLatencyMs()));
+
+        long failures = stats.getFailedTasks() + unconfirmed;
+        if (failures > 0) {
+            throw new RuntimeException(String.format("Failed to publish %d out of %d tasks",
+                    failures, stats.getPublishedTasks()));
+        }
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        if (!completed) {
+            complete();
+        }
+    }
+
+    private void sendUnconfirmed(TextTask task, int priority) {
+        published.increment();
+        try {
+            rabbitTemplate.convertAndSend(routingKey, task, withPriority(priority));
+            log.debug("Published task: {}", task.getTaskId());
+        } catch (Exception e) {
+            failed.increment();
+            log.error("Failed to publish task {}: {}", task.getTaskId(), e.getMessage(), e);
+        }
+    }
+
+    private void send(PendingTask pending) {
+        acquirePermit();
+        if (pending.attempt() == 0) {
+            published.increment();
+        }
+
+        CorrelationData correlationData = new CorrelationData(pending.task().getTaskId() + "#" + pending.attempt());
+        long sentNanos = System.nanoTime();
+        correlationData.getFuture().whenComplete((confirm, ex) -> {
+            boolean acked = ex == null && confirm.isAck() && correlationData.getReturned() == null;
+            String reason = ex != null ? ex.getMessage()
+                    : correlationData.getReturned() != null ? "returned: " + correlationData.getReturned().getReplyText()
+                    : confirm.getReason();
+            onConfirm(pending, sentNanos, acked, reason);
+        });
+
+        try {
+            rabbitTemplate.convertAndSend(routingKey, pending.task(), withPriority(pending.priority()), correlationData);
+        } catch (Exception e) {
+            // Counts as a nack, unless the template already settled the correlation, e.g. when the
+            // channel closed mid-publish: a future completes once, so the task is handled once
+            correlationData.getFuture().complete(new CorrelationData.Confirm(false, e.getMessage()));
+        }
+    }
+
+    private void onConfirm(PendingTask pending, long sentNanos, boolean acked, String reason) {
+        long now = System.nanoTime();
+        lastProgressNanos.set(now);
+        confirmsReceived.increment();
+        confirmLatencyNanos.add(now - sentNanos);
+        maxConfirmLatencyNanos.accumulate(now - sentNanos);
+
+        if (acked) {
+            confirmed.increment();
+        } else if (pending.attempt() < maxRetries) {
+            log.warn("Task {} not confirmed ({}), retry {}/{}", pending.task().getTaskId(), reason,
+                    pending.attempt() + 1, maxRetries);
+            retried.increment();
+            retries.add(new PendingTask(pending.task(), pending.attempt() + 1, pending.priority()));
+        } else {
+            log.error("Task {} not confirmed after {} attempts: {}", pending.task().getTaskId(),
+                    pending.attempt() + 1, reason);
+            failed.increment();
+        }
+        // Released last so that complete() never sees a free window with a retry still missing
+        permits.release();
+    }
+
+    private int priority(long taskIndex) {
+        if (maxPriority <= 0) {
+            return 0;
+        }
+        long doublings = 63 - Long.numberOfLeadingZeros(taskIndex / priorityBase + 1);
+        return (int) Math.max(0, maxPriority - doublings);
+    }
+
+    private MessagePostProcessor withPriority(int priority) {
+        return message -> {
+            if (maxPriority > 0) {
+                message.getMessageProperties().setPriority(priority);
+            }
+            return message;
+        };
+    }
+
+    private void resendRetries() {
+        PendingTask pending;
+        while ((pending = retries.poll()) != null) {
+            send(pending);
+        }
+    }
+
+    private void acquirePermit() {
+        try {
+            if (!permits.tryAcquire(confirmTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new RuntimeException(String.format("Session %s: no publisher confirm received for %d ms",
+                        sessionId, TimeUnit.NANOSECONDS.toMillis(confirmTimeoutNanos)));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for publisher confirms", e);
+        }
+    }
+
+    private boolean tryAcquireAll() {
+        try {
+            return permits.tryAcquire(maxInFlight, 50, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for publisher confirms", e);
+        }
+    }
+
+    private PublishStats buildStats() {
+        long durationNanos = System.nanoTime() - startNanos;
+        long confirmCount = confirmsReceived.sum();
+
+        PublishStats stats = new PublishStats();
+        stats.setSessionId(sessionId);
+        stats.setConfirmed(confirms);
+        stats.setPublishedTasks(published.sum());
+        stats.setConfirmedTasks(confirmed.sum());
+        stats.setRetriedTasks(retried.sum());
+        stats.setFailedTasks(failed.sum());
+        stats.setDurationMs(TimeUnit.NANOSECONDS.toMillis(durationNanos));
+        stats.setPublishRatePerSecond(durationNanos > 0 ? published.sum() * 1e9 / durationNanos : 0.0);
+        stats.setAverageConfirmLatencyMs(confirmCount > 0 ? confirmLatencyNanos.sum() / 1e6 / confirmCount : 0.0);
+        stats.setMaxConfirmLatencyMs(maxConfirmLatencyNanos.get() / 1e6);
+        return stats;
+    }
+
+    private record PendingTask(TextTask task, int attempt, int priority) {
+    }
+}
@@ -0,0 +1,182 @@
+package ru.ifmo.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.ifmo.dto.BackpressureStatus;
+
+/**
+ * Keeps the worker queue around {@code targetDepth} messages. The depth is read by a passive
+ * declare at most every {@code pollIntervalMs}; in between, tasks published since the last read
+ * are added to it. Once the target is reached publishing pauses until the queue drains to
+ * {@code resumeDepth}. One caller at a time reads the depth, outside any lock; the lock is only
+ * held to wait for the next read, so {@link #getStatus()} never blocks and shows the pause.
+ * Urgent tasks of other sessions pass while a large session is paused.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class QueueDepthThrottle {
+
+    private final AmqpAdmin amqpAdmin;
+
+    @Value("${rabbitmq.queue.name}")
+    private String queueName;
+
+    @Value("${rabbitmq.backpressure.enabled:false}")
+    private boolean enabled;
+
+    @Value("${rabbitmq.backpressure.target-depth:2000}")
+    private long targetDepth;
+
+    @Value("${rabbitmq.backpressure.resume-depth:1000}")
+    private long resumeDepth;
+
+    @Value("${rabbitmq.backpressure.poll-interval-ms:200}")
+    private long pollIntervalMs;
+
+    private final AtomicBoolean polling = new AtomicBoolean();
+    private final AtomicLong publishedSincePoll = new AtomicLong();
+    private volatile boolean depthKnown;
+    private volatile long queueDepth;
+    private volatile int consumers;
+    private volatile long lastPollNanos;
+
+    // Signalled after every read of the depth; the pause statistics change under the lock only
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition polled = lock.newCondition();
+    private int waiting;
+    private long pausedSinceNanos;
+    private volatile boolean paused;
+    private volatile long pauseCount;
+    private volatile long totalPausedNanos;
+
+    /**
+     * Blocks until the worker queue has room for one more task and counts that task as published.
+     * Urgent tasks are counted but never wait.
+     */
+    public void awaitCapacity(boolean urgent) {
+        if (!enabled) {
+            return;
+        }
+        pollIfDue();
+
+        if (!urgent && depthKnown && queueDepth + publishedSincePoll.get() >= targetDepth) {
+            waitForDrain();
+        }
+        publishedSincePoll.incrementAndGet();
+    }
+
+    public BackpressureStatus getStatus() {
+        long estimatedDepth = queueDepth + publishedSincePoll.get();
+
+        BackpressureStatus status = new BackpressureStatus();
+        status.setEnabled(enabled);
+        status.setQueueName(queueName);
+        status.setTargetDepth(targetDepth);
+        status.setResumeDepth(resumeDepth);
+        status.setDepthKnown(depthKnown);
+        status.setQueueDepth(queueDepth);
+        status.setEstimatedDepth(estimatedDepth);
+        status.setConsumers(consumers);
+        status.setFillLevel(targetDepth > 0 ? (double) estimatedDepth / targetDepth : 0.0);
+        status.setPaused(paused);
+        status.setPauseCount(pauseCount);
+        status.setTotalPausedMs(TimeUnit.NANOSECONDS.toMillis(totalPausedNanos));
+        return status;
+    }
+
+    private void waitForDrain() {
+        long pausedAt = System.nanoTime();
+        lock.lock();
+        try {
+            if (waiting++ == 0) {
+                paused = true;
+                pausedSinceNanos = pausedAt;
+                pauseCount++;
+            }
+        } finally {
+            lock.unlock();
+        }
+        log.info("Pausing publishing: {} has ~{} messages (target {})", queueName,
+                queueDepth + publishedSincePoll.get(), targetDepth);
+
+        try {
+            do {
+                awaitNextPoll();
+                pollIfDue();
+                if (depthKnown && consumers == 0) {
+                    log.warn("Publishing paused and {} has no consumers", queueName);
+                }
+            } while (depthKnown && queueDepth > resumeDepth);
+        } finally {
+            lock.lock();
+            try {
+                if (--waiting == 0) {
+                    paused = false;
+                    totalPausedNanos += System.nanoTime() - pausedSinceNanos;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        log.info("Resuming publishing: {} drained to {} messages after {} ms", queueName, queueDepth,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pausedAt));
+    }
+
+    // The broker call runs outside the lock; callers that find another read in progress go on
+    private void pollIfDue() {
+        if (System.nanoTime() - lastPollNanos < TimeUnit.MILLISECONDS.toNanos(pollIntervalMs)
+                || !polling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            poll();
+        } finally {
+            polling.set(false);
+        }
+
+        lock.lock();
+        try {
+            polled.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void poll() {
+        lastPollNanos = System.nanoTime();
+        try {
+            QueueInformation info = amqpAdmin.getQueueInfo(queueName);
+            depthKnown = info != null;
+            queueDepth = info != null ? info.getMessageCount() : 0;
+            consumers = info != null ? info.getConsumerCount() : 0;
+        } catch (Exception e) {
+            log.warn("Could not read depth of {}: {}", queueName, e.getMessage());
+            depthKnown = false;
+            queueDepth = 0;
+        }
+        publishedSincePoll.set(0);
+    }
+
+    private void awaitNextPoll() {
+        lock.lock();
+        try {
+            polled.await(pollIntervalMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for " + queueName + " to drain", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -3,13 +3,17 @@ package ru.ifmo.service;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
+import ru.ifmo.service.TextProcessingJobService.SplitMode;
+import ru.ifmo.service.TextProcessingJobService.SplitStrategy;
 
 @Service
 @RequiredArgsConstructor
@@ -17,6 +21,12 @@ import org.springframework.stereotype.Service;
 public class StartupTextProcessingService {
     
     private final TextProcessingJobService textProcessingJobService;
+
+    @Value("${text.processing.split.mode:IN_MEMORY}")
+    private SplitMode splitMode;
+
+    @Value("${text.processing.claim-check.enabled:false}")
+    private boolean claimCheckEnabled;
     
     @EventListener(ApplicationReadyEvent.class)
     public void processDefaultTextOnStartup() {
@@ -28,23 +38,35 @@ public class StartupTextProcessingService {
             if (resource.exists()) {
                 log.info("Found sample text file, processing...");
                 
-                // Copy to temp file for processing
-                Path tempFile = Files.createTempFile("big", ".txt");
-                Files.copy(resource.getInputStream(), tempFile, 
-                          java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-                
-                // Process the file
-                String sessionId = textProcessingJobService.processTextFile(
-                    tempFile.toString(), 
-                    TextProcessingJobService.SplitStrategy.BY_PARAGRAPHS, 
-                    1000
-                );
+                String sessionId;
+                if (streamsResource()) {
+                    // Split the resource straight from its stream, no temp copy needed
+                    sessionId = textProcessingJobService.submitTextStream(
+                        resource.getInputStream(),
+                        SplitStrategy.BY_PARAGRAPHS,
+                        1000,
+                        "Sample text file: big.txt",
+                        status -> { },
+                        status -> log.info("Sample text processing {} for session {}: {} tasks",
+                                status.getState(), status.getSessionId(), status.getTasksPublished())
+                    );
+                } else {
+                    // The other modes and the claim-check need a file
+                    Path tempFile = Files.createTempFile("big", ".txt");
+                    try {
+                        Files.copy(resource.getInputStream(), tempFile, StandardCopyOption.REPLACE_EXISTING);
+                        sessionId = textProcessingJobService.processTextFile(
+                            tempFile.toString(),
+                            SplitStrategy.BY_PARAGRAPHS,
+                            1000
+                        );
+                    } finally {
+                        Files.deleteIfExists(tempFile);
+                    }
+                }
                 
                 log.info("Sample text processing started with session ID: {}", sessionId);
                 
-                // Clean up temp file
-                Files.deleteIfExists(tempFile);
-                
             } else {
                 log.info("No sample text file found, skipping automatic processing");
             }
@@ -55,4 +77,8 @@ public class StartupTextProcessingService {
             log.error("Unexpected error during startup text processing: {}", e.getMessage(), e);
         }
     }
+
+    private boolean streamsResource() {
+        return (splitMode == SplitMode.STREAMING || splitMode == SplitMode.ADAPTIVE) && !claimCheckEnabled;
+    }
 }
\ No newline at end of file
@@ -1,14 +1,27 @@
 package ru.ifmo.service;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import ru.ifmo.dto.JobStatus;
 import ru.ifmo.dto.SessionInfo;
+import ru.ifmo.dto.TaskOperation;
 import ru.ifmo.dto.TextTask;
+import ru.ifmo.split.SectionSizer;
 
 @Service
 @RequiredArgsConstructor
@@ -17,8 +30,32 @@ public class TextProcessingJobService {
 
     private final TextSplitterService textSplitterService;
     private final MessagePublisherService messagePublisherService;
+    private final CorpusStoreService corpusStoreService;
+    private final AdaptiveSizingService adaptiveSizingService;
+    private final JobStatusService jobStatusService;
+
+    @Value("${text.processing.split.mode:IN_MEMORY}")
+    private SplitMode splitMode;
+
+    @Value("${text.processing.claim-check.enabled:false}")
+    private boolean claimCheckEnabled;
+
+    // Operations of jobs that do not choose their own; empty runs every operation
+    @Value("${text.processing.operations:}")
+    private Set<TaskOperation> defaultOperations;
+
+    private final ExecutorService jobExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+    }
 
     public String processTextFile(String filePath, SplitStrategy strategy, int splitSize) throws IOException {
+        if (splitMode != SplitMode.IN_MEMORY) {
+            return streamTextFile(filePath, strategy, splitSize);
+        }
+
         log.info("Starting text processing job for file: {}", filePath);
 
         // Generate session ID
@@ -27,6 +64,7 @@ public class TextProcessingJobService {
 
         // Read and split the text file
         List<TextTask> tasks = splitTextFile(filePath, sessionId, strategy, splitSize);
+        tasks.forEach(task -> task.setOperations(operations(defaultOperations)));
 
         if (tasks.isEmpty()) {
             throw new IllegalArgumentException("No tasks generated from file: " + filePath);
@@ -42,12 +80,130 @@ public class TextProcessingJobService {
         messagePublisherService.publishSessionInfo(sessionInfo);
 
         // Send tasks to workers
-        messagePublisherService.publishTasks(tasks);
+        messagePublisherService.publishTasks(sessionId, tasks);
 
         log.info("Text processing job completed. Session: {}, Tasks: {}", sessionId, tasks.size());
         return sessionId;
     }
 
+    private String streamTextFile(String filePath, SplitStrategy strategy, int splitSize) throws IOException {
+        log.info("Starting {} text processing job for file: {}", splitMode, filePath);
+
+        String sessionId = textSplitterService.generateSessionId();
+        log.info("Generated session ID: {}", sessionId);
+
+        String corpusRef = claimCheckEnabled ? corpusStoreService.register(filePath, sessionId) : null;
+
+        publishSections(sessionId, "Text processing job for file: " + filePath, strategy, splitSize, defaultOperations,
+                (sizer, taskConsumer) -> splitMode == SplitMode.PARALLEL
+                        ? textSplitterService.splitTextFileInParallel(filePath, sessionId, strategy, sizer,
+                                corpusRef, taskConsumer)
+                        : textSplitterService.streamTextFile(filePath, sessionId, strategy, sizer,
+                                corpusRef, taskConsumer));
+        return sessionId;
+    }
+
+    public String submitTextStream(InputStream body, SplitStrategy strategy, int splitSize, String description,
+                                   Consumer<JobStatus> onStart, Consumer<JobStatus> onFinish) {
+        return submitTextStream(body, strategy, splitSize, null, description, onStart, onFinish);
+    }
+
+    /**
+     * Starts a job that splits {@code body} while it is still being read, on a virtual thread of its
+     * own. {@code onStart} receives the initial status on the calling thread before the job runs,
+     * {@code onFinish} the final status on the job's thread. The body is closed when the job is done.
+     *
+     * @param operations the analyses the workers run, null for the configured default
+     */
+    public String submitTextStream(InputStream body, SplitStrategy strategy, int splitSize, Set<TaskOperation> operations,
+                                   String description, Consumer<JobStatus> onStart, Consumer<JobStatus> onFinish) {
+        String sessionId = textSplitterService.generateSessionId();
+        JobProgress progress = jobStatusService.start(sessionId, description, strategy);
+        log.info("Submitted streamed text processing job {}: {}", sessionId, description);
+        onStart.accept(jobStatusService.getStatus(sessionId));
+
+        jobExecutor.execute(() -> {
+            try (InputStream in = progress.track(body)) {
+                ReadableByteChannel channel = Channels.newChannel(in);
+                int taskCount = publishSections(sessionId, description, strategy, splitSize,
+                        operations != null ? operations : defaultOperations,
+                        (sizer, taskConsumer) -> textSplitterService.streamText(channel, sessionId, strategy, sizer,
+                                null, task -> {
+                                    taskConsumer.accept(task);
+                                    progress.taskPublished();
+                                }));
+                progress.completed(taskCount);
+            } catch (Exception e) {
+                log.error("Streamed text processing job {} failed: {}", sessionId, e.getMessage(), e);
+                progress.failed(e);
+            }
+            onFinish.accept(jobStatusService.getStatus(sessionId));
+        });
+        return sessionId;
+    }
+
+    private int publishSections(String sessionId, String description, SplitStrategy strategy, int splitSize,
+                                Set<TaskOperation> operations, SectionSplitter splitter) throws IOException {
+        LocalDateTime startTime = LocalDateTime.now();
+
+        int sectionSize = textSplitterService.sectionSize(strategy, splitSize);
+        SectionSizer sizer = splitMode == SplitMode.ADAPTIVE
+                ? adaptiveSizingService.open(sessionId, sectionSize)
+                : SectionSizer.fixed(sectionSize);
+
+        // Every task is published as soon as it is cut
+        AtomicInteger taskCount = new AtomicInteger();
+        String error = null;
+        try (PublishWindow window = messagePublisherService.openWindow(sessionId)) {
+            Set<TaskOperation> taskOperations = operations(operations);
+            splitter.split(sizer, task -> {
+                task.setOperations(taskOperations);
+                window.publish(task);
+                taskCount.incrementAndGet();
+            });
+            window.complete();
+        } catch (IOException | RuntimeException e) {
+            error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            adaptiveSizingService.close(sessionId);
+            // The task count is only known after the last section, so the aggregator learns it last. A failed
+            // split still announces the tasks it published, so the session completes instead of waiting forever
+            if (taskCount.get() > 0) {
+                announceSession(sessionId, description, startTime, taskCount.get(), error);
+            }
+        }
+
+        if (taskCount.get() == 0) {
+            throw new IllegalArgumentException("No tasks generated for " + description);
+        }
+
+        log.info("Text processing job completed. Session: {}, Tasks: {}", sessionId, taskCount.get());
+        return taskCount.get();
+    }
+
+    private void announceSession(String sessionId, String description, LocalDateTime startTime, int taskCount,
+                                 String error) {
+        SessionInfo sessionInfo = new SessionInfo();
+        sessionInfo.setSessionId(sessionId);
+        sessionInfo.setExpectedTaskCount(taskCount);
+        sessionInfo.setDescription(description);
+        sessionInfo.setStartTime(startTime);
+        sessionInfo.setError(error);
+        if (error == null) {
+            messagePublisherService.publishSessionInfo(sessionInfo);
+            return;
+        }
+
+        log.error("Session {} failed after {} tasks: {}", sessionId, taskCount, error);
+        try {
+            messagePublisherService.publishSessionInfo(sessionInfo);
+        } catch (RuntimeException e) {
+            // The split failure is the one the caller needs to see
+            log.error("Failed to announce failed session {}: {}", sessionId, e.getMessage());
+        }
+    }
+
     public String processTextContent(String text, String description) {
         return processTextContent(text, description, SplitStrategy.BY_PARAGRAPHS, 1000);
     }
@@ -61,6 +217,7 @@ public class TextProcessingJobService {
 
         // Split the text content
         List<TextTask> tasks = splitTextContent(text, sessionId, strategy, splitSize);
+        tasks.forEach(task -> task.setOperations(operations(defaultOperations)));
 
         if (tasks.isEmpty()) {
             throw new IllegalArgumentException("No tasks generated from text content");
@@ -76,7 +233,7 @@ public class TextProcessingJobService {
         messagePublisherService.publishSessionInfo(sessionInfo);
 
         // Send tasks to workers
-        messagePublisherService.publishTasks(tasks);
+        messagePublisherService.publishTasks(sessionId, tasks);
 
         log.info("Text processing job completed. Session: {}, Tasks: {}", sessionId, tasks.size());
         return sessionId;
@@ -110,9 +267,27 @@ public class TextProcessingJobService {
         }
     }
 
+    // Tasks without operations run all of them, which keeps them small on the wire
+    private static Set<TaskOperation> operations(Set<TaskOperation> operations) {
+        return operations == null || operations.isEmpty() || operations.size() == TaskOperation.values().length
+                ? null : Set.copyOf(operations);
+    }
+
+    @FunctionalInterface
+    private interface SectionSplitter {
+        int split(SectionSizer sizer, Consumer<TextTask> taskConsumer) throws IOException;
+    }
+
     public enum SplitStrategy {
         BY_PARAGRAPHS,
         BY_SENTENCES,
         BY_WORDS
     }
+
+    public enum SplitMode {
+        IN_MEMORY,
+        STREAMING,
+        PARALLEL,
+        ADAPTIVE
+    }
 }
\ No newline at end of file
@@ -1,17 +1,41 @@
 package ru.ifmo.service;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import ru.ifmo.dto.SectionUnit;
 import ru.ifmo.dto.TextTask;
+import ru.ifmo.service.TextProcessingJobService.SplitMode;
+import ru.ifmo.service.TextProcessingJobService.SplitStrategy;
+import ru.ifmo.split.BoundaryFinder;
+import ru.ifmo.split.CountingSectionAssembler;
+import ru.ifmo.split.ParallelRangeSplitter;
+import ru.ifmo.split.ParagraphScanner;
+import ru.ifmo.split.ParagraphSectionAssembler;
+import ru.ifmo.split.Section;
+import ru.ifmo.split.SectionAssembler;
+import ru.ifmo.split.SectionSizer;
+import ru.ifmo.split.SentenceScanner;
+import ru.ifmo.split.UnitScanner;
+import ru.ifmo.split.UnitSink;
+import ru.ifmo.split.WordScanner;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 @Service
 @Slf4j
@@ -25,6 +49,36 @@ public class TextSplitterService {
     
     @Value("${text.processing.name.replacement:[NAME]}")
     private String nameReplacement;
+
+    @Value("${text.processing.stream.buffer.size:65536}")
+    private int streamBufferSize;
+
+    @Value("${text.processing.parallel.threads:0}")
+    private int parallelThreads;
+
+    @Value("${text.processing.parallel.range.size:8388608}")
+    private int parallelRangeSize;
+
+    @Value("${text.processing.split.mode:IN_MEMORY}")
+    private SplitMode splitMode;
+
+    // Only the PARALLEL split mode has a pool
+    private ForkJoinPool splitPool;
+
+    @PostConstruct
+    public void init() {
+        if (splitMode == SplitMode.PARALLEL) {
+            int threads = parallelThreads > 0 ? parallelThreads : Runtime.getRuntime().availableProcessors();
+            splitPool = new ForkJoinPool(threads);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (splitPool != null) {
+            splitPool.shutdownNow();
+        }
+    }
     
     public List<TextTask> splitTextFile(String filePath, String sessionId) throws IOException {
         log.info("Reading text file: {}", filePath);
@@ -163,6 +217,146 @@ public class TextSplitterService {
         return tasks;
     }
     
+    public int streamTextFile(String filePath, String sessionId, SplitStrategy strategy, SectionSizer sizer,
+                              String corpusRef, Consumer<TextTask> taskConsumer) throws IOException {
+        log.info("Streaming text file: {}", filePath);
+
+        Path path = Paths.get(filePath);
+        if (!Files.exists(path)) {
+            throw new IOException("File not found: " + filePath);
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return streamText(channel, sessionId, strategy, sizer, corpusRef, taskConsumer);
+        }
+    }
+
+    public int streamText(ReadableByteChannel channel, String sessionId, SplitStrategy strategy, SectionSizer sizer,
+                          String corpusRef, Consumer<TextTask> taskConsumer) throws IOException {
+        AtomicInteger taskCounter = new AtomicInteger();
+        SectionAssembler assembler = createAssembler(strategy, sizer, section -> {
+            TextTask task = createTextTask(section, strategy, corpusRef, sessionId, taskCounter.incrementAndGet());
+            sizer.sectionCut(task.getTaskId(), section);
+            taskConsumer.accept(task);
+        });
+        UnitScanner scanner = createScanner(strategy, assembler);
+
+        ByteBuffer buffer = ByteBuffer.allocate(streamBufferSize);
+        long bytesRead = 0;
+        int read;
+        while ((read = channel.read(buffer)) != -1) {
+            bytesRead += read;
+            buffer.flip();
+            scanner.feed(buffer);
+            buffer.clear();
+        }
+        scanner.finish();
+        assembler.finish();
+
+        log.info("Streamed {} bytes into {} tasks ({}) for session {}",
+                bytesRead, taskCounter.get(), strategy, sessionId);
+        return taskCounter.get();
+    }
+
+    public int splitTextFileInParallel(String filePath, String sessionId, SplitStrategy strategy, SectionSizer sizer,
+                                       String corpusRef, Consumer<TextTask> taskConsumer) throws IOException {
+        if (splitPool == null) {
+            throw new IllegalStateException("Parallel splitting needs text.processing.split.mode=PARALLEL");
+        }
+        log.info("Splitting text file in parallel: {}", filePath);
+
+        Path path = Paths.get(filePath);
+        if (!Files.exists(path)) {
+            throw new IOException("File not found: " + filePath);
+        }
+
+        AtomicInteger taskCounter = new AtomicInteger();
+        SectionAssembler assembler = createAssembler(strategy, sizer, section -> {
+            TextTask task = createTextTask(section, strategy, corpusRef, sessionId, taskCounter.incrementAndGet());
+            sizer.sectionCut(task.getTaskId(), section);
+            taskConsumer.accept(task);
+        });
+        // Keep a couple of ranges per thread in flight so that workers do not idle between waves
+        ParallelRangeSplitter splitter = new ParallelRangeSplitter(splitPool, parallelRangeSize,
+                splitPool.getParallelism() * 2);
+
+        long bytesRead;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            bytesRead = splitter.split(channel, sink -> createScanner(strategy, sink),
+                    createBoundaryFinder(strategy), assembler);
+        }
+        assembler.finish();
+
+        log.info("Split {} bytes into {} tasks ({}) on {} threads for session {}",
+                bytesRead, taskCounter.get(), strategy, splitPool.getParallelism(), sessionId);
+        return taskCounter.get();
+    }
+
+    /**
+     * The fixed section size of a strategy: paragraphs are packed up to the configured chunk size
+     * in characters, sentences and words {@code splitSize} units at a time.
+     */
+    public int sectionSize(SplitStrategy strategy, int splitSize) {
+        return strategy == SplitStrategy.BY_PARAGRAPHS ? chunkSize : splitSize;
+    }
+
+    private SectionAssembler createAssembler(SplitStrategy strategy, SectionSizer sizer, Consumer<Section> sectionConsumer) {
+        switch (strategy) {
+            case BY_PARAGRAPHS:
+                return new ParagraphSectionAssembler(sizer, sectionConsumer);
+            case BY_SENTENCES:
+            case BY_WORDS:
+                return new CountingSectionAssembler(sizer, sectionConsumer);
+            default:
+                throw new IllegalArgumentException("Unknown split strategy: " + strategy);
+        }
+    }
+
+    private UnitScanner createScanner(SplitStrategy strategy, UnitSink sink) {
+        switch (strategy) {
+            case BY_PARAGRAPHS:
+                return new ParagraphScanner(sink);
+            case BY_SENTENCES:
+                return new SentenceScanner(sink);
+            case BY_WORDS:
+                return new WordScanner(sink);
+            default:
+                throw new IllegalArgumentException("Unknown split strategy: " + strategy);
+        }
+    }
+
+    private BoundaryFinder createBoundaryFinder(SplitStrategy strategy) {
+        switch (strategy) {
+            case BY_PARAGRAPHS:
+                return BoundaryFinder.paragraphs();
+            case BY_SENTENCES:
+                return BoundaryFinder.sentences();
+            case BY_WORDS:
+                return BoundaryFinder.words();
+            default:
+                throw new IllegalArgumentException("Unknown split strategy: " + strategy);
+        }
+    }
+
+    private TextTask createTextTask(Section section, SplitStrategy strategy, String corpusRef, String sessionId,
+                                    int taskNumber) {
+        if (corpusRef == null) {
+            return createTextTask(section.text(), sessionId, taskNumber);
+        }
+
+        // Claim check: the worker reads the original bytes of the section from the shared store
+        TextTask task = createTextTask(null, sessionId, taskNumber);
+        task.setCorpusRef(corpusRef);
+        task.setOffset(section.offset());
+        task.setLength((int) section.length());
+        task.setUnit(switch (strategy) {
+            case BY_PARAGRAPHS -> SectionUnit.PARAGRAPH;
+            case BY_SENTENCES -> SectionUnit.SENTENCE;
+            case BY_WORDS -> SectionUnit.WORD;
+        });
+        return task;
+    }
+
     private TextTask createTextTask(String text, String sessionId, int taskNumber) {
         TextTask task = new TextTask();
         task.setTaskId(String.format("%s-task-%03d", sessionId, taskNumber));
@@ -0,0 +1,92 @@
+package ru.ifmo.split;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sizes sections so that a worker spends about {@code targetLatencyMs} on each of them. The cost
+ * of a character is learned from the processing times reported for finished tasks (exponentially
+ * smoothed), the target in characters is clamped to {@code [minChars, maxChars]} and converted
+ * to the assembler's units with the observed number of characters per unit. Without timings the
+ * size never changes, so a warning is logged once {@code timingWarnTasks} sections were cut
+ * before the first timing arrived.
+ */
+@Slf4j
+public class AdaptiveSectionSizer implements SectionSizer {
+
+    private static final double SMOOTHING = 0.2;
+
+    private final String sessionId;
+    private final long targetLatencyNanos;
+    private final int minChars;
+    private final int maxChars;
+    private final long timingWarnTasks;
+    private final Map<String, Integer> pendingChars = new ConcurrentHashMap<>();
+
+    private volatile int size;
+    private double nanosPerChar = -1;
+    private double charsPerUnit = -1;
+    private long samples;
+    private long sections;
+
+    public AdaptiveSectionSizer(String sessionId, int initialSize, long targetLatencyMs, int minChars, int maxChars,
+                                long timingWarnTasks) {
+        this.sessionId = sessionId;
+        this.size = Math.max(1, initialSize);
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMs);
+        this.minChars = minChars;
+        this.maxChars = maxChars;
+        this.timingWarnTasks = timingWarnTasks;
+    }
+
+    @Override
+    public int getAsInt() {
+        return size;
+    }
+
+    @Override
+    public void sectionCut(String taskId, Section section) {
+        int chars = section.text().length();
+        pendingChars.put(taskId, chars);
+        synchronized (this) {
+            charsPerUnit = smooth(charsPerUnit, (double) chars / Math.max(1, section.size()));
+            if (++sections == timingWarnTasks && samples == 0) {
+                log.warn("Session {}: no task timing after {} sections, the section size stays at {}. ADAPTIVE needs "
+                        + "rabbitmq.timing.enabled=true on the workers, and backpressure keeps the producer from "
+                        + "cutting the session before the timings come back", sessionId, sections, size);
+            }
+        }
+    }
+
+    /**
+     * Feeds back how long a worker took for a task of this session and recomputes the size.
+     */
+    public void taskProcessed(String taskId, long processingNanos) {
+        Integer chars = pendingChars.remove(taskId);
+        if (chars == null || chars == 0) {
+            return;
+        }
+
+        int newSize;
+        synchronized (this) {
+            nanosPerChar = smooth(nanosPerChar, (double) Math.max(1, processingNanos) / chars);
+            samples++;
+            double targetChars = Math.min(maxChars, Math.max(minChars, targetLatencyNanos / nanosPerChar));
+            newSize = (int) Math.max(1, Math.round(targetChars / charsPerUnit));
+        }
+
+        int oldSize = size;
+        size = newSize;
+        if (Math.abs(newSize - oldSize) * 10 > oldSize) {
+            log.info("Session {}: section size {} -> {} ({} ns/char after {} timings)", sessionId, oldSize, newSize,
+                    String.format("%.1f", nanosPerChar), samples);
+        }
+    }
+
+    private static double smooth(double average, double sample) {
+        return average < 0 ? sample : average + SMOOTHING * (sample - average);
+    }
+}
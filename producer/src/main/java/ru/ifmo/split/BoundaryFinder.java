@@ -0,0 +1,81 @@
+package ru.ifmo.split;
+
+import java.io.IOException;
+
+/**
+ * Moves a nominal range boundary forward to a position where a fresh {@link UnitScanner}
+ * cuts exactly the units a scanner running over the whole file would cut.
+ */
+@FunctionalInterface
+public interface BoundaryFinder {
+
+    /**
+     * @return the first suitable position at or after {@code position}, or the file size
+     */
+    long next(FileWindow window, long position) throws IOException;
+
+    static BoundaryFinder paragraphs() {
+        return (window, position) -> {
+            long size = window.size();
+            long i = runStart(window, position);
+            while (true) {
+                while (i < size && !UnitScanner.isSpace(window.get(i))) {
+                    i++;
+                }
+                int lineFeeds = 0;
+                byte b;
+                while (i < size && UnitScanner.isSpace(b = window.get(i))) {
+                    if (b == '\n') {
+                        lineFeeds++;
+                    }
+                    i++;
+                }
+                if (i >= size || (lineFeeds >= 2 && i >= position)) {
+                    return Math.min(i, size);
+                }
+            }
+        };
+    }
+
+    static BoundaryFinder sentences() {
+        return (window, position) -> {
+            long size = window.size();
+            long i = runStart(window, position);
+            while (true) {
+                while (i < size && !UnitScanner.isSpace(window.get(i))) {
+                    i++;
+                }
+                boolean separator = i > 0 && i < size && UnitScanner.isTerminator(window.get(i - 1));
+                while (i < size && UnitScanner.isSpace(window.get(i))) {
+                    i++;
+                }
+                if (i >= size || (separator && i >= position)) {
+                    return Math.min(i, size);
+                }
+            }
+        };
+    }
+
+    static BoundaryFinder words() {
+        return (window, position) -> {
+            long size = window.size();
+            long i = position;
+            while (i < size && !UnitScanner.isSpace(window.get(i - 1))) {
+                i++;
+            }
+            return i;
+        };
+    }
+
+    /**
+     * Steps back to the start of the whitespace run that {@code position} continues, if any,
+     * so that the whole run is taken into account.
+     */
+    private static long runStart(FileWindow window, long position) throws IOException {
+        long i = position;
+        while (i > 0 && UnitScanner.isSpace(window.get(i - 1))) {
+            i--;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,44 @@
+package ru.ifmo.split;
+
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+
+/**
+ * Joins a fixed number of units (sentences or words) with a single space.
+ */
+public class CountingSectionAssembler extends SectionAssembler {
+
+    private final IntSupplier unitsPerSection;
+    private final StringBuilder currentChunk = new StringBuilder();
+    private int unitCount;
+
+    public CountingSectionAssembler(IntSupplier unitsPerSection, Consumer<Section> sectionConsumer) {
+        super(sectionConsumer);
+        this.unitsPerSection = unitsPerSection;
+    }
+
+    @Override
+    public void accept(String unit, long offset, int byteLength) {
+        if (unitCount > 0) {
+            currentChunk.append(' ');
+        }
+        currentChunk.append(unit);
+        extend(offset, byteLength);
+        unitCount++;
+
+        if (unitCount >= unitsPerSection.getAsInt()) {
+            emit(currentChunk.toString(), unitCount);
+            currentChunk.setLength(0);
+            unitCount = 0;
+        }
+    }
+
+    @Override
+    public void finish() {
+        if (unitCount > 0) {
+            emit(currentChunk.toString(), unitCount);
+            currentChunk.setLength(0);
+            unitCount = 0;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package ru.ifmo.split;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Random access to file bytes through a small read-ahead window. Used on the coordinating
+ * thread to look around range boundaries without mapping or reading the whole file.
+ */
+public class FileWindow {
+
+    private final FileChannel channel;
+    private final long size;
+    private final ByteBuffer buffer;
+    private long windowStart = -1;
+
+    public FileWindow(FileChannel channel, int windowSize) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.buffer = ByteBuffer.allocate(windowSize);
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public byte get(long position) throws IOException {
+        if (windowStart < 0 || position < windowStart || position >= windowStart + buffer.limit()) {
+            fill(position);
+        }
+        return buffer.get((int) (position - windowStart));
+    }
+
+    private void fill(long position) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) != -1) {
+            // keep reading until the window is full or the file ends
+        }
+        buffer.flip();
+        windowStart = position;
+        if (buffer.limit() == 0) {
+            throw new IOException("Position " + position + " is beyond the end of the file");
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package ru.ifmo.split;
+
+/**
+ * Cuts paragraphs the way {@code text.split("\\n\\s*\\n")} does: a whitespace run with
+ * at least two line feeds separates two paragraphs.
+ */
+public class ParagraphScanner extends UnitScanner {
+
+    private boolean inWhitespace;
+    private int lineFeeds;
+
+    public ParagraphScanner(UnitSink sink) {
+        super(sink, true);
+    }
+
+    @Override
+    protected void accept(byte b) {
+        if (isSpace(b)) {
+            if (!inWhitespace) {
+                inWhitespace = true;
+                lineFeeds = 0;
+            }
+            if (b == '\n') {
+                lineFeeds++;
+            }
+        } else {
+            if (inWhitespace && lineFeeds >= 2) {
+                flush();
+            }
+            inWhitespace = false;
+        }
+        append(b);
+    }
+}
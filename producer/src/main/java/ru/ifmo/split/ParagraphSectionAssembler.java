@@ -0,0 +1,43 @@
+package ru.ifmo.split;
+
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+
+/**
+ * Joins paragraphs with a blank line until the next one would overflow the chunk size
+ * (in characters).
+ */
+public class ParagraphSectionAssembler extends SectionAssembler {
+
+    private final IntSupplier chunkSize;
+    private StringBuilder currentChunk = new StringBuilder();
+
+    public ParagraphSectionAssembler(IntSupplier chunkSize, Consumer<Section> sectionConsumer) {
+        super(sectionConsumer);
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public void accept(String paragraph, long offset, int byteLength) {
+        if (currentChunk.length() > 0 &&
+            currentChunk.length() + paragraph.length() + 2 > chunkSize.getAsInt()) {
+
+            emit(currentChunk.toString(), currentChunk.length());
+            currentChunk = new StringBuilder();
+        }
+
+        if (currentChunk.length() > 0) {
+            currentChunk.append("\n\n");
+        }
+        currentChunk.append(paragraph);
+        extend(offset, byteLength);
+    }
+
+    @Override
+    public void finish() {
+        if (currentChunk.length() > 0) {
+            emit(currentChunk.toString(), currentChunk.length());
+            currentChunk = new StringBuilder();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package ru.ifmo.split;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+/**
+ * Cuts a file into byte ranges aligned to unit boundaries, scans the ranges in a fork/join pool
+ * and feeds the units to the assembler in file order. Only the packing of units into sections
+ * is sequential, so the sections come out exactly as a single scanner would produce them.
+ * At most {@code rangesPerWave} ranges are held in memory at a time.
+ */
+public class ParallelRangeSplitter {
+
+    private static final int MAX_MAPPING = 64 * 1024 * 1024;
+    private static final int BOUNDARY_WINDOW = 64 * 1024;
+
+    private final ForkJoinPool pool;
+    private final int rangeSize;
+    private final int rangesPerWave;
+
+    public ParallelRangeSplitter(ForkJoinPool pool, int rangeSize, int rangesPerWave) {
+        this.pool = pool;
+        this.rangeSize = rangeSize;
+        this.rangesPerWave = rangesPerWave;
+    }
+
+    public long split(FileChannel channel, Function<UnitSink, UnitScanner> scannerFactory,
+                      BoundaryFinder boundaryFinder, SectionAssembler assembler) throws IOException {
+        FileWindow window = new FileWindow(channel, BOUNDARY_WINDOW);
+        long size = window.size();
+        long start = 0;
+        while (start < size) {
+            List<Range> ranges = new ArrayList<>(rangesPerWave);
+            while (ranges.size() < rangesPerWave && start < size) {
+                long end = size - start <= rangeSize ? size : boundaryFinder.next(window, start + rangeSize);
+                ranges.add(new Range(start, end));
+                start = end;
+            }
+
+            List<List<ScannedUnit>> units;
+            try {
+                units = pool.invoke(new ScanTask(channel, scannerFactory, ranges, 0, ranges.size()));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            for (List<ScannedUnit> rangeUnits : units) {
+                for (ScannedUnit unit : rangeUnits) {
+                    assembler.accept(unit.text(), unit.offset(), unit.byteLength());
+                }
+            }
+        }
+        return size;
+    }
+
+    private record Range(long start, long end) {
+    }
+
+    private record ScannedUnit(String text, long offset, int byteLength) {
+    }
+
+    private static class ScanTask extends RecursiveTask<List<List<ScannedUnit>>> {
+
+        private final FileChannel channel;
+        private final Function<UnitSink, UnitScanner> scannerFactory;
+        private final List<Range> ranges;
+        private final int from;
+        private final int to;
+
+        ScanTask(FileChannel channel, Function<UnitSink, UnitScanner> scannerFactory,
+                 List<Range> ranges, int from, int to) {
+            this.channel = channel;
+            this.scannerFactory = scannerFactory;
+            this.ranges = ranges;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<List<ScannedUnit>> compute() {
+            if (to - from == 1) {
+                List<List<ScannedUnit>> result = new ArrayList<>(1);
+                result.add(scan(ranges.get(from)));
+                return result;
+            }
+
+            int middle = (from + to) >>> 1;
+            ScanTask left = new ScanTask(channel, scannerFactory, ranges, from, middle);
+            ScanTask right = new ScanTask(channel, scannerFactory, ranges, middle, to);
+            left.fork();
+            List<List<ScannedUnit>> result = right.compute();
+            List<List<ScannedUnit>> leftResult = left.join();
+            leftResult.addAll(result);
+            return leftResult;
+        }
+
+        private List<ScannedUnit> scan(Range range) {
+            List<ScannedUnit> units = new ArrayList<>();
+            UnitScanner scanner = scannerFactory.apply((bytes, unitFrom, unitTo, offset) ->
+                    units.add(new ScannedUnit(new String(bytes, unitFrom, unitTo - unitFrom, StandardCharsets.UTF_8),
+                            offset, unitTo - unitFrom)));
+            scanner.seek(range.start());
+            try {
+                for (long position = range.start(); position < range.end(); position += MAX_MAPPING) {
+                    long length = Math.min(MAX_MAPPING, range.end() - position);
+                    scanner.feed(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            scanner.finish();
+            return units;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package ru.ifmo.split;
+
+/**
+ * A finished section: its packed text, the byte range of the file it was cut from and its size
+ * in the units of the assembler that packed it.
+ */
+public record Section(String text, long offset, long length, int size) {
+}
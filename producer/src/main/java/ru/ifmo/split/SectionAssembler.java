@@ -0,0 +1,40 @@
+package ru.ifmo.split;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Packs units into section texts and hands every section over as soon as it is complete,
+ * together with the byte range spanning its first and last unit.
+ */
+public abstract class SectionAssembler implements UnitSink {
+
+    private final Consumer<Section> sectionConsumer;
+    private long sectionStart = -1;
+    private long sectionEnd;
+
+    protected SectionAssembler(Consumer<Section> sectionConsumer) {
+        this.sectionConsumer = sectionConsumer;
+    }
+
+    @Override
+    public void unit(byte[] bytes, int from, int to, long offset) {
+        accept(new String(bytes, from, to - from, StandardCharsets.UTF_8), offset, to - from);
+    }
+
+    public abstract void accept(String unit, long offset, int byteLength);
+
+    public abstract void finish();
+
+    protected void extend(long offset, int byteLength) {
+        if (sectionStart < 0) {
+            sectionStart = offset;
+        }
+        sectionEnd = offset + byteLength;
+    }
+
+    protected void emit(String text, int size) {
+        sectionConsumer.accept(new Section(text, sectionStart, sectionEnd - sectionStart, size));
+        sectionStart = -1;
+    }
+}
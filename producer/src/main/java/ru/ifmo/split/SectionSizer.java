@@ -0,0 +1,21 @@
+package ru.ifmo.split;
+
+import java.util.function.IntSupplier;
+
+/**
+ * Target section size in the assembler's units: characters for paragraphs, units for sentences
+ * and words. Read again for every section, so the size may change while a file is being split.
+ */
+@FunctionalInterface
+public interface SectionSizer extends IntSupplier {
+
+    /**
+     * Called for every section as it is handed out as the task {@code taskId}.
+     */
+    default void sectionCut(String taskId, Section section) {
+    }
+
+    static SectionSizer fixed(int size) {
+        return () -> size;
+    }
+}
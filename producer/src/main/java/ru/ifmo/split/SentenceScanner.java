@@ -0,0 +1,33 @@
+package ru.ifmo.split;
+
+/**
+ * Cuts sentences the way {@code text.split("(?<=[.!?])\\s+")} does: a whitespace run
+ * right after a terminator separates two sentences.
+ */
+public class SentenceScanner extends UnitScanner {
+
+    private boolean inSeparator;
+    private byte previous;
+
+    public SentenceScanner(UnitSink sink) {
+        super(sink, true);
+    }
+
+    @Override
+    protected void accept(byte b) {
+        if (isSpace(b)) {
+            if (!inSeparator) {
+                if (isTerminator(previous)) {
+                    flush();
+                    inSeparator = true;
+                } else {
+                    append(b);
+                }
+            }
+        } else {
+            inSeparator = false;
+            append(b);
+        }
+        previous = b;
+    }
+}
@@ -0,0 +1,89 @@
+package ru.ifmo.split;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Incremental byte-level scanner that cuts UTF-8 text into units without decoding it.
+ * All separators are ASCII, so a byte never has to be looked at twice and a unit may
+ * freely span several fed buffers.
+ */
+public abstract class UnitScanner {
+
+    private final UnitSink sink;
+    private final boolean trimUnits;
+
+    private byte[] unit = new byte[256];
+    private int unitLength;
+    private long unitOffset;
+    private long position;
+
+    protected UnitScanner(UnitSink sink, boolean trimUnits) {
+        this.sink = sink;
+        this.trimUnits = trimUnits;
+    }
+
+    public void feed(ByteBuffer buffer) {
+        int limit = buffer.limit();
+        for (int i = buffer.position(); i < limit; i++) {
+            accept(buffer.get(i));
+            position++;
+        }
+        buffer.position(limit);
+    }
+
+    public void finish() {
+        flush();
+    }
+
+    /**
+     * Sets the absolute offset of the next fed byte, used when scanning a range of a larger file.
+     */
+    public void seek(long offset) {
+        position = offset;
+    }
+
+    protected abstract void accept(byte b);
+
+    protected void append(byte b) {
+        if (unitLength == 0) {
+            unitOffset = position;
+        }
+        if (unitLength == unit.length) {
+            byte[] grown = new byte[unit.length * 2];
+            System.arraycopy(unit, 0, grown, 0, unitLength);
+            unit = grown;
+        }
+        unit[unitLength++] = b;
+    }
+
+    protected void flush() {
+        // Same rule as String.trim(): everything up to and including U+0020 is blank
+        int from = 0;
+        int to = unitLength;
+        while (from < to && (unit[from] & 0xFF) <= ' ') {
+            from++;
+        }
+        while (to > from && (unit[to - 1] & 0xFF) <= ' ') {
+            to--;
+        }
+        if (from < to) {
+            if (trimUnits) {
+                sink.unit(unit, from, to, unitOffset + from);
+            } else {
+                sink.unit(unit, 0, unitLength, unitOffset);
+            }
+        }
+        unitLength = 0;
+    }
+
+    /**
+     * Matches the regex {@code \s} class: space, tab, line feed, vertical tab, form feed and carriage return.
+     */
+    static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == 0x0B || b == '\f' || b == '\r';
+    }
+
+    static boolean isTerminator(byte b) {
+        return b == '.' || b == '!' || b == '?';
+    }
+}
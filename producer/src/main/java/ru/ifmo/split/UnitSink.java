@@ -0,0 +1,9 @@
+package ru.ifmo.split;
+
+/**
+ * Receives units (paragraphs, sentences or words) cut by a {@link UnitScanner}.
+ * The bytes are only valid for the duration of the call.
+ */
+public interface UnitSink {
+    void unit(byte[] bytes, int from, int to, long offset);
+}
@@ -0,0 +1,21 @@
+package ru.ifmo.split;
+
+/**
+ * Cuts words the way {@code text.split("\\s+")} does. Words are passed on untrimmed,
+ * only blank ones are dropped.
+ */
+public class WordScanner extends UnitScanner {
+
+    public WordScanner(UnitSink sink) {
+        super(sink, false);
+    }
+
+    @Override
+    protected void accept(byte b) {
+        if (isSpace(b)) {
+            flush();
+        } else {
+            append(b);
+        }
+    }
+}
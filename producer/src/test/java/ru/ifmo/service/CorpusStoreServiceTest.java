@@ -0,0 +1,82 @@
+package ru.ifmo.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CorpusStoreServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private CorpusStoreService store;
+
+    @AfterEach
+    void tearDown() {
+        if (store != null) {
+            store.shutdown();
+        }
+    }
+
+    @Test
+    void givesEverySessionItsOwnEntry() throws IOException {
+        Path storeDir = tempDir.resolve("store");
+        Files.createDirectories(storeDir);
+        Path inStore = Files.writeString(storeDir.resolve("book.txt"), "first edition");
+        store = store(storeDir, 0);
+
+        String first = store.register(inStore.toString(), "session-0000000a");
+        String second = store.register(inStore.toString(), "session-0000000b");
+        assertNotEquals(first, second);
+
+        // Replacing the original leaves the entries of running sessions as they were
+        Files.delete(inStore);
+        Files.writeString(inStore, "second edition");
+        assertEquals("first edition", Files.readString(storeDir.resolve(first)));
+        assertEquals("first edition", Files.readString(storeDir.resolve(second)));
+    }
+
+    @Test
+    void deletesEntriesAfterTheTtl() throws Exception {
+        Path storeDir = tempDir.resolve("store");
+        Path corpus = Files.writeString(tempDir.resolve("book.txt"), "text");
+        Files.createDirectories(storeDir.resolve("producer"));
+        Files.createDirectories(storeDir.resolve("other-producer"));
+        Path leftover = Files.writeString(storeDir.resolve("producer/session-0000000c-old.txt"), "old");
+        Path unrelated = Files.writeString(storeDir.resolve("producer/notes.txt"), "kept");
+        Path otherProducers = Files.writeString(storeDir.resolve("other-producer/session-0000000e-old.txt"), "kept");
+        store = store(storeDir, 500);
+
+        Path entry = storeDir.resolve(store.register(corpus.toString(), "session-0000000d"));
+        store.deleteExpired();
+        assertTrue(Files.exists(entry));
+        assertTrue(Files.exists(leftover));
+
+        Thread.sleep(600);
+        store.deleteExpired();
+        assertFalse(Files.exists(entry));
+        assertFalse(Files.exists(leftover));
+        assertTrue(Files.exists(unrelated));
+        assertTrue(Files.exists(otherProducers));
+        assertTrue(Files.exists(corpus));
+    }
+
+    private static CorpusStoreService store(Path storeDir, long ttlMs) {
+        CorpusStoreService store = new CorpusStoreService();
+        ReflectionTestUtils.setField(store, "storeDirectory", storeDir.toString());
+        ReflectionTestUtils.setField(store, "producerId", "producer");
+        ReflectionTestUtils.setField(store, "ttlMs", ttlMs);
+        store.init();
+        return store;
+    }
+}
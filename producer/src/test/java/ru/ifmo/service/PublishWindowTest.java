@@ -0,0 +1,191 @@
+package ru.ifmo.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.ifmo.dto.PublishStats;
+import ru.ifmo.dto.TextTask;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PublishWindowTest {
+
+    private static final int MAX_IN_FLIGHT = 4;
+    private static final int MAX_RETRIES = 2;
+
+    // Correlation ids ("<task id>#<attempt>") the broker nacks
+    private final Set<String> nacked = ConcurrentHashMap.newKeySet();
+    // Correlation ids whose publish fails after the channel shutdown already nacked them
+    private final Set<String> closedMidPublish = ConcurrentHashMap.newKeySet();
+    private final List<PublishStats> reported = new ArrayList<>();
+
+    @Test
+    void confirmsEveryTask() {
+        PublishWindow window = window(new ConfirmingTemplate());
+        publish(window, 10);
+
+        PublishStats stats = window.complete();
+
+        assertEquals(10, stats.getPublishedTasks());
+        assertEquals(10, stats.getConfirmedTasks());
+        assertEquals(0, stats.getRetriedTasks());
+        assertEquals(List.of(stats), reported);
+        assertEquals(MAX_IN_FLIGHT, permits(window));
+    }
+
+    @Test
+    void resendsNackedTasks() {
+        nacked.add("task-2#0");
+        nacked.add("task-2#1");
+        PublishWindow window = window(new ConfirmingTemplate());
+        publish(window, 5);
+
+        PublishStats stats = window.complete();
+
+        assertEquals(5, stats.getPublishedTasks());
+        assertEquals(5, stats.getConfirmedTasks());
+        assertEquals(2, stats.getRetriedTasks());
+        assertEquals(0, stats.getFailedTasks());
+    }
+
+    @Test
+    void failsTasksThatAreNackedOnEveryAttempt() {
+        for (int attempt = 0; attempt <= MAX_RETRIES; attempt++) {
+            nacked.add("task-1#" + attempt);
+        }
+        PublishWindow window = window(new ConfirmingTemplate());
+        publish(window, 3);
+
+        assertThrows(RuntimeException.class, window::complete);
+
+        PublishStats stats = reported.getFirst();
+        assertEquals(2, stats.getConfirmedTasks());
+        assertEquals(MAX_RETRIES, stats.getRetriedTasks());
+        assertEquals(1, stats.getFailedTasks());
+        assertEquals(MAX_IN_FLIGHT, permits(window));
+    }
+
+    @Test
+    void handlesAPublishThatFailsAfterItsConfirmOnce() {
+        closedMidPublish.add("task-0#0");
+        closedMidPublish.add("task-3#0");
+        PublishWindow window = window(new ConfirmingTemplate());
+        publish(window, 5);
+
+        PublishStats stats = window.complete();
+
+        assertEquals(5, stats.getConfirmedTasks());
+        assertEquals(2, stats.getRetriedTasks());
+        assertEquals(0, stats.getFailedTasks());
+        assertEquals(MAX_IN_FLIGHT, permits(window));
+    }
+
+    @Test
+    void keepsAtMostMaxInFlightTasksUnconfirmed() throws Exception {
+        for (int task = 0; task < 200; task += 7) {
+            closedMidPublish.add("task-" + task + "#0");
+        }
+        DelayedConfirmTemplate template = new DelayedConfirmTemplate();
+        Thread broker = new Thread(template::confirmAll);
+        broker.start();
+        try {
+            PublishWindow window = window(template);
+            publish(window, 200);
+
+            PublishStats stats = window.complete();
+
+            assertEquals(200, stats.getConfirmedTasks());
+            assertEquals(closedMidPublish.size(), stats.getRetriedTasks());
+            assertTrue(template.maxUnconfirmed.get() <= MAX_IN_FLIGHT,
+                    () -> template.maxUnconfirmed.get() + " tasks unconfirmed at once");
+            assertEquals(MAX_IN_FLIGHT, permits(window));
+        } finally {
+            broker.interrupt();
+            broker.join();
+        }
+    }
+
+    private PublishWindow window(RabbitTemplate rabbitTemplate) {
+        return new PublishWindow(rabbitTemplate, new QueueDepthThrottle(null), "workerQueue", "session-1a2b3c4d",
+                true, MAX_IN_FLIGHT, MAX_RETRIES, 5_000, 0, 16, reported::add);
+    }
+
+    private static void publish(PublishWindow window, int tasks) {
+        for (int i = 0; i < tasks; i++) {
+            TextTask task = new TextTask();
+            task.setTaskId("task-" + i);
+            window.publish(task);
+        }
+    }
+
+    private static int permits(PublishWindow window) {
+        return ((Semaphore) ReflectionTestUtils.getField(window, "permits")).availablePermits();
+    }
+
+    // Like the template when the channel closes mid-publish: its shutdown nacks the pending confirm, then the publish throws
+    private boolean failsMidPublish(CorrelationData correlationData) {
+        if (closedMidPublish.contains(correlationData.getId())) {
+            correlationData.getFuture().complete(new CorrelationData.Confirm(false, "channel closed"));
+            return true;
+        }
+        return false;
+    }
+
+    private class ConfirmingTemplate extends RabbitTemplate {
+
+        @Override
+        public void convertAndSend(String routingKey, Object message, MessagePostProcessor messagePostProcessor,
+                                   CorrelationData correlationData) {
+            if (failsMidPublish(correlationData)) {
+                throw new IllegalStateException("Channel closed");
+            }
+            correlationData.getFuture().complete(
+                    new CorrelationData.Confirm(!nacked.contains(correlationData.getId()), null));
+        }
+    }
+
+    // Acks the publishes from another thread, one at a time
+    private class DelayedConfirmTemplate extends RabbitTemplate {
+
+        private final LinkedBlockingQueue<CorrelationData> unconfirmed = new LinkedBlockingQueue<>();
+        private final AtomicInteger unconfirmedCount = new AtomicInteger();
+        private final LongAccumulator maxUnconfirmed = new LongAccumulator(Math::max, 0);
+
+        @Override
+        public void convertAndSend(String routingKey, Object message, MessagePostProcessor messagePostProcessor,
+                                   CorrelationData correlationData) {
+            if (failsMidPublish(correlationData)) {
+                throw new IllegalStateException("Channel closed");
+            }
+            maxUnconfirmed.accumulate(unconfirmedCount.incrementAndGet());
+            unconfirmed.add(correlationData);
+        }
+
+        void confirmAll() {
+            try {
+                while (true) {
+                    CorrelationData correlationData = unconfirmed.take();
+                    TimeUnit.MICROSECONDS.sleep(200);
+                    unconfirmedCount.decrementAndGet();
+                    correlationData.getFuture().complete(new CorrelationData.Confirm(true, null));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package ru.ifmo.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.ifmo.dto.TextTask;
+import ru.ifmo.service.TextProcessingJobService.SplitMode;
+import ru.ifmo.service.TextProcessingJobService.SplitStrategy;
+import ru.ifmo.split.SectionSizer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TextSplitterServiceTest {
+
+    private static final String[] WORDS = {"the", "Anna", "river", "слово", "Москва", "naïve", "end", "x", "über"};
+    private static final String[] GAPS = {" ", " ", " ", "  ", "\t", "\n", "\r\n"};
+    private static final String[] TERMINATORS = {".", "!", "?", "...", ".\"", ""};
+    private static final String[] PARAGRAPH_BREAKS = {"\n\n", "\n\n\n", "\n  \n", "\r\n\r\n", "\n \t\n\n"};
+
+    @TempDir
+    Path tempDir;
+
+    private TextSplitterService service;
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void parallelSplitMatchesStreamingSplit() throws IOException {
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            Path file = tempDir.resolve("corpus-" + i + ".txt");
+            Files.writeString(file, randomText(random, 1 + random.nextInt(400)));
+            int rangeSize = 16 + random.nextInt(512);
+            service = splitter(SplitMode.PARALLEL, rangeSize, 1 + random.nextInt(4));
+
+            for (SplitStrategy strategy : SplitStrategy.values()) {
+                int sectionSize = strategy == SplitStrategy.BY_PARAGRAPHS ? 1 + random.nextInt(300) : 1 + random.nextInt(8);
+                List<TextTask> streamed = new ArrayList<>();
+                List<TextTask> parallel = new ArrayList<>();
+                int streamedCount = service.streamTextFile(file.toString(), "s", strategy,
+                        SectionSizer.fixed(sectionSize), "corpus", streamed::add);
+                int parallelCount = service.splitTextFileInParallel(file.toString(), "s", strategy,
+                        SectionSizer.fixed(sectionSize), "corpus", parallel::add);
+
+                String context = "file " + i + ", " + strategy + ", range size " + rangeSize;
+                assertEquals(streamedCount, parallelCount, context);
+                assertEquals(streamed, parallel, context);
+            }
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void parallelSplitNeedsParallelMode() throws IOException {
+        Path file = tempDir.resolve("corpus.txt");
+        Files.writeString(file, "One sentence. Another one.");
+        service = splitter(SplitMode.STREAMING, 1024, 2);
+
+        assertThrows(IllegalStateException.class, () -> service.splitTextFileInParallel(file.toString(), "s",
+                SplitStrategy.BY_SENTENCES, SectionSizer.fixed(1), null, task -> { }));
+
+        List<TextTask> tasks = new ArrayList<>();
+        service.streamTextFile(file.toString(), "s", SplitStrategy.BY_SENTENCES, SectionSizer.fixed(1), null, tasks::add);
+        assertEquals(2, tasks.size());
+        assertTrue(tasks.get(0).getText().startsWith("One"));
+    }
+
+    private static TextSplitterService splitter(SplitMode mode, int rangeSize, int threads) {
+        TextSplitterService service = new TextSplitterService();
+        ReflectionTestUtils.setField(service, "chunkSize", 1000);
+        ReflectionTestUtils.setField(service, "topWords", 10);
+        ReflectionTestUtils.setField(service, "nameReplacement", "[NAME]");
+        ReflectionTestUtils.setField(service, "streamBufferSize", 64);
+        ReflectionTestUtils.setField(service, "parallelThreads", threads);
+        ReflectionTestUtils.setField(service, "parallelRangeSize", rangeSize);
+        ReflectionTestUtils.setField(service, "splitMode", mode);
+        service.init();
+        return service;
+    }
+
+    private static String randomText(Random random, int words) {
+        StringBuilder text = new StringBuilder();
+        if (random.nextInt(4) == 0) {
+            text.append(GAPS[random.nextInt(GAPS.length)]);
+        }
+        for (int i = 0; i < words; i++) {
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+            int next = random.nextInt(20);
+            if (next == 0) {
+                text.append(TERMINATORS[random.nextInt(TERMINATORS.length)])
+                        .append(PARAGRAPH_BREAKS[random.nextInt(PARAGRAPH_BREAKS.length)]);
+            } else if (next < 4) {
+                text.append(TERMINATORS[random.nextInt(TERMINATORS.length)]).append(GAPS[random.nextInt(GAPS.length)]);
+            } else {
+                text.append(GAPS[random.nextInt(GAPS.length)]);
+            }
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,197 @@
+package ru.ifmo;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.rabbitmq.client.Channel;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.ifmo.dto.TaskTiming;
+import ru.ifmo.dto.TextProcessingResult;
+import ru.ifmo.dto.TextTask;
+import ru.ifmo.service.TaskRetryService;
+import ru.ifmo.service.TextProcessingService;
+
+/**
+ * Batch mode of {@link MessagesListener}: processes a batch of tasks, publishes their results as
+ * a burst under publisher confirms and then acks the tasks up to the last one whose result is
+ * confirmed with one {@code multiple} ack. The tasks after it are requeued, and results of theirs
+ * that did arrive are sent again and dropped by the aggregator. Tasks that fail are handed to
+ * {@link TaskRetryService} like in single mode. Every batch is acked or requeued, whatever fails.
+ */
+@Component
+@ConditionalOnProperty(name = "rabbitmq.listener.batch.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class BatchMessagesListener {
+
+    private final TextProcessingService textProcessingService;
+    private final RabbitTemplate rabbitTemplate;
+    private final TaskRetryService taskRetryService;
+    private final MessageConverter messageConverter;
+
+    @Value("${rabbitmq.results.queue.name}")
+    private String resultsQueue;
+
+    @Value("${rabbitmq.timing.enabled:false}")
+    private boolean timingEnabled;
+
+    @Value("${rabbitmq.timing.exchange.name}")
+    private String timingExchange;
+
+    @Value("${rabbitmq.timing.routing.key}")
+    private String timingRoutingKey;
+
+    @Value("${rabbitmq.listener.batch.confirm-timeout-ms:30000}")
+    private long confirmTimeoutMs;
+
+    @PostConstruct
+    public void checkPublisherConfirms() {
+        if (!rabbitTemplate.getConnectionFactory().isPublisherConfirms()) {
+            throw new IllegalStateException("Batch mode requires publisher confirms on the connection factory");
+        }
+    }
+
+    // The tasks are decoded one by one, so that an undecodable task does not fail the whole batch
+    @RabbitListener(queues = "${rabbitmq.queue.name}", containerFactory = "batchListenerContainerFactory")
+    public void receiveBatch(List<Message> messages, Channel channel) {
+        // In delivery order: the confirm each task waits for, or null when it waits for none
+        List<CorrelationData> confirms = new ArrayList<>(messages.size());
+        int settled = 0;
+        try {
+            for (Message message : messages) {
+                confirms.add(process(message));
+            }
+        } catch (Exception e) {
+            log.error("Batch of {} tasks stopped after {}: {}", messages.size(), confirms.size(), e.getMessage(), e);
+        }
+        try {
+            settled = awaitConfirms(confirms);
+        } catch (RuntimeException e) {
+            log.error("Failed to await the results of the batch: {}", e.getMessage(), e);
+        }
+        settle(messages, settled, channel);
+    }
+
+    /**
+     * @return the confirm of the task's result, or null if the task was dropped or handed to the retries
+     */
+    private CorrelationData process(Message message) {
+        MessageProperties properties = message.getMessageProperties();
+        TextTask task;
+        try {
+            properties.setInferredArgumentType(TextTask.class);
+            task = (TextTask) messageConverter.fromMessage(message);
+        } catch (MessageConversionException e) {
+            // Dropped like the container drops an undecodable message in single mode
+            log.error("Dropping undecodable task message {}: {}", properties.getDeliveryTag(), e.getMessage());
+            return null;
+        }
+
+        TextProcessingResult result;
+        try {
+            long startNanos = System.nanoTime();
+            result = textProcessingService.processTask(task);
+            sendTiming(task.getTaskId(), System.nanoTime() - startNanos);
+        } catch (Exception e) {
+            log.error("Error processing task {}: {}", task.getTaskId(), e.getMessage(), e);
+            // Throws unless the retry is confirmed, which stops the batch and requeues the task
+            taskRetryService.handleFailure(task, retryCount(properties), properties.getPriority(), e);
+            return null;
+        }
+
+        CorrelationData correlationData = new CorrelationData(result.getTaskId());
+        rabbitTemplate.convertAndSend(resultsQueue, result, correlationData);
+        return correlationData;
+    }
+
+    static int retryCount(MessageProperties properties) {
+        Integer retryCount = properties.getHeader(TaskRetryService.RETRY_COUNT_HEADER);
+        return retryCount != null ? retryCount : 0;
+    }
+
+    /**
+     * @return how many tasks from the start of the batch are done: their results are confirmed or
+     * they needed none
+     */
+    private int awaitConfirms(List<CorrelationData> confirms) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(confirmTimeoutMs);
+        int settled = 0;
+        for (CorrelationData correlationData : confirms) {
+            if (correlationData == null) {
+                settled++;
+                continue;
+            }
+            try {
+                CorrelationData.Confirm confirm = correlationData.getFuture()
+                        .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (!confirm.isAck()) {
+                    log.warn("Result for task {} nacked: {}", correlationData.getId(), confirm.getReason());
+                    return settled;
+                }
+            } catch (TimeoutException | ExecutionException e) {
+                log.warn("Result for task {} not confirmed: {}", correlationData.getId(), e.getMessage());
+                return settled;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return settled;
+            }
+            settled++;
+        }
+        return settled;
+    }
+
+    /**
+     * Acks the first {@code settled} tasks and requeues the rest, or the whole batch if the ack fails.
+     */
+    private void settle(List<Message> messages, int settled, Channel channel) {
+        if (settled > 0) {
+            try {
+                channel.basicAck(messages.get(settled - 1).getMessageProperties().getDeliveryTag(), true);
+            } catch (IOException | RuntimeException e) {
+                log.error("Failed to ack {} tasks of the batch: {}", settled, e.getMessage(), e);
+                settled = 0;
+            }
+        }
+        if (settled == messages.size()) {
+            log.info("Processed batch of {} tasks", messages.size());
+            return;
+        }
+        try {
+            channel.basicNack(messages.getLast().getMessageProperties().getDeliveryTag(), true, true);
+            log.warn("Requeued {} of {} tasks", messages.size() - settled, messages.size());
+        } catch (IOException | RuntimeException e) {
+            // The broker requeues the tasks left unacked once the channel closes
+            log.error("Failed to requeue batch of {} tasks: {}", messages.size(), e.getMessage(), e);
+        }
+    }
+
+    private void sendTiming(String taskId, long processingNanos) {
+        if (!timingEnabled) {
+            return;
+        }
+        TaskTiming timing = new TaskTiming();
+        timing.setTaskId(taskId);
+        timing.setProcessingTimeMicros(TimeUnit.NANOSECONDS.toMicros(processingNanos));
+        try {
+            rabbitTemplate.convertAndSend(timingExchange, timingRoutingKey, timing);
+        } catch (Exception e) {
+            log.warn("Failed to send timing for task {}: {}", taskId, e.getMessage());
+        }
+    }
+}
@@ -1,15 +1,19 @@
 package ru.ifmo;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.concurrent.TimeUnit;
+
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.AmqpMessageHeaderAccessor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
 import org.springframework.stereotype.Component;
+import ru.ifmo.dto.TaskTiming;
 import ru.ifmo.dto.TextTask;
 import ru.ifmo.dto.TextProcessingResult;
+import ru.ifmo.service.TaskRetryService;
 import ru.ifmo.service.TextProcessingService;
 
 @Component
@@ -19,7 +23,7 @@ public class MessagesListener {
 
     private final TextProcessingService textProcessingService;
     private final RabbitTemplate rabbitTemplate;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final TaskRetryService taskRetryService;
 
     @Value("${rabbitmq.results.exchange.name}")
     private String resultsExchange;
@@ -30,27 +34,57 @@ public class MessagesListener {
     @Value("${rabbitmq.results.routing.key}")
     private String resultsRoutingKey;
 
-    @RabbitListener(queues = "${rabbitmq.queue.name}")
-    public void receiveMessage(String message) {
-        log.info("Received message: {}", message);
+    @Value("${rabbitmq.timing.enabled:false}")
+    private boolean timingEnabled;
 
-        try {
-            // Parse the incoming message as TextTask
-            TextTask task = objectMapper.readValue(message, TextTask.class);
-            log.info("Processing task: {}", task.getTaskId());
+    @Value("${rabbitmq.timing.exchange.name}")
+    private String timingExchange;
+
+    @Value("${rabbitmq.timing.routing.key}")
+    private String timingRoutingKey;
+
+    // The payload is decoded by WireCodecMessageConverter according to the content-type header
+    @RabbitListener(queues = "${rabbitmq.queue.name}",
+            autoStartup = "#{!${rabbitmq.listener.batch.enabled:false}}")
+    public void receiveMessage(Message<TextTask> message) {
+        TextTask task = message.getPayload();
+        log.info("Processing task: {}", task.getTaskId());
 
+        try {
             // Process the task
+            long startNanos = System.nanoTime();
             TextProcessingResult result = textProcessingService.processTask(task);
+            sendTiming(task.getTaskId(), System.nanoTime() - startNanos);
 
             // Send result back to results queue
             sendResult(result);
 
             log.info("Successfully processed task: {}", task.getTaskId());
 
-        } catch (JsonProcessingException e) {
-            log.error("Failed to parse message as TextTask: {}", e.getMessage());
         } catch (Exception e) {
-            log.error("Error processing task: {}", e.getMessage(), e);
+            log.error("Error processing task {}: {}", task.getTaskId(), e.getMessage(), e);
+            // Throws unless the retry is confirmed, so the container requeues the task
+            taskRetryService.handleFailure(task, retryCount(message),
+                    message.getHeaders().get(AmqpMessageHeaderAccessor.PRIORITY, Integer.class), e);
+        }
+    }
+
+    private static int retryCount(Message<TextTask> message) {
+        Integer retryCount = message.getHeaders().get(TaskRetryService.RETRY_COUNT_HEADER, Integer.class);
+        return retryCount != null ? retryCount : 0;
+    }
+
+    private void sendTiming(String taskId, long processingNanos) {
+        if (!timingEnabled) {
+            return;
+        }
+        TaskTiming timing = new TaskTiming();
+        timing.setTaskId(taskId);
+        timing.setProcessingTimeMicros(TimeUnit.NANOSECONDS.toMicros(processingNanos));
+        try {
+            rabbitTemplate.convertAndSend(timingExchange, timingRoutingKey, timing);
+        } catch (Exception e) {
+            log.warn("Failed to send timing for task {}: {}", taskId, e.getMessage());
         }
     }
 
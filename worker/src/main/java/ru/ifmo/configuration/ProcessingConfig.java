@@ -0,0 +1,57 @@
+package ru.ifmo.configuration;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.ifmo.service.StageMetrics;
+
+@Configuration
+public class ProcessingConfig {
+
+    /**
+     * Runs the analyzer stages of large sections in parallel. The threads are long-lived platform
+     * threads rather than virtual threads, so the per-thread buffers of the analyzers are created
+     * once per thread instead of once per task. Only created when parallel stages are enabled.
+     */
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnExpression("${text.processing.parallel.threshold:65536} > 0")
+    public ThreadPoolExecutor analyzerExecutor(
+            @Value("${text.processing.parallel.threads:0}") int threads
+    ) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "text-analyzer-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), threadFactory);
+    }
+
+    /**
+     * Analyzes the parts of oversized sections. Separate from the analyzer pool, whose threads may
+     * be busy with the stages of other tasks. Only created when sections are split.
+     */
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnExpression("${text.processing.split.threshold:0} > 0")
+    public ForkJoinPool sectionSplitPool(
+            @Value("${text.processing.split.threads:0}") int threads
+    ) {
+        return new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+    }
+
+    @Bean
+    public StageMetrics stageMetrics(
+            @Value("${text.processing.metrics.log-interval:1000}") long logInterval
+    ) {
+        return new StageMetrics(logInterval);
+    }
+}
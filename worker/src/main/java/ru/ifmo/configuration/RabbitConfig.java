@@ -1,27 +1,164 @@
 package ru.ifmo.configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
-import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import ru.ifmo.configuration.WireCodecMessageConverter.WireCodec;
+import ru.ifmo.service.TaskRetryService;
 
 @Configuration
 public class RabbitConfig {
 
-    public Jackson2JsonMessageConverter messageConverter() {
-        return new Jackson2JsonMessageConverter();
+    @Bean
+    public MessageConverter messageConverter(
+            @Value("${rabbitmq.codec:JSON}") WireCodec outboundCodec
+    ) {
+        return new WireCodecMessageConverter(outboundCodec);
     }
 
     @Bean
-    public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory) {
+    public CompressionMetrics compressionMetrics(
+            @Value("${rabbitmq.compression.metrics.log-interval:1000}") long logInterval
+    ) {
+        return new CompressionMetrics(logInterval);
+    }
+
+    @Bean
+    public RabbitTemplate rabbitTemplate(
+            ConnectionFactory connectionFactory,
+            MessageConverter messageConverter,
+            CompressionMetrics compressionMetrics,
+            @Value("${rabbitmq.compression.enabled:false}") boolean compressionEnabled,
+            @Value("${rabbitmq.compression.threshold:4096}") int compressionThreshold,
+            @Value("${rabbitmq.compression.level:1}") int compressionLevel
+    ) {
         RabbitTemplate template = new RabbitTemplate(connectionFactory);
-        template.setMessageConverter(messageConverter());
+        template.setMessageConverter(messageConverter);
+        if (compressionEnabled) {
+            template.setBeforePublishPostProcessors(
+                    new ThresholdDeflaterPostProcessor(compressionLevel, compressionThreshold, compressionMetrics));
+        }
         return template;
     }
 
+    /**
+     * Consumer count and prefetch come from {@code spring.rabbitmq.listener.simple.*}, except that a
+     * priority queue uses the lower {@code rabbitmq.queue.priority-prefetch}. Every consumer owns one
+     * thread for its lifetime, so max-concurrency also bounds the listener threads; the container
+     * starts another consumer while the busy ones keep finding messages and stops idle ones, within
+     * the intervals below.
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory rabbitListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            CompressionMetrics compressionMetrics,
+            @Value("${rabbitmq.listener.threads:PLATFORM}") ListenerThreads listenerThreads,
+            @Value("${rabbitmq.listener.scale.consecutive-active-trigger:10}") int consecutiveActiveTrigger,
+            @Value("${rabbitmq.listener.scale.start-interval-ms:10000}") long startConsumerMinInterval,
+            @Value("${rabbitmq.listener.scale.stop-interval-ms:60000}") long stopConsumerMinInterval,
+            @Value("${rabbitmq.queue.max-priority:0}") int maxPriority,
+            @Value("${rabbitmq.queue.priority-prefetch:10}") int priorityPrefetch
+    ) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configureConsumers(factory, configurer, connectionFactory, compressionMetrics, listenerThreads,
+                consecutiveActiveTrigger, startConsumerMinInterval, stopConsumerMinInterval);
+        if (maxPriority > 0) {
+            factory.setPrefetchCount(priorityPrefetch);
+        }
+        return factory;
+    }
+
+    /**
+     * Delivers up to batch.size tasks at once, fewer when no further task arrives within
+     * receive-timeout. The listener acks the batch itself once its results are confirmed.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "rabbitmq.listener.batch.enabled", havingValue = "true")
+    public SimpleRabbitListenerContainerFactory batchListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            CompressionMetrics compressionMetrics,
+            @Value("${rabbitmq.listener.threads:PLATFORM}") ListenerThreads listenerThreads,
+            @Value("${rabbitmq.listener.scale.consecutive-active-trigger:10}") int consecutiveActiveTrigger,
+            @Value("${rabbitmq.listener.scale.start-interval-ms:10000}") long startConsumerMinInterval,
+            @Value("${rabbitmq.listener.scale.stop-interval-ms:60000}") long stopConsumerMinInterval,
+            @Value("${spring.rabbitmq.listener.simple.prefetch:250}") int prefetch,
+            @Value("${rabbitmq.listener.batch.size:50}") int batchSize,
+            @Value("${rabbitmq.listener.batch.receive-timeout-ms:100}") long receiveTimeout,
+            @Value("${rabbitmq.queue.max-priority:0}") int maxPriority,
+            @Value("${rabbitmq.queue.priority-prefetch:10}") int priorityPrefetch
+    ) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configureConsumers(factory, configurer, connectionFactory, compressionMetrics, listenerThreads,
+                consecutiveActiveTrigger, startConsumerMinInterval, stopConsumerMinInterval);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(receiveTimeout);
+        // A smaller prefetch would cut every batch short, so with priorities the batch size bounds it
+        factory.setPrefetchCount(Math.max(maxPriority > 0 ? priorityPrefetch : prefetch, batchSize));
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        return factory;
+    }
+
+    /**
+     * Failed tasks are acked only once their retries are confirmed, and in batch mode every task only
+     * once its result is, so publisher confirms are on; single mode sends its results without
+     * waiting for them.
+     */
+    @Bean
+    public static BeanPostProcessor publisherConfirms() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof CachingConnectionFactory connectionFactory) {
+                    connectionFactory.setPublisherConfirmType(CachingConnectionFactory.ConfirmType.CORRELATED);
+                }
+                return bean;
+            }
+        };
+    }
+
+    private static void configureConsumers(SimpleRabbitListenerContainerFactory factory,
+                                           SimpleRabbitListenerContainerFactoryConfigurer configurer,
+                                           ConnectionFactory connectionFactory,
+                                           CompressionMetrics compressionMetrics,
+                                           ListenerThreads listenerThreads,
+                                           int consecutiveActiveTrigger,
+                                           long startConsumerMinInterval,
+                                           long stopConsumerMinInterval) {
+        configurer.configure(factory, connectionFactory);
+        // Compressed bodies are inflated before the message converter sees them
+        factory.setAfterReceivePostProcessors(new MeteredDecompressingPostProcessor(compressionMetrics));
+
+        SimpleAsyncTaskExecutor consumerExecutor = new SimpleAsyncTaskExecutor("worker-consumer-");
+        consumerExecutor.setVirtualThreads(listenerThreads == ListenerThreads.VIRTUAL);
+        factory.setTaskExecutor(consumerExecutor);
+        factory.setConsecutiveActiveTrigger(consecutiveActiveTrigger);
+        factory.setStartConsumerMinInterval(startConsumerMinInterval);
+        factory.setStopConsumerMinInterval(stopConsumerMinInterval);
+    }
+
+    public enum ListenerThreads {
+        PLATFORM,
+        // Long-lived like platform consumers, so the analyzers' per-thread buffers are still reused
+        VIRTUAL
+    }
+
     @Bean
     public DirectExchange fanoutExchange(
             @Value("${rabbitmq.exchange.name}") String exchangeName
@@ -31,11 +168,45 @@ public class RabbitConfig {
 
     @Bean
     public Queue queue(
-            @Value("${rabbitmq.queue.name}") String queueName
+            @Value("${rabbitmq.queue.name}") String queueName,
+            @Value("${rabbitmq.queue.max-priority:0}") int maxPriority
     ) {
+        if (maxPriority > 0) {
+            return QueueBuilder.durable(queueName).maxPriority(maxPriority).build();
+        }
         return new Queue(queueName);
     }
 
+    /**
+     * Delay queues of the task retries, one per retry with a growing TTL; expired tasks are
+     * dead-lettered back to the task queue through the default exchange.
+     */
+    @Bean
+    public Declarables retryQueues(
+            @Value("${rabbitmq.queue.name}") String queueName,
+            @Value("${rabbitmq.retry.max-retries:3}") int maxRetries,
+            @Value("${rabbitmq.retry.initial-delay-ms:1000}") long initialDelayMs,
+            @Value("${rabbitmq.retry.multiplier:4.0}") double multiplier,
+            @Value("${rabbitmq.retry.max-delay-ms:300000}") long maxDelayMs
+    ) {
+        List<Declarable> queues = new ArrayList<>(maxRetries);
+        for (int retry = 1; retry <= maxRetries; retry++) {
+            queues.add(QueueBuilder.durable(TaskRetryService.retryQueueName(queueName, retry))
+                    .ttl((int) TaskRetryService.retryDelayMs(retry, initialDelayMs, multiplier, maxDelayMs))
+                    .deadLetterExchange("")
+                    .deadLetterRoutingKey(queueName)
+                    .build());
+        }
+        return new Declarables(queues);
+    }
+
+    @Bean
+    public Queue deadLetterQueue(
+            @Value("${rabbitmq.dlq.name}") String queueName
+    ) {
+        return QueueBuilder.durable(queueName).build();
+    }
+
     @Bean
     public DirectExchange resultsExchange(
             @Value("${rabbitmq.results.exchange.name}") String exchangeName
@@ -49,4 +220,18 @@ public class RabbitConfig {
     ) {
         return new Queue(queueName);
     }
+
+    @Bean
+    public DirectExchange timingExchange(
+            @Value("${rabbitmq.timing.exchange.name}") String exchangeName
+    ) {
+        return new DirectExchange(exchangeName);
+    }
+
+    @Bean
+    public DirectExchange shuffleExchange(
+            @Value("${rabbitmq.shuffle.exchange.name}") String exchangeName
+    ) {
+        return new DirectExchange(exchangeName);
+    }
 }
@@ -0,0 +1,12 @@
+package ru.ifmo.dto;
+
+/**
+ * The analyses a worker can run on a section; a task names the ones its job needs.
+ */
+public enum TaskOperation {
+    WORD_COUNT,
+    TOP_WORDS, // also the word summary
+    SENTIMENT,
+    NAME_REPLACEMENT,
+    SENTENCE_SORTING
+}
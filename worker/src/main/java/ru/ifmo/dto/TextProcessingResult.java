@@ -3,15 +3,25 @@ package ru.ifmo.dto;
 import java.util.List;
 import java.util.Map;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 
+// Fields of operations a task did not request stay null and are left out
 @Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class TextProcessingResult {
     private String taskId;
+    private String error; // set, and nothing else, when the task failed on every retry
     private Integer wordCount;
     private Map<String, Integer> topWords;
+    private WordSummary wordSummary; // null unless word summaries are enabled on the worker
     private String sentiment; // POSITIVE, NEGATIVE, NEUTRAL
     private Double sentimentScore;
     private String modifiedText;
     private List<String> sortedSentences;
+    // Sentence offsets mode: offset/length pairs into the corpus section below instead of sortedSentences
+    private int[] sortedSentenceOffsets;
+    private String corpusRef;
+    private Long offset;
+    private Integer length;
 }
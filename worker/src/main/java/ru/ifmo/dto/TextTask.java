@@ -1,5 +1,7 @@
 package ru.ifmo.dto;
 
+import java.util.Set;
+
 import lombok.Data;
 
 @Data
@@ -8,4 +10,13 @@ public class TextTask {
     private String text;
     private int topN;
     private String nameReplacement;
-}
\ No newline at end of file
+    private String corpusRef; // claim-check mode: text is null and the section is read from the corpus store
+    private long offset;
+    private int length;
+    private SectionUnit unit; // claim-check mode: the units the section was cut into
+    private Set<TaskOperation> operations; // null or empty runs every operation
+
+    public boolean requests(TaskOperation operation) {
+        return operations == null || operations.isEmpty() || operations.contains(operation);
+    }
+}
@@ -0,0 +1,170 @@
+package ru.ifmo.sentiment;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import ru.ifmo.text.TokenizedText;
+
+/**
+ * Multinomial Naive Bayes model written by {@code NaiveBayesTrainer} of the worker tests and read
+ * straight from a memory-mapped file, so it loads instantly and every worker process on a host
+ * shares one copy in the page cache. Layout, big-endian:
+ * <pre>
+ * int magic, int version, int classCount, int slotCount, int vocabularySize
+ * classCount x (UTF label, float log prior)
+ * slotCount x (long fingerprint, classCount x float log likelihood)
+ * </pre>
+ * The slots are an open-addressing table keyed by a 64-bit fingerprint of the word instead of
+ * the word itself; fingerprint 0 marks a free slot.
+ */
+public class NaiveBayesModel {
+
+    static final int MAGIC = 0x4E42534D; // "NBSM"
+    static final int VERSION = 1;
+
+    private final ByteBuffer buffer;
+    private final String[] labels;
+    private final float[] logPriors;
+    private final int slotMask;
+    private final int slotsOffset;
+    private final int slotSize;
+    private final int vocabularySize;
+
+    private NaiveBayesModel(ByteBuffer buffer) {
+        this.buffer = buffer;
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IllegalArgumentException("Not a Naive Bayes sentiment model of version " + VERSION);
+        }
+        int classCount = buffer.getInt();
+        int slotCount = buffer.getInt();
+        vocabularySize = buffer.getInt();
+        if (Integer.bitCount(slotCount) != 1) {
+            throw new IllegalArgumentException("Slot count is not a power of two: " + slotCount);
+        }
+
+        labels = new String[classCount];
+        logPriors = new float[classCount];
+        for (int c = 0; c < classCount; c++) {
+            byte[] label = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(label);
+            labels[c] = new String(label, StandardCharsets.UTF_8);
+            logPriors[c] = buffer.getFloat();
+        }
+
+        slotMask = slotCount - 1;
+        slotsOffset = buffer.position();
+        slotSize = Long.BYTES + classCount * Float.BYTES;
+        if ((long) slotsOffset + (long) slotCount * slotSize > buffer.limit()) {
+            throw new IllegalArgumentException("Model file is truncated");
+        }
+    }
+
+    public static NaiveBayesModel open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new NaiveBayesModel(buffer);
+        }
+    }
+
+    public int classCount() {
+        return labels.length;
+    }
+
+    public String label(int classIndex) {
+        return labels[classIndex];
+    }
+
+    /**
+     * @return the index of the class with this label, or -1
+     */
+    public int classIndex(String label) {
+        for (int c = 0; c < labels.length; c++) {
+            if (labels[c].equals(label)) {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    public int vocabularySize() {
+        return vocabularySize;
+    }
+
+    /**
+     * Adds up the log prior and the log likelihoods of the section's words per class in one pass
+     * over the tokens; words outside the vocabulary are skipped. Only absolute reads of the mapped
+     * buffer are used, so one model serves all threads and no token allocates anything.
+     *
+     * @param logJoint receives the unnormalized log posterior of every class
+     * @return the number of tokens found in the vocabulary
+     */
+    public int score(TokenizedText tokens, double[] logJoint) {
+        return score(List.of(tokens), logJoint);
+    }
+
+    /**
+     * Scores the parts of a section as one section. The parts are added up in order, so the result
+     * is the same as that of the whole section to the last bit.
+     */
+    public int score(List<TokenizedText> parts, double[] logJoint) {
+        for (int c = 0; c < labels.length; c++) {
+            logJoint[c] = logPriors[c];
+        }
+        int known = 0;
+        for (TokenizedText tokens : parts) {
+            known += addLikelihoods(tokens, logJoint);
+        }
+        return known;
+    }
+
+    private int addLikelihoods(TokenizedText tokens, double[] logJoint) {
+        int known = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            int slot = find(fingerprint(tokens.chars(), tokens.start(i), tokens.length(i)));
+            if (slot < 0) {
+                continue;
+            }
+            known++;
+            int offset = slotsOffset + slot * slotSize + Long.BYTES;
+            for (int c = 0; c < labels.length; c++) {
+                logJoint[c] += buffer.getFloat(offset + c * Float.BYTES);
+            }
+        }
+        return known;
+    }
+
+    private int find(long fingerprint) {
+        for (int slot = slotIndex(fingerprint, slotMask); ; slot = (slot + 1) & slotMask) {
+            long stored = buffer.getLong(slotsOffset + slot * slotSize);
+            if (stored == fingerprint) {
+                return slot;
+            }
+            if (stored == 0) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a over the chars of a word, never 0.
+     */
+    static long fingerprint(char[] chars, int offset, int length) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = offset; i < offset + length; i++) {
+            hash ^= chars[i];
+            hash *= 0x100000001b3L;
+        }
+        return hash != 0 ? hash : 1;
+    }
+
+    static int slotIndex(long fingerprint, int slotMask) {
+        return (int) (fingerprint ^ (fingerprint >>> 32)) & slotMask;
+    }
+}
@@ -1,9 +1,17 @@
 package ru.ifmo.service;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import ru.ifmo.text.NameRecognizer;
 
 @Service
 public class NameReplacementService {
@@ -22,11 +30,39 @@ public class NameReplacementService {
                     "(?:сказал|говорит|ответил|спросил|said|replied|asked))"
     );
 
+    // Optional file with one known name per line
+    @Value("${text.processing.names.gazetteer:}")
+    private String gazetteerPath;
+
+    private ThreadLocal<NameRecognizer> recognizers;
+
+    @PostConstruct
+    public void init() throws IOException {
+        List<String> gazetteer = gazetteerPath.isBlank() ? List.of()
+                : Files.readAllLines(Paths.get(gazetteerPath), StandardCharsets.UTF_8).stream()
+                        .map(String::trim)
+                        .filter(line -> !line.isEmpty())
+                        .toList();
+        recognizers = ThreadLocal.withInitial(() -> new NameRecognizer(gazetteer));
+    }
+
     public String replaceNames(String text, String replacement) {
         if (text == null || text.trim().isEmpty() || replacement == null) {
             return text;
         }
 
+        NameRecognizer recognizer = recognizers.get();
+        if (NameRecognizer.supports(replacement)) {
+            return recognizer.replaceNames(text, replacement);
+        }
+        return replaceNamesWithPatterns(text, replacement, recognizer);
+    }
+
+    /**
+     * The sweeps the recognizer reproduces, kept for replacements it cannot handle exactly: those
+     * may be matched again by the later sweeps or use group references.
+     */
+    private String replaceNamesWithPatterns(String text, String replacement, NameRecognizer recognizer) {
         String result = text;
 
         result = CONTEXT_NAME_PATTERN.matcher(result)
@@ -36,15 +72,14 @@ public class NameReplacementService {
                 });
 
         result = QUOTED_NAME_PATTERN.matcher(result)
-                .replaceAll(matchResult -> "\"" + replacement + "\"" +
-                        matchResult.group().substring(matchResult.end(1) + 1));
+                .replaceAll(matchResult -> "\"" + replacement + "\"");
 
         Matcher nameMatcher = NAME_PATTERN.matcher(result);
-        StringBuffer sb = new StringBuffer();
+        StringBuilder sb = new StringBuilder(result.length() + 16);
 
         while (nameMatcher.find()) {
             String match = nameMatcher.group();
-            if (isPotentialName(match)) {
+            if (recognizer.isPotentialName(match) || recognizer.isKnownName(match)) {
                 nameMatcher.appendReplacement(sb, replacement);
             } else {
                 nameMatcher.appendReplacement(sb, match);
@@ -54,31 +89,4 @@ public class NameReplacementService {
 
         return sb.toString();
     }
-
-    private boolean isPotentialName(String word) {
-        String lowerWord = word.toLowerCase();
-
-        String[] excludeWords = {
-                "january", "february", "march", "april", "may", "june",
-                "july", "august", "september", "october", "november", "december",
-                "monday", "tuesday", "wednesday", "thursday", "friday", "saturday", "sunday",
-                "январь", "февраль", "март", "апрель", "май", "июнь",
-                "июль", "август", "сентябрь", "октябрь", "ноябрь", "декабрь",
-                "понедельник", "вторник", "среда", "четверг", "пятница", "суббота", "воскресенье",
-                "the", "this", "that", "these", "those", "when", "where", "why", "how",
-                "это", "этот", "эта", "эти", "когда", "где", "почему", "как",
-                "god", "lord", "jesus", "christ", "allah", "buddha",
-                "бог", "господь", "иисус", "христос", "аллах", "будда",
-                "america", "europe", "asia", "africa", "australia",
-                "америка", "европа", "азия", "африка", "австралия"
-        };
-
-        for (String exclude : excludeWords) {
-            if (lowerWord.equals(exclude)) {
-                return false;
-            }
-        }
-
-        return word.length() >= 2 && word.length() <= 20 && word.matches("^[A-ZА-Я][a-zа-я]+$");
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,245 @@
+package ru.ifmo.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.ifmo.dto.SectionUnit;
+import ru.ifmo.dto.TextProcessingResult;
+import ru.ifmo.dto.TextTask;
+
+/**
+ * Results of recently processed sections, keyed by a 128-bit hash of the text and the task
+ * parameters, so repeated boilerplate sections skip the pipeline. Entries are evicted in LRU order
+ * once their estimated size exceeds {@code maxBytes}. With a cache file the entries are saved on
+ * shutdown and loaded on startup, unless the settings that shape results have changed.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ResultCacheService {
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${text.processing.cache.max-bytes:0}")
+    private long maxBytes;
+
+    @Value("${text.processing.cache.file:}")
+    private String cacheFile;
+
+    @Value("${text.processing.cache.metrics.log-interval:1000}")
+    private long logInterval;
+
+    // The settings that change results
+    @Value("${text.processing.word-summary.size:0}")
+    private int wordSummarySize;
+
+    @Value("${text.processing.sentences.offsets:false}")
+    private boolean sentenceOffsets;
+
+    @Value("${text.processing.sentiment.model:}")
+    private String sentimentModel;
+
+    @Value("${text.processing.names.gazetteer:}")
+    private String gazetteer;
+
+    // Access order: the first entry is the least recently used
+    private final LinkedHashMap<CacheKey, CachedResult> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    // Exactly one thread sees each multiple of the log interval
+    private final AtomicLong lookups = new AtomicLong();
+
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    @PostConstruct
+    public void load() {
+        if (!isEnabled() || cacheFile.isBlank() || !Files.exists(Paths.get(cacheFile))) {
+            return;
+        }
+        try {
+            PersistedCache persisted = objectMapper.readValue(Paths.get(cacheFile).toFile(), PersistedCache.class);
+            if (!settings().equals(persisted.settings())) {
+                log.info("Discarding result cache {}: written with settings {}", cacheFile, persisted.settings());
+                return;
+            }
+            persisted.entries().forEach(entry -> put(entry.key(), entry.result()));
+            log.info("Loaded {} cached results ({} bytes) from {}", entries.size(), totalBytes, cacheFile);
+        } catch (IOException e) {
+            log.warn("Failed to load result cache {}: {}", cacheFile, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public synchronized void save() {
+        if (!isEnabled() || cacheFile.isBlank()) {
+            return;
+        }
+        List<PersistedEntry> persisted = new ArrayList<>(entries.size());
+        entries.forEach((key, cached) -> persisted.add(new PersistedEntry(key, cached.result())));
+        try {
+            // Written next to the file and moved, so a crash never leaves a truncated cache
+            Path target = Paths.get(cacheFile).toAbsolutePath();
+            Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+            objectMapper.writeValue(temporary.toFile(), new PersistedCache(settings(), persisted));
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Saved {} cached results to {}", persisted.size(), target);
+        } catch (IOException e) {
+            log.warn("Failed to save result cache {}: {}", cacheFile, e.getMessage());
+        }
+    }
+
+    /**
+     * @param operations bit mask of the requested operations
+     * @param sentenceOffsets whether the result carries sentence offsets instead of sentences
+     * @param unit units of a corpus section, whose separators the name replacement normalizes; null for inline text
+     */
+    public CacheKey key(String text, int topN, String nameReplacement, int operations, boolean sentenceOffsets,
+                        SectionUnit unit) {
+        // Two independent 64-bit hashes in one pass over the chars
+        long hash1 = 0xcbf29ce484222325L;
+        long hash2 = 0x9e3779b97f4a7c15L;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            hash1 = (hash1 ^ c) * 0x100000001b3L;
+            hash2 = Long.rotateLeft(hash2 + c, 27) * 0xff51afd7ed558ccdL;
+        }
+        return new CacheKey(hash1, hash2, text.length(), topN, nameReplacement, operations, sentenceOffsets, unit);
+    }
+
+    /**
+     * @return a copy of the cached result for this task, or null
+     */
+    public TextProcessingResult get(CacheKey key, TextTask task) {
+        CachedResult cached;
+        synchronized (this) {
+            cached = entries.get(key);
+        }
+        if (cached == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        if (logInterval > 0 && lookups.incrementAndGet() % logInterval == 0) {
+            log.info("Result cache: {}", summary());
+        }
+        return cached != null ? copy(cached.result(), task) : null;
+    }
+
+    public void put(CacheKey key, TextProcessingResult result) {
+        TextProcessingResult stored = copy(result, null);
+        long bytes = estimateBytes(stored);
+        if (bytes > maxBytes) {
+            return;
+        }
+        synchronized (this) {
+            CachedResult previous = entries.put(key, new CachedResult(stored, bytes));
+            totalBytes += bytes - (previous != null ? previous.bytes() : 0);
+            Iterator<CachedResult> eldest = entries.values().iterator();
+            while (totalBytes > maxBytes && eldest.hasNext()) {
+                totalBytes -= eldest.next().bytes();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    public synchronized String summary() {
+        long hitCount = hits.sum();
+        long lookups = hitCount + misses.sum();
+        return String.format("%d lookups, %.1f%% hits, %d entries, %d of %d bytes, %d evictions",
+                lookups, lookups > 0 ? 100.0 * hitCount / lookups : 0.0, entries.size(), totalBytes, maxBytes,
+                evictions.sum());
+    }
+
+    private String settings() {
+        return String.format("word-summary=%d,sentence-offsets=%b,sentiment-model=%s,gazetteer=%s",
+                wordSummarySize, sentenceOffsets, sentimentModel, gazetteer);
+    }
+
+    // Shallow: results are not modified once they are built
+    private static TextProcessingResult copy(TextProcessingResult source, TextTask task) {
+        TextProcessingResult copy = new TextProcessingResult();
+        copy.setTaskId(task != null ? task.getTaskId() : null);
+        copy.setWordCount(source.getWordCount());
+        copy.setTopWords(source.getTopWords());
+        copy.setWordSummary(source.getWordSummary());
+        copy.setSentiment(source.getSentiment());
+        copy.setSentimentScore(source.getSentimentScore());
+        copy.setModifiedText(source.getModifiedText());
+        copy.setSortedSentences(source.getSortedSentences());
+        copy.setSortedSentenceOffsets(source.getSortedSentenceOffsets());
+        if (task != null && source.getSortedSentenceOffsets() != null) {
+            // The offsets are relative to the section, which may sit anywhere in another corpus
+            copy.setCorpusRef(task.getCorpusRef());
+            copy.setOffset(task.getOffset());
+            copy.setLength(task.getLength());
+        }
+        return copy;
+    }
+
+    // Rough heap footprint: 2 bytes per char plus object overheads
+    private static long estimateBytes(TextProcessingResult result) {
+        long bytes = 256;
+        if (result.getModifiedText() != null) {
+            bytes += 48 + 2L * result.getModifiedText().length();
+        }
+        bytes += wordsBytes(result.getTopWords());
+        if (result.getWordSummary() != null) {
+            bytes += wordsBytes(result.getWordSummary().getCounts());
+        }
+        if (result.getSortedSentences() != null) {
+            for (String sentence : result.getSortedSentences()) {
+                bytes += 56 + 2L * sentence.length();
+            }
+        }
+        if (result.getSortedSentenceOffsets() != null) {
+            bytes += 16 + 4L * result.getSortedSentenceOffsets().length;
+        }
+        return bytes;
+    }
+
+    private static long wordsBytes(Map<String, Integer> words) {
+        long bytes = 0;
+        if (words != null) {
+            for (String word : words.keySet()) {
+                bytes += 88 + 2L * word.length();
+            }
+        }
+        return bytes;
+    }
+
+    public record CacheKey(long hash1, long hash2, int length, int topN, String nameReplacement, int operations,
+                           boolean sentenceOffsets, SectionUnit unit) {
+    }
+
+    private record CachedResult(TextProcessingResult result, long bytes) {
+    }
+
+    record PersistedCache(String settings, List<PersistedEntry> entries) {
+    }
+
+    record PersistedEntry(CacheKey key, TextProcessingResult result) {
+    }
+}
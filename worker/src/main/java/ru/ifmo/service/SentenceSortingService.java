@@ -1,31 +1,23 @@
 package ru.ifmo.service;
 
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 import org.springframework.stereotype.Service;
+import ru.ifmo.text.SentenceIndex;
 
 @Service
 public class SentenceSortingService {
 
-    private static final Pattern SENTENCE_PATTERN = Pattern.compile(
-            "(?<=[.!?])\\s+(?=[A-ZА-Я])"
-    );
+    // Index buffers are reused by every task processed on the same listener thread
+    private final ThreadLocal<SentenceIndex> sentenceIndexes = ThreadLocal.withInitial(SentenceIndex::new);
 
     public List<String> sortSentencesByLength(String text) {
         if (text == null || text.trim().isEmpty()) {
             return new ArrayList<>();
         }
 
-        List<String> sentences = splitIntoSentences(text);
-
-        return sentences.stream()
-                .filter(sentence -> !sentence.trim().isEmpty())
-                .sorted(Comparator.comparing(String::length))
-                .collect(Collectors.toList());
+        return index(text).sortedSentences(false);
     }
 
     public List<String> sortSentencesByLengthDescending(String text) {
@@ -33,46 +25,102 @@ public class SentenceSortingService {
             return new ArrayList<>();
         }
 
-        List<String> sentences = splitIntoSentences(text);
+        return index(text).sortedSentences(true);
+    }
+
+    /**
+     * Sorts like {@link #sortSentencesByLength(String)} without creating the sentences.
+     *
+     * @return offset/length pairs into {@code text}, shortest sentence first
+     */
+    public int[] sortSentenceOffsetsByLength(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return new int[0];
+        }
 
-        return sentences.stream()
-                .filter(sentence -> !sentence.trim().isEmpty())
-                .sorted(Comparator.comparing(String::length).reversed())
-                .collect(Collectors.toList());
+        return index(text).sortedOffsets(false);
     }
 
-    private List<String> splitIntoSentences(String text) {
-        String cleanText = text.trim().replaceAll("\\s+", " ");
-
-        String[] sentences = SENTENCE_PATTERN.split(cleanText);
-
-        List<String> result = new ArrayList<>();
-        for (String sentence : sentences) {
-            String trimmed = sentence.trim();
-            if (!trimmed.isEmpty()) {
-                if (!trimmed.matches(".*[.!?]$")) {
-                    if (!trimmed.endsWith(".") && !trimmed.endsWith("!") && !trimmed.endsWith("?")) {
-                        trimmed += ".";
-                    }
-                }
-                result.add(trimmed);
+    /**
+     * The sentences of one part of a section in text order, with the lengths they are sorted by.
+     *
+     * @param partStart offset of the part in the section, added to the offsets
+     * @param offsets whether to keep offset/length pairs instead of the sentences
+     */
+    public PartSentences indexPart(String part, int partStart, boolean offsets) {
+        SentenceIndex sentences = index(part);
+        int[] lengths = new int[sentences.size()];
+        List<String> texts = offsets ? null : new ArrayList<>(sentences.size());
+        int[] pairs = offsets ? new int[sentences.size() * 2] : null;
+        for (int i = 0; i < sentences.size(); i++) {
+            lengths[i] = sentences.normalizedLength(i);
+            if (offsets) {
+                pairs[2 * i] = partStart + sentences.offset(i);
+                pairs[2 * i + 1] = sentences.length(i);
+            } else {
+                texts.add(sentences.sentence(i));
             }
         }
+        return new PartSentences(lengths, texts, pairs);
+    }
 
-        if (result.isEmpty() && !cleanText.isEmpty()) {
-            String[] fallbackSentences = cleanText.split("(?<=[.!?])\\s+");
-            for (String sentence : fallbackSentences) {
-                String trimmed = sentence.trim();
-                if (!trimmed.isEmpty()) {
-                    result.add(trimmed);
-                }
-            }
+    /**
+     * Sorts the sentences of all parts of a section like {@link #sortSentencesByLength(String)}
+     * sorts those of the whole section: a stable sort over the parts in text order.
+     */
+    public List<String> sortPartsByLength(List<PartSentences> parts) {
+        int[] order = sortByLength(parts);
+        List<String> all = new ArrayList<>(order.length);
+        parts.forEach(part -> all.addAll(part.sentences()));
+        List<String> sorted = new ArrayList<>(order.length);
+        for (int index : order) {
+            sorted.add(all.get(index));
+        }
+        return sorted;
+    }
+
+    /**
+     * Sorts like {@link #sortPartsByLength(List)} without creating the sentences.
+     *
+     * @return offset/length pairs into the section, shortest sentence first
+     */
+    public int[] sortPartOffsetsByLength(List<PartSentences> parts) {
+        int[] order = sortByLength(parts);
+        int[] all = new int[order.length * 2];
+        int size = 0;
+        for (PartSentences part : parts) {
+            System.arraycopy(part.offsets(), 0, all, size, part.offsets().length);
+            size += part.offsets().length;
         }
+        int[] sorted = new int[order.length * 2];
+        for (int i = 0; i < order.length; i++) {
+            sorted[2 * i] = all[2 * order[i]];
+            sorted[2 * i + 1] = all[2 * order[i] + 1];
+        }
+        return sorted;
+    }
 
-        if (result.isEmpty() && !cleanText.isEmpty()) {
-            result.add(cleanText);
+    // The sort SentenceIndex does for a section, over the sentence lengths of all parts in text order
+    private static int[] sortByLength(List<PartSentences> parts) {
+        int size = 0;
+        for (PartSentences part : parts) {
+            size += part.lengths().length;
         }
+        int[] lengths = new int[size];
+        int index = 0;
+        for (PartSentences part : parts) {
+            System.arraycopy(part.lengths(), 0, lengths, index, part.lengths().length);
+            index += part.lengths().length;
+        }
+        return SentenceIndex.sortByLength(lengths, size, false);
+    }
+
+    public record PartSentences(int[] lengths, List<String> sentences, int[] offsets) {
+    }
 
-        return result;
+    private SentenceIndex index(String text) {
+        SentenceIndex sentences = sentenceIndexes.get();
+        sentences.index(text);
+        return sentences;
     }
-}
\ No newline at end of file
+}
@@ -3,79 +3,161 @@ package ru.ifmo.service;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
+import ru.ifmo.sentiment.NaiveBayesModel;
+import ru.ifmo.text.CharKeyTable;
+import ru.ifmo.text.TokenizedText;
+import ru.ifmo.text.Tokenizer;
 
 @Service
+@Slf4j
 public class SentimentAnalysisService {
 
-    private Set<String> positiveWords;
-    private Set<String> negativeWords;
+    public record Sentiment(String label, double score) {
+    }
+
+    // Word list hits of a part of a section; the tallies of the parts add up to that of the section
+    public record Tally(int positive, int negative, int tokens) {
+        public Tally plus(Tally other) {
+            return new Tally(positive + other.positive, negative + other.negative, tokens + other.tokens);
+        }
+    }
+
+    private static final Sentiment NEUTRAL = new Sentiment("NEUTRAL", 0.0);
+
+    // Positive words get the ids below positiveWordCount; a word in both lists counts as positive
+    private CharKeyTable lexicon;
+    private int positiveWordCount;
+
+    // Optional Naive Bayes model written by NaiveBayesTrainer; replaces the word lists when set
+    @Value("${text.processing.sentiment.model:}")
+    private String modelPath;
+
+    private NaiveBayesModel model;
+    private int positiveClass;
+    private int negativeClass;
 
     @PostConstruct
-    public void init() {
-        positiveWords = loadWordsFromFile("sentiment/positive-words.txt");
-        negativeWords = loadWordsFromFile("sentiment/negative-words.txt");
+    public void init() throws IOException {
+        if (!modelPath.isBlank()) {
+            model = NaiveBayesModel.open(Paths.get(modelPath));
+            positiveClass = model.classIndex("POSITIVE");
+            negativeClass = model.classIndex("NEGATIVE");
+            log.info("Loaded sentiment model {} with {} classes and {} words",
+                    modelPath, model.classCount(), model.vocabularySize());
+        }
+
+        Set<String> positiveWords = loadWordsFromFile("sentiment/positive-words.txt");
+        Set<String> negativeWords = loadWordsFromFile("sentiment/negative-words.txt");
+
+        lexicon = new CharKeyTable(positiveWords.size() + negativeWords.size());
+        positiveWords.forEach(lexicon::add);
+        positiveWordCount = lexicon.size();
+        negativeWords.forEach(lexicon::add);
     }
 
     public String analyzeSentiment(String text) {
-        if (text == null || text.trim().isEmpty()) {
-            return "NEUTRAL";
-        }
+        return analyze(Tokenizer.tokenize(text)).label();
+    }
+
+    public String analyzeSentiment(TokenizedText tokens) {
+        return analyze(tokens).label();
+    }
 
-        String[] words = text.toLowerCase()
-                .replaceAll("[^a-zA-Zа-яА-Я\\s]", " ")
-                .trim()
-                .split("\\s+");
+    public double calculateSentimentScore(String text) {
+        return analyze(Tokenizer.tokenize(text)).score();
+    }
+
+    public double calculateSentimentScore(TokenizedText tokens) {
+        return analyze(tokens).score();
+    }
 
+    /**
+     * Label and score of a section in one pass over its tokens.
+     */
+    public Sentiment analyze(TokenizedText tokens) {
+        return model != null ? analyzeWithModel(List.of(tokens)) : analyzeWithLexicon(tally(tokens));
+    }
+
+    /**
+     * Sentiment of a section from its parts, the same as {@link #analyze(TokenizedText)} of the
+     * whole section. The model adds up the parts in order, as its floating-point sums depend on it.
+     *
+     * @param tally sum of the tallies of the parts, only used without a model
+     */
+    public Sentiment analyze(List<TokenizedText> parts, Tally tally) {
+        return model != null ? analyzeWithModel(parts) : analyzeWithLexicon(tally);
+    }
+
+    public boolean usesModel() {
+        return model != null;
+    }
+
+    public Tally tally(TokenizedText tokens) {
         int positiveCount = 0;
         int negativeCount = 0;
 
-        for (String word : words) {
-            if (positiveWords.contains(word)) {
+        for (int i = 0; i < tokens.size(); i++) {
+            int id = lexicon.find(tokens.chars(), tokens.start(i), tokens.length(i));
+            if (id >= 0 && id < positiveWordCount) {
                 positiveCount++;
-            } else if (negativeWords.contains(word)) {
+            } else if (id >= 0) {
                 negativeCount++;
             }
         }
+        return new Tally(positiveCount, negativeCount, tokens.size());
+    }
+
+    private Sentiment analyzeWithLexicon(Tally tally) {
+        if (tally.tokens() == 0) {
+            return NEUTRAL;
+        }
 
-        if (positiveCount > negativeCount) {
-            return "POSITIVE";
-        } else if (negativeCount > positiveCount) {
-            return "NEGATIVE";
+        String label;
+        if (tally.positive() > tally.negative()) {
+            label = "POSITIVE";
+        } else if (tally.negative() > tally.positive()) {
+            label = "NEGATIVE";
         } else {
-            return "NEUTRAL";
+            label = "NEUTRAL";
         }
+        return new Sentiment(label, (double) (tally.positive() - tally.negative()) / tally.tokens());
     }
 
-    public double calculateSentimentScore(String text) {
-        if (text == null || text.trim().isEmpty()) {
-            return 0.0;
+    // The label is the most probable class, the score P(POSITIVE) - P(NEGATIVE)
+    private Sentiment analyzeWithModel(List<TokenizedText> parts) {
+        double[] logJoint = new double[model.classCount()];
+        if (model.score(parts, logJoint) == 0) {
+            return NEUTRAL;
         }
 
-        String[] words = text.toLowerCase()
-                .replaceAll("[^a-zA-Zа-яА-Я\\s]", " ")
-                .trim()
-                .split("\\s+");
-
-        int positiveCount = 0;
-        int negativeCount = 0;
-        int totalWords = words.length;
-
-        for (String word : words) {
-            if (positiveWords.contains(word)) {
-                positiveCount++;
-            } else if (negativeWords.contains(word)) {
-                negativeCount++;
+        int best = 0;
+        for (int c = 1; c < logJoint.length; c++) {
+            if (logJoint[c] > logJoint[best]) {
+                best = c;
             }
         }
+        double normalizer = 0;
+        for (double logProbability : logJoint) {
+            normalizer += Math.exp(logProbability - logJoint[best]);
+        }
+        double score = posterior(logJoint, positiveClass, best, normalizer)
+                - posterior(logJoint, negativeClass, best, normalizer);
+        return new Sentiment(model.label(best), score);
+    }
 
-        return totalWords > 0 ? (double) (positiveCount - negativeCount) / totalWords : 0.0;
+    private static double posterior(double[] logJoint, int classIndex, int best, double normalizer) {
+        return classIndex < 0 ? 0.0 : Math.exp(logJoint[classIndex] - logJoint[best]) / normalizer;
     }
 
     private Set<String> loadWordsFromFile(String fileName) {
@@ -0,0 +1,60 @@
+package ru.ifmo.service;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Wall-clock time per processing stage, logged every {@code logInterval} tasks. Sequential,
+ * parallel and split tasks are recorded as separate stages, so their latencies can be compared.
+ */
+@Slf4j
+public class StageMetrics {
+
+    private final Map<String, StageStats> stages = new ConcurrentHashMap<>();
+    private final AtomicLong tasks = new AtomicLong();
+    private final long logInterval;
+
+    public StageMetrics(long logInterval) {
+        this.logInterval = logInterval;
+    }
+
+    public void record(String stage, long nanos) {
+        StageStats stats = stages.computeIfAbsent(stage, k -> new StageStats());
+        stats.count.increment();
+        stats.nanos.add(nanos);
+    }
+
+    /**
+     * Records the end-to-end time of a task and logs the summary every {@code logInterval} tasks.
+     */
+    public void recordTask(String mode, long nanos) {
+        record("task-" + mode, nanos);
+        // Exactly one thread sees each multiple of the interval
+        long taskCount = tasks.incrementAndGet();
+        if (logInterval > 0 && taskCount % logInterval == 0) {
+            log.info("Stage timings after {} tasks: {}", taskCount, summary());
+        }
+    }
+
+    public Map<String, String> summary() {
+        Map<String, String> summary = new TreeMap<>();
+        stages.forEach((stage, stats) -> summary.put(stage, stats.toString()));
+        return summary;
+    }
+
+    private static class StageStats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        @Override
+        public String toString() {
+            long runs = count.sum();
+            return String.format("%d runs, avg %.1f us", runs, runs > 0 ? nanos.sum() / 1000.0 / runs : 0.0);
+        }
+    }
+}
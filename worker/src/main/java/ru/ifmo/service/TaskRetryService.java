@@ -0,0 +1,129 @@
+package ru.ifmo.service;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.ifmo.dto.TextProcessingResult;
+import ru.ifmo.dto.TextTask;
+
+/**
+ * Retries failed tasks with exponential backoff. Retry {@code n} is published to the delay queue
+ * {@code <task queue>.retry.<n>}, whose message TTL dead-letters it back to the task queue after
+ * {@code initialDelay * multiplier^(n-1)} ms, capped at {@code maxDelay}. Every retry has its own
+ * queue because all messages of a queue share one TTL: a long delay at the head of a shared queue
+ * would hold back the short ones behind it. A task that fails {@code maxRetries} retries goes to
+ * the dead-letter queue, and a failure result goes to the aggregator so the session completes.
+ * These publishes are confirmed before the failed task is acked, so a task is never lost between
+ * the task queue and the retry or dead-letter queue.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TaskRetryService {
+
+    public static final String RETRY_COUNT_HEADER = "x-retry-count";
+    public static final String ERROR_HEADER = "x-error";
+
+    private final RabbitTemplate rabbitTemplate;
+    private final WordCountShuffleService wordCountShuffleService;
+
+    @Value("${rabbitmq.queue.name}")
+    private String taskQueue;
+
+    @Value("${rabbitmq.results.queue.name}")
+    private String resultsQueue;
+
+    @Value("${rabbitmq.retry.max-retries:3}")
+    private int maxRetries;
+
+    @Value("${rabbitmq.dlq.name}")
+    private String deadLetterQueue;
+
+    @Value("${text.processing.shuffle.partitions:0}")
+    private int shufflePartitions;
+
+    @Value("${rabbitmq.retry.confirm-timeout-ms:30000}")
+    private long confirmTimeoutMs;
+
+    /**
+     * Publishes the task to the delay queue of its next retry or, once the retries are used up, to
+     * the dead-letter queue along with a failure result. Throws unless the broker confirms the
+     * messages, e.g. while the connection is down, so the caller can requeue the task.
+     *
+     * @param retryCount retries the task has had so far
+     * @param priority priority of the received message, or null
+     */
+    public void handleFailure(TextTask task, int retryCount, Integer priority, Exception error) {
+        String reason = error.getClass().getSimpleName() + ": " + error.getMessage();
+        if (retryCount < maxRetries) {
+            int retry = retryCount + 1;
+            CorrelationData retryConfirm = new CorrelationData(task.getTaskId() + "-retry-" + retry);
+            rabbitTemplate.convertAndSend("", retryQueueName(taskQueue, retry), task, message -> {
+                message.getMessageProperties().setHeader(RETRY_COUNT_HEADER, retry);
+                message.getMessageProperties().setHeader(ERROR_HEADER, reason);
+                if (priority != null) {
+                    message.getMessageProperties().setPriority(priority);
+                }
+                return message;
+            }, retryConfirm);
+            awaitConfirm(retryConfirm);
+            log.warn("Task {} failed ({}), retry {}/{} scheduled", task.getTaskId(), reason, retry, maxRetries);
+            return;
+        }
+
+        CorrelationData deadLetterConfirm = new CorrelationData(task.getTaskId() + "-dead-letter");
+        rabbitTemplate.convertAndSend("", deadLetterQueue, task, message -> {
+            message.getMessageProperties().setHeader(RETRY_COUNT_HEADER, retryCount);
+            message.getMessageProperties().setHeader(ERROR_HEADER, reason);
+            return message;
+        }, deadLetterConfirm);
+
+        if (shufflePartitions > 0) {
+            // The reducer shards wait for a partition from every task
+            wordCountShuffleService.publish(task.getTaskId(),
+                    Collections.nCopies(shufflePartitions, Map.<String, Integer>of()));
+        }
+        TextProcessingResult result = new TextProcessingResult();
+        result.setTaskId(task.getTaskId());
+        result.setError(reason);
+        CorrelationData resultConfirm = new CorrelationData(task.getTaskId());
+        rabbitTemplate.convertAndSend(resultsQueue, result, resultConfirm);
+        awaitConfirm(deadLetterConfirm);
+        awaitConfirm(resultConfirm);
+        log.error("Task {} failed after {} retries ({}), moved to {}",
+                task.getTaskId(), retryCount, reason, deadLetterQueue);
+    }
+
+    private void awaitConfirm(CorrelationData correlationData) {
+        CorrelationData.Confirm confirm;
+        try {
+            confirm = correlationData.getFuture().get(confirmTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the confirm of " + correlationData.getId(), e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("No confirm for " + correlationData.getId(), e);
+        }
+        if (!confirm.isAck()) {
+            throw new IllegalStateException(correlationData.getId() + " nacked: " + confirm.getReason());
+        }
+    }
+
+    public static String retryQueueName(String taskQueue, int retry) {
+        return taskQueue + ".retry." + retry;
+    }
+
+    public static long retryDelayMs(int retry, long initialDelayMs, double multiplier, long maxDelayMs) {
+        double delay = initialDelayMs * Math.pow(multiplier, retry - 1);
+        return (long) Math.min(delay, maxDelayMs);
+    }
+}
@@ -1,9 +1,31 @@
 package ru.ifmo.service;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.stream.Collectors;
+
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import ru.ifmo.dto.TaskOperation;
 import ru.ifmo.dto.TextTask;
 import ru.ifmo.dto.TextProcessingResult;
+import ru.ifmo.text.SectionText;
+import ru.ifmo.text.SentenceIndex;
+import ru.ifmo.text.TokenizedText;
+import ru.ifmo.text.Tokenizer;
+import ru.ifmo.text.WordFrequencyTable;
 
 @Service
 @RequiredArgsConstructor
@@ -14,24 +36,361 @@ public class TextProcessingService {
     private final SentimentAnalysisService sentimentAnalysisService;
     private final NameReplacementService nameReplacementService;
     private final SentenceSortingService sentenceSortingService;
+    private final CorpusStoreService corpusStoreService;
+    private final WordCountShuffleService wordCountShuffleService;
+    // Present when text.processing.parallel.threshold > 0
+    private final Optional<ThreadPoolExecutor> analyzerExecutor;
+    // Present when text.processing.split.threshold > 0
+    private final Optional<ForkJoinPool> sectionSplitPool;
+    private final StageMetrics stageMetrics;
+    private final ResultCacheService resultCacheService;
+
+    @Value("${text.processing.word-summary.size:0}")
+    private int wordSummarySize;
+
+    @Value("${text.processing.shuffle.partitions:0}")
+    private int shufflePartitions;
+
+    @Value("${text.processing.sentences.offsets:false}")
+    private boolean sentenceOffsets;
+
+    // Sections of at least this many chars run their analyzers in parallel (0 = never)
+    @Value("${text.processing.parallel.threshold:65536}")
+    private int parallelThreshold;
+
+    // Sections of at least this many chars are split into parts of about part-size chars (0 = never)
+    @Value("${text.processing.split.threshold:0}")
+    private int splitThreshold;
 
-    public TextProcessingResult processTask(TextTask task) {
+    @Value("${text.processing.split.part-size:131072}")
+    private int splitPartSize;
+
+    // Token buffers are reused by every task processed on the same thread
+    private final ThreadLocal<TokenizedText> tokenBuffers = ThreadLocal.withInitial(TokenizedText::new);
+
+    public TextProcessingResult processTask(TextTask task) throws IOException {
+        long taskStart = System.nanoTime();
         TextProcessingResult result = new TextProcessingResult();
         result.setTaskId(task.getTaskId());
 
-        result.setWordCount(wordCountService.countWords(task.getText()));
+        String text = task.getText();
+        boolean fromCorpus = text == null && task.getCorpusRef() != null;
+        if (fromCorpus) {
+            text = corpusStoreService.readSection(task.getCorpusRef(), task.getOffset(), task.getLength());
+        }
+        // Which words are names depends on the separators, so they are found in the text an inline section would have
+        String namesText = fromCorpus && task.requests(TaskOperation.NAME_REPLACEMENT)
+                ? SectionText.inline(text, task.getUnit()) : text;
+
+        // The shuffle has to publish the word counts of every task, so it cannot skip the pipeline
+        ResultCacheService.CacheKey cacheKey = null;
+        if (resultCacheService.isEnabled() && shufflePartitions == 0 && text != null) {
+            cacheKey = resultCacheService.key(text, topN(task), nameReplacement(task), operationMask(task),
+                    sentenceOffsets && fromCorpus, fromCorpus ? task.getUnit() : null);
+            TextProcessingResult cached = resultCacheService.get(cacheKey, task);
+            if (cached != null) {
+                stageMetrics.record("cache-hit", System.nanoTime() - taskStart);
+                return cached;
+            }
+        }
 
-        int topN = task.getTopN() > 0 ? task.getTopN() : 5;
-        result.setTopWords(topWordsService.findTopWords(task.getText(), topN));
+        String mode;
+        if (splitThreshold > 0 && text != null && text.length() >= splitThreshold) {
+            mode = "split";
+            processInParts(task, text, namesText, fromCorpus, result);
+        } else if (parallelThreshold > 0 && text != null && text.length() >= parallelThreshold) {
+            mode = "parallel";
+            processInParallel(task, text, namesText, fromCorpus, result);
+        } else {
+            mode = "sequential";
+            // Stages the task did not request leave their fields of the result null
+            TokenizedText tokens = needsTokens(task) ? tokenize(text) : null;
+            if (tokens != null) {
+                countWords(task, tokens, result);
+            }
+            if (task.requests(TaskOperation.SENTIMENT)) {
+                analyzeSentiment(tokens, result);
+            }
+            if (task.requests(TaskOperation.NAME_REPLACEMENT)) {
+                replaceNames(task, namesText, result);
+            }
+            if (task.requests(TaskOperation.SENTENCE_SORTING)) {
+                sortSentences(task, text, fromCorpus, result);
+            }
+        }
 
-        result.setSentiment(sentimentAnalysisService.analyzeSentiment(task.getText()));
-        result.setSentimentScore(sentimentAnalysisService.calculateSentimentScore(task.getText()));
+        if (cacheKey != null) {
+            resultCacheService.put(cacheKey, result);
+        }
+        stageMetrics.recordTask(mode, System.nanoTime() - taskStart);
+        return result;
+    }
 
-        String replacement = task.getNameReplacement() != null ? task.getNameReplacement() : "[NAME]";
-        result.setModifiedText(nameReplacementService.replaceNames(task.getText(), replacement));
+    /**
+     * The stages only share the immutable text and the tokens, and each sets its own fields of the
+     * result. Names and sentences start right away, sentiment once the tokens are ready, and the
+     * word stages run on the calling thread. The task returns only after every stage has finished,
+     * as the tokens are reused by the next task of this thread.
+     */
+    private void processInParallel(TextTask task, String text, String namesText, boolean fromCorpus,
+                                   TextProcessingResult result) {
+        ExecutorService executor = analyzerExecutor.orElseThrow();
+        List<CompletableFuture<Void>> stages = new ArrayList<>(3);
+        try {
+            if (task.requests(TaskOperation.NAME_REPLACEMENT)) {
+                stages.add(CompletableFuture.runAsync(() -> replaceNames(task, namesText, result), executor));
+            }
+            if (task.requests(TaskOperation.SENTENCE_SORTING)) {
+                stages.add(CompletableFuture.runAsync(() -> sortSentences(task, text, fromCorpus, result),
+                        executor));
+            }
 
-        result.setSortedSentences(sentenceSortingService.sortSentencesByLength(task.getText()));
+            if (needsTokens(task)) {
+                TokenizedText tokens = tokenize(text);
+                if (task.requests(TaskOperation.SENTIMENT)) {
+                    stages.add(CompletableFuture.runAsync(() -> analyzeSentiment(tokens, result), executor));
+                }
+                countWords(task, tokens, result);
+            }
+        } catch (RuntimeException e) {
+            CompletableFuture.allOf(stages.toArray(CompletableFuture[]::new)).exceptionally(ex -> null).join();
+            throw e;
+        }
 
-        return result;
+        try {
+            CompletableFuture.allOf(stages.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Splits an oversized section at sentence starts and analyzes the parts on the fork/join pool,
+     * so one huge task does not keep a single thread busy for seconds. The word counts, word tables,
+     * sentiment tallies, modified texts and sentences of the parts are merged into exactly the
+     * result the whole section would get: every analyzer sees a part start as it sees a text start.
+     * Names are replaced in parts of {@code namesText}, which differs from the text for corpus sections.
+     */
+    private void processInParts(TextTask task, String text, String namesText, boolean fromCorpus,
+                                TextProcessingResult result) {
+        long start = System.nanoTime();
+        ForkJoinPool pool = sectionSplitPool.orElseThrow();
+        int[] partStarts = SentenceIndex.partStarts(text, splitPartSize);
+        boolean offsets = sentenceOffsets && fromCorpus;
+        List<Future<Part>> partFutures = new ArrayList<>(partStarts.length);
+        for (int i = 0; i < partStarts.length; i++) {
+            int partStart = partStarts[i];
+            int partEnd = i + 1 < partStarts.length ? partStarts[i + 1] : text.length();
+            partFutures.add(pool.submit(
+                    () -> processPart(task, text.substring(partStart, partEnd), partStart, offsets)));
+        }
+        List<Future<String>> nameFutures = new ArrayList<>();
+        if (task.requests(TaskOperation.NAME_REPLACEMENT)) {
+            int[] nameStarts = namesText == text ? partStarts : SentenceIndex.partStarts(namesText, splitPartSize);
+            for (int i = 0; i < nameStarts.length; i++) {
+                int partStart = nameStarts[i];
+                int partEnd = i + 1 < nameStarts.length ? nameStarts[i + 1] : namesText.length();
+                nameFutures.add(pool.submit(() -> nameReplacementService.replaceNames(
+                        namesText.substring(partStart, partEnd), nameReplacement(task))));
+            }
+        }
+
+        List<Part> parts = join(task, partFutures);
+        List<String> modifiedParts = join(task, nameFutures);
+        stageMetrics.record("split-parts", System.nanoTime() - start);
+
+        long mergeStart = System.nanoTime();
+        if (task.requests(TaskOperation.WORD_COUNT)) {
+            result.setWordCount(parts.stream().mapToInt(Part::wordCount).sum());
+        }
+        if (parts.getFirst().words() != null) {
+            WordFrequencyTable wordCounts = parts.getFirst().words();
+            for (int i = 1; i < parts.size(); i++) {
+                wordCounts.addAll(parts.get(i).words());
+            }
+            reportWords(task, wordCounts, result);
+        }
+        if (task.requests(TaskOperation.SENTIMENT)) {
+            SentimentAnalysisService.Tally tally = new SentimentAnalysisService.Tally(0, 0, 0);
+            List<TokenizedText> tokens = new ArrayList<>(parts.size());
+            for (Part part : parts) {
+                tally = part.tally() != null ? tally.plus(part.tally()) : tally;
+                tokens.add(part.tokens());
+            }
+            SentimentAnalysisService.Sentiment sentiment = sentimentAnalysisService.analyze(tokens, tally);
+            result.setSentiment(sentiment.label());
+            result.setSentimentScore(sentiment.score());
+        }
+        if (task.requests(TaskOperation.NAME_REPLACEMENT)) {
+            StringBuilder modifiedText = new StringBuilder(namesText.length() + 64);
+            modifiedParts.forEach(modifiedText::append);
+            result.setModifiedText(modifiedText.toString());
+        }
+        if (task.requests(TaskOperation.SENTENCE_SORTING)) {
+            List<SentenceSortingService.PartSentences> sentences = parts.stream().map(Part::sentences).toList();
+            if (offsets) {
+                result.setSortedSentenceOffsets(sentenceSortingService.sortPartOffsetsByLength(sentences));
+                result.setCorpusRef(task.getCorpusRef());
+                result.setOffset(task.getOffset());
+                result.setLength(task.getLength());
+            } else {
+                result.setSortedSentences(sentenceSortingService.sortPartsByLength(sentences));
+            }
+        }
+        stageMetrics.record("split-merge", System.nanoTime() - mergeStart);
+    }
+
+    // Runs on a pool thread: the buffers kept until the merge are the part's own, not the thread's
+    private Part processPart(TextTask task, String text, int partStart, boolean offsets) {
+        TokenizedText tokens = null;
+        WordFrequencyTable words = null;
+        SentimentAnalysisService.Tally tally = null;
+        int wordCount = 0;
+        if (needsTokens(task)) {
+            tokens = Tokenizer.tokenize(text);
+            wordCount = tokens.wordCount();
+            if (task.requests(TaskOperation.TOP_WORDS) || shufflePartitions > 0) {
+                words = topWordsService.countWords(tokens, new WordFrequencyTable());
+            }
+            if (task.requests(TaskOperation.SENTIMENT) && !sentimentAnalysisService.usesModel()) {
+                tally = sentimentAnalysisService.tally(tokens);
+            }
+        }
+        // Only the model needs the tokens again, as it adds up the parts in order
+        boolean keepTokens = task.requests(TaskOperation.SENTIMENT) && sentimentAnalysisService.usesModel();
+
+        return new Part(
+                wordCount,
+                words,
+                keepTokens ? tokens : null,
+                tally,
+                task.requests(TaskOperation.SENTENCE_SORTING)
+                        ? sentenceSortingService.indexPart(text, partStart, offsets) : null);
+    }
+
+    private record Part(int wordCount, WordFrequencyTable words, TokenizedText tokens,
+                        SentimentAnalysisService.Tally tally, SentenceSortingService.PartSentences sentences) {
+    }
+
+    // Waits for every part, so a failed part does not leave the others running into the next task
+    private static <T> List<T> join(TextTask task, List<Future<T>> futures) {
+        List<T> results = new ArrayList<>(futures.size());
+        RuntimeException failure = null;
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException cause ? cause
+                            : new IllegalStateException(e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(pending -> pending.cancel(true));
+                throw new IllegalStateException("Interrupted while processing task " + task.getTaskId(), e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    // One tokenization pass shared by the word count, top words and sentiment
+    private TokenizedText tokenize(String text) {
+        long start = System.nanoTime();
+        TokenizedText tokens = tokenBuffers.get();
+        Tokenizer.tokenize(text, tokens);
+        stageMetrics.record("tokenize", System.nanoTime() - start);
+        return tokens;
+    }
+
+    private void countWords(TextTask task, TokenizedText tokens, TextProcessingResult result) {
+        long start = System.nanoTime();
+        if (task.requests(TaskOperation.WORD_COUNT)) {
+            result.setWordCount(wordCountService.countWords(tokens));
+        }
+        // The reducer shards expect the word counts of every task
+        if (!task.requests(TaskOperation.TOP_WORDS) && shufflePartitions == 0) {
+            stageMetrics.record("words", System.nanoTime() - start);
+            return;
+        }
+
+        // One counting pass serves the top words, the summary and the shuffle
+        reportWords(task, topWordsService.countWords(tokens), result);
+        stageMetrics.record("words", System.nanoTime() - start);
+    }
+
+    private void reportWords(TextTask task, WordFrequencyTable wordCounts, TextProcessingResult result) {
+        int topN = topN(task);
+        if (task.requests(TaskOperation.TOP_WORDS) && wordSummarySize > 0) {
+            // One ranking serves both the top words and the summary
+            Map<String, Integer> rankedWords = topWordsService.topWords(wordCounts, Math.max(topN, wordSummarySize + 1));
+            result.setTopWords(rankedWords.entrySet().stream()
+                    .limit(topN)
+                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new)));
+            result.setWordSummary(topWordsService.summarize(rankedWords, wordSummarySize));
+        } else if (task.requests(TaskOperation.TOP_WORDS)) {
+            result.setTopWords(topWordsService.topWords(wordCounts, topN));
+        }
+
+        if (shufflePartitions > 0) {
+            wordCountShuffleService.publish(task.getTaskId(),
+                    topWordsService.partitionWordCounts(wordCounts, shufflePartitions));
+        }
+    }
+
+    private void analyzeSentiment(TokenizedText tokens, TextProcessingResult result) {
+        long start = System.nanoTime();
+        SentimentAnalysisService.Sentiment sentiment = sentimentAnalysisService.analyze(tokens);
+        result.setSentiment(sentiment.label());
+        result.setSentimentScore(sentiment.score());
+        stageMetrics.record("sentiment", System.nanoTime() - start);
+    }
+
+    private void replaceNames(TextTask task, String text, TextProcessingResult result) {
+        long start = System.nanoTime();
+        result.setModifiedText(nameReplacementService.replaceNames(text, nameReplacement(task)));
+        stageMetrics.record("names", System.nanoTime() - start);
+    }
+
+    private void sortSentences(TextTask task, String text, boolean fromCorpus, TextProcessingResult result) {
+        long start = System.nanoTime();
+        // Only a corpus section can be read again by the aggregator to turn offsets into sentences
+        if (sentenceOffsets && fromCorpus) {
+            result.setSortedSentenceOffsets(sentenceSortingService.sortSentenceOffsetsByLength(text));
+            result.setCorpusRef(task.getCorpusRef());
+            result.setOffset(task.getOffset());
+            result.setLength(task.getLength());
+        } else {
+            result.setSortedSentences(sentenceSortingService.sortSentencesByLength(text));
+        }
+        stageMetrics.record("sentences", System.nanoTime() - start);
+    }
+
+    private boolean needsTokens(TextTask task) {
+        return task.requests(TaskOperation.WORD_COUNT) || task.requests(TaskOperation.TOP_WORDS)
+                || task.requests(TaskOperation.SENTIMENT) || shufflePartitions > 0;
+    }
+
+    private static int operationMask(TextTask task) {
+        int mask = 0;
+        for (TaskOperation operation : TaskOperation.values()) {
+            if (task.requests(operation)) {
+                mask |= 1 << operation.ordinal();
+            }
+        }
+        return mask;
+    }
+
+    private static int topN(TextTask task) {
+        return task.getTopN() > 0 ? task.getTopN() : 5;
+    }
+
+    private static String nameReplacement(TextTask task) {
+        return task.getNameReplacement() != null ? task.getNameReplacement() : "[NAME]";
     }
-}
\ No newline at end of file
+}
@@ -1,45 +1,102 @@
 package ru.ifmo.service;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 import org.springframework.stereotype.Service;
+import ru.ifmo.dto.WordSummary;
+import ru.ifmo.text.TokenizedText;
+import ru.ifmo.text.Tokenizer;
+import ru.ifmo.text.WordFrequencyTable;
 
 @Service
 public class TopWordsService {
 
+    // Tables are reused by every task processed on the same thread
+    private final ThreadLocal<WordFrequencyTable> tables = ThreadLocal.withInitial(WordFrequencyTable::new);
+
     public Map<String, Integer> findTopWords(String text, int topN) {
-        if (text == null || text.trim().isEmpty() || topN <= 0) {
+        return findTopWords(Tokenizer.tokenize(text), topN);
+    }
+
+    /**
+     * @return the {@code topN} most frequent words longer than one letter, most frequent first
+     */
+    public Map<String, Integer> findTopWords(TokenizedText tokens, int topN) {
+        if (tokens.size() == 0 || topN <= 0) {
             return new HashMap<>();
         }
+        return topWords(countWords(tokens), topN);
+    }
+
+    /**
+     * Counts the words longer than one letter into this thread's table, which stays valid until the
+     * next call on the same thread.
+     */
+    public WordFrequencyTable countWords(TokenizedText tokens) {
+        WordFrequencyTable table = tables.get();
+        table.clear();
+        return countWords(tokens, table);
+    }
+
+    /**
+     * Adds the words longer than one letter to the given table.
+     */
+    public WordFrequencyTable countWords(TokenizedText tokens, WordFrequencyTable table) {
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.length(i) > 1) {
+                table.increment(tokens.chars(), tokens.start(i), tokens.length(i));
+            }
+        }
+        return table;
+    }
+
+    public Map<String, Integer> topWords(WordFrequencyTable table, int topN) {
+        Map<String, Integer> topWords = new LinkedHashMap<>();
+        for (int id : table.top(topN)) {
+            topWords.put(table.word(id), table.count(id));
+        }
+        return topWords;
+    }
 
-        String[] words = text.toLowerCase()
-                .replaceAll("[^a-zA-Zа-яА-Я\\s]", " ") // Remove punctuation
-                .trim()
-                .split("\\s+");
-
-        Map<String, Integer> wordCount = Arrays.stream(words)
-                .filter(word -> !word.trim().isEmpty())
-                .filter(this::isValidWord)
-                .collect(Collectors.groupingBy(
-                        word -> word,
-                        Collectors.summingInt(word -> 1)
-                ));
-
-        return wordCount.entrySet().stream()
-                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        Map.Entry::getValue,
-                        Math::max,
-                        LinkedHashMap::new
-                ));
+    /**
+     * Splits all counted words into {@code partitions} maps by {@code floorMod(word.hashCode(), partitions)},
+     * the same partition for a word on every worker.
+     */
+    public List<Map<String, Integer>> partitionWordCounts(WordFrequencyTable table, int partitions) {
+        List<Map<String, Integer>> result = new ArrayList<>(partitions);
+        for (int p = 0; p < partitions; p++) {
+            result.add(new HashMap<>());
+        }
+        for (int id = 0; id < table.size(); id++) {
+            String word = table.word(id);
+            result.get(Math.floorMod(word.hashCode(), partitions)).put(word, table.count(id));
+        }
+        return result;
     }
 
-    private boolean isValidWord(String word) {
-        return word.length() > 1 && word.matches(".*[a-zA-Zа-яА-Я].*");
+    /**
+     * Builds a summary of {@code size} words from words ranked by {@link #findTopWords} with at
+     * least {@code size + 1} entries; the first word left out bounds the count of all the others.
+     */
+    public WordSummary summarize(Map<String, Integer> rankedWords, int size) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        int residualCount = 0;
+        for (Map.Entry<String, Integer> entry : rankedWords.entrySet()) {
+            if (counts.size() < size) {
+                counts.put(entry.getKey(), entry.getValue());
+            } else {
+                residualCount = entry.getValue();
+                break;
+            }
+        }
+
+        WordSummary summary = new WordSummary();
+        summary.setCounts(counts);
+        summary.setResidualCount(residualCount);
+        return summary;
     }
 }
\ No newline at end of file
@@ -1,26 +1,17 @@
 package ru.ifmo.service;
 
-import java.util.Arrays;
-
 import org.springframework.stereotype.Service;
+import ru.ifmo.text.TokenizedText;
+import ru.ifmo.text.Tokenizer;
 
 @Service
 public class WordCountService {
 
     public int countWords(String text) {
-        if (text == null || text.trim().isEmpty()) {
-            return 0;
-        }
-
-        String[] words = text.trim().split("\\s+");
-
-        return (int) Arrays.stream(words)
-                .filter(word -> !word.trim().isEmpty())
-                .filter(this::isWord)
-                .count();
+        return countWords(Tokenizer.tokenize(text));
     }
 
-    private boolean isWord(String token) {
-        return token.matches(".*[a-zA-Zа-яА-Я].*");
+    public int countWords(TokenizedText tokens) {
+        return tokens.wordCount();
     }
 }
\ No newline at end of file
@@ -0,0 +1,38 @@
+package ru.ifmo.service;
+
+import java.util.List;
+import java.util.Map;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.ifmo.dto.WordCountPartition;
+
+/**
+ * Sends the partitioned word counts of a section to the reducer shards, partition {@code p} with
+ * routing key {@code p}. Empty partitions are sent too: a shard counts the sections it has heard
+ * from to know when its slice of the vocabulary is complete.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class WordCountShuffleService {
+
+    private final RabbitTemplate rabbitTemplate;
+
+    @Value("${rabbitmq.shuffle.exchange.name}")
+    private String shuffleExchange;
+
+    public void publish(String taskId, List<Map<String, Integer>> partitions) {
+        for (int p = 0; p < partitions.size(); p++) {
+            WordCountPartition partition = new WordCountPartition();
+            partition.setTaskId(taskId);
+            partition.setPartition(p);
+            partition.setCounts(partitions.get(p));
+            rabbitTemplate.convertAndSend(shuffleExchange, String.valueOf(p), partition);
+        }
+        log.debug("Shuffled word counts of task {} to {} partitions", taskId, partitions.size());
+    }
+}
@@ -0,0 +1,146 @@
+package ru.ifmo.text;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing table of char sequence keys. Keys are copied into one shared arena and
+ * identified by dense ids, so lookups of token ranges need neither Strings nor boxing.
+ */
+public class CharKeyTable {
+
+    private char[] arena;
+    private int arenaSize;
+    private int[] keyOffsets;
+    private int[] keyLengths;
+    private int[] keyHashes;
+    private int[] slots; // key id + 1, 0 marks a free slot
+    private int size;
+
+    public CharKeyTable(int expectedKeys) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedKeys * 2 - 1)) << 1;
+        slots = new int[capacity];
+        keyOffsets = new int[capacity / 2];
+        keyLengths = new int[capacity / 2];
+        keyHashes = new int[capacity / 2];
+        arena = new char[Math.max(64, expectedKeys * 8)];
+    }
+
+    /**
+     * @return the id of the key, or -1 if it is not in the table
+     */
+    public int find(char[] chars, int offset, int length) {
+        int hash = hash(chars, offset, length);
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (id < 0) {
+                return -1;
+            }
+            if (keyHashes[id] == hash && matches(id, chars, offset, length)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * @return the id of the key, adding it first if it is not in the table yet
+     */
+    public int add(char[] chars, int offset, int length) {
+        int hash = hash(chars, offset, length);
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        for (; ; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (id < 0) {
+                break;
+            }
+            if (keyHashes[id] == hash && matches(id, chars, offset, length)) {
+                return id;
+            }
+        }
+
+        int id = size++;
+        if (id == keyOffsets.length) {
+            keyOffsets = Arrays.copyOf(keyOffsets, id * 2);
+            keyLengths = Arrays.copyOf(keyLengths, id * 2);
+            keyHashes = Arrays.copyOf(keyHashes, id * 2);
+        }
+        if (arenaSize + length > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + length));
+        }
+        System.arraycopy(chars, offset, arena, arenaSize, length);
+        keyOffsets[id] = arenaSize;
+        keyLengths[id] = length;
+        keyHashes[id] = hash;
+        arenaSize += length;
+        slots[slot] = id + 1;
+
+        // Keep the load factor at or below one half
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        return id;
+    }
+
+    public int add(String key) {
+        return add(key.toCharArray(), 0, key.length());
+    }
+
+    /**
+     * Adds the key {@code otherId} of another table without creating a String.
+     */
+    public int add(CharKeyTable other, int otherId) {
+        return add(other.arena, other.keyOffsets[otherId], other.keyLengths[otherId]);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String key(int id) {
+        return new String(arena, keyOffsets[id], keyLengths[id]);
+    }
+
+    /**
+     * Compares two keys lexicographically by their chars.
+     */
+    public int compare(int id, int otherId) {
+        return Arrays.compare(arena, keyOffsets[id], keyOffsets[id] + keyLengths[id],
+                arena, keyOffsets[otherId], keyOffsets[otherId] + keyLengths[otherId]);
+    }
+
+    /**
+     * Removes all keys but keeps the allocated capacity for reuse.
+     */
+    public void clear() {
+        Arrays.fill(slots, 0);
+        size = 0;
+        arenaSize = 0;
+    }
+
+    private boolean matches(int id, char[] chars, int offset, int length) {
+        return keyLengths[id] == length
+                && Arrays.equals(arena, keyOffsets[id], keyOffsets[id] + length, chars, offset, offset + length);
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        int mask = capacity - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = keyHashes[id] & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+    }
+
+    private static int hash(char[] chars, int offset, int length) {
+        int hash = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        // Spread the bits so that the low ones used for the slot depend on the whole key
+        return hash ^ (hash >>> 16) ^ (hash >>> 7);
+    }
+}
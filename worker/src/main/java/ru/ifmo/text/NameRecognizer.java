@@ -0,0 +1,498 @@
+package ru.ifmo.text;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Replaces names in a single left-to-right pass. It reproduces the three regex sweeps the name
+ * replacement used to run one after another:
+ * <ol>
+ *     <li>a name after an honorific ({@code mr}, {@code госпожа}, ...; ASCII case-insensitive),</li>
+ *     <li>a quoted name followed by a verb of speech ({@code "Anna" said}),</li>
+ *     <li>any other run of capitalized words that is not at the start of the text or a sentence,
+ *     replaced if it is a single word of at most 20 letters that is not in the exclusion list.</li>
+ * </ol>
+ * Each sweep ran over the output of the previous one, so the recognizer evaluates the later rules
+ * against that output: honorific matches win over quoted names that contain them, and the
+ * sentence and word boundary checks of the third rule see the replacement text. This is exact for
+ * replacements accepted by {@link #supports(String)}.
+ * <p>
+ * Word boundaries follow {@code java.util.regex} without {@code UNICODE_CHARACTER_CLASS}: only
+ * ASCII letters, digits and {@code '_'} are word characters, so a Cyrillic word is only a
+ * candidate right after one of those.
+ */
+public class NameRecognizer {
+
+    private static final int MAX_NAME_LENGTH = 20;
+
+    private static final List<String> EXCLUDED_WORDS = List.of(
+            "january", "february", "march", "april", "may", "june",
+            "july", "august", "september", "october", "november", "december",
+            "monday", "tuesday", "wednesday", "thursday", "friday", "saturday", "sunday",
+            "январь", "февраль", "март", "апрель", "май", "июнь",
+            "июль", "август", "сентябрь", "октябрь", "ноябрь", "декабрь",
+            "понедельник", "вторник", "среда", "четверг", "пятница", "суббота", "воскресенье",
+            "the", "this", "that", "these", "those", "when", "where", "why", "how",
+            "это", "этот", "эта", "эти", "когда", "где", "почему", "как",
+            "god", "lord", "jesus", "christ", "allah", "buddha",
+            "бог", "господь", "иисус", "христос", "аллах", "будда",
+            "america", "europe", "asia", "africa", "australia",
+            "америка", "европа", "азия", "африка", "австралия"
+    );
+
+    // Honorifics: the ASCII ones match in any case, the Cyrillic ones only in lower case
+    private static final String[] HONORIFICS = {
+            "мистер", "мисс", "миссис", "господин", "госпожа", "mr", "ms", "mrs", "dr", "prof"
+    };
+
+    private static final String HONORIFIC_LAST_LETTERS = "rRsSfFрсна";
+
+    private static final String[] SPEECH_VERBS = {
+            "сказал", "говорит", "ответил", "спросил", "said", "replied", "asked"
+    };
+
+    // Candidate words are capitalized, so both tables hold capitalized keys
+    private final CharKeyTable excludedWords;
+    private final CharKeyTable gazetteer;
+    private final char[] wordBuffer = new char[64];
+
+    private String text;
+    private int length;
+    private String replacement;
+    private StringBuilder out;
+    // Text before this index has been written to out
+    private int copied;
+    // The last honorific name replaced, which the boundary checks of the third rule look through
+    private int regionStart;
+    private int regionEnd;
+
+    /**
+     * @param gazetteer known names; a run of several capitalized words is replaced as a whole when
+     *                  every word is one of them, the third rule alone never replaces such runs
+     */
+    public NameRecognizer(Collection<String> gazetteer) {
+        excludedWords = new CharKeyTable(EXCLUDED_WORDS.size());
+        EXCLUDED_WORDS.forEach(word -> excludedWords.add(capitalize(word)));
+        this.gazetteer = new CharKeyTable(gazetteer.size());
+        gazetteer.forEach(name -> this.gazetteer.add(capitalize(name)));
+    }
+
+    /**
+     * Whether {@link #replaceNames} gives exactly the result of the regex sweeps for this
+     * replacement: it must not be empty, must not use {@code $}, {@code \} or {@code "}, must
+     * contain a character that cannot be part of a name and must not contain a capitalized word.
+     */
+    public static boolean supports(String replacement) {
+        if (replacement.isEmpty()) {
+            return false;
+        }
+        boolean breaksNames = false;
+        for (int i = 0; i < replacement.length(); i++) {
+            char c = replacement.charAt(i);
+            if (c == '$' || c == '\\' || c == '"') {
+                return false;
+            }
+            if (isUpper(c) && i + 1 < replacement.length() && isLower(replacement.charAt(i + 1))) {
+                return false;
+            }
+            breaksNames |= !isUpper(c) && !isLower(c) && !isSpace(c);
+        }
+        return breaksNames;
+    }
+
+    /**
+     * Whether a candidate word is replaced by the third rule, the {@code isPotentialName} check of
+     * the regex sweeps.
+     */
+    public boolean isPotentialName(String word) {
+        if (word.length() < 2 || word.length() > MAX_NAME_LENGTH) {
+            return false;
+        }
+        if (!isUpper(word.charAt(0))) {
+            return false;
+        }
+        for (int i = 1; i < word.length(); i++) {
+            if (!isLower(word.charAt(i))) {
+                return false;
+            }
+        }
+        word.getChars(0, word.length(), wordBuffer, 0);
+        return excludedWords.find(wordBuffer, 0, word.length()) < 0;
+    }
+
+    /**
+     * Whether a run of several capitalized words separated by whitespace consists of gazetteer
+     * names only.
+     */
+    public boolean isKnownName(String words) {
+        if (gazetteer.size() == 0) {
+            return false;
+        }
+        int wordCount = 0;
+        int start = 0;
+        for (int i = 0; i <= words.length(); i++) {
+            if (i == words.length() || isSpace(words.charAt(i))) {
+                if (i > start) {
+                    if (!isGazetteerName(words, start, i)) {
+                        return false;
+                    }
+                    wordCount++;
+                }
+                start = i + 1;
+            }
+        }
+        return wordCount > 1;
+    }
+
+    /**
+     * Not thread-safe: use one recognizer per thread.
+     */
+    public String replaceNames(String text, String replacement) {
+        this.text = text;
+        this.length = text.length();
+        this.replacement = replacement;
+        this.out = null;
+        copied = 0;
+        regionStart = -1;
+        regionEnd = -1;
+
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            int next = -1;
+            if (isSpace(c)) {
+                next = replaceHonorificName(i);
+            } else if (c == '"') {
+                next = replaceQuotedName(i);
+            } else if (isUpper(c)) {
+                next = replaceCapitalizedRun(i);
+            }
+            i = next < 0 ? i + 1 : next;
+        }
+        String result = text;
+        if (out != null) {
+            result = out.append(text, copied, length).toString();
+        }
+        this.text = null;
+        this.replacement = null;
+        this.out = null;
+        return result;
+    }
+
+    // Rule 1: i is the first whitespace after an honorific
+    private int replaceHonorificName(int i) {
+        int nameStart = honorificNameStart(i);
+        if (nameStart < 0) {
+            return -1;
+        }
+        int nameEnd = honorificNameEnd(nameStart);
+        replace(nameStart, nameEnd);
+        regionStart = nameStart;
+        regionEnd = nameEnd;
+        return nameEnd;
+    }
+
+    /**
+     * @return where the name after the honorific ending at {@code i} starts, or -1
+     */
+    private int honorificNameStart(int i) {
+        if (i == 0 || isSpace(text.charAt(i - 1)) || !endsWithHonorific(i)) {
+            return -1;
+        }
+        int nameStart = skipSpaces(i);
+        if (nameStart + 1 < length && isLetterIgnoreCase(text.charAt(nameStart))
+                && isLowerIgnoreCase(text.charAt(nameStart + 1))) {
+            return nameStart;
+        }
+        return -1;
+    }
+
+    private void replace(int start, int end) {
+        if (out == null) {
+            out = new StringBuilder(length + 16);
+        }
+        out.append(text, copied, start).append(replacement);
+        copied = end;
+    }
+
+    private boolean endsWithHonorific(int end) {
+        // Every honorific ends with one of these letters
+        if (HONORIFIC_LAST_LETTERS.indexOf(text.charAt(end - 1)) < 0) {
+            return false;
+        }
+        for (String honorific : HONORIFICS) {
+            int start = end - honorific.length();
+            if (start < 0) {
+                continue;
+            }
+            boolean matches = true;
+            for (int k = 0; k < honorific.length() && matches; k++) {
+                char c = text.charAt(start + k);
+                matches = c == honorific.charAt(k) || (c >= 'A' && c <= 'Z' && c + ('a' - 'A') == honorific.charAt(k));
+            }
+            if (matches) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Honorific names match case-insensitively for ASCII: any ASCII letter starts a word and continues it
+    private int honorificNameEnd(int nameStart) {
+        int end = nameStart + 1;
+        while (true) {
+            while (end < length && isLowerIgnoreCase(text.charAt(end))) {
+                end++;
+            }
+            int next = skipSpaces(end);
+            if (next == end || next + 1 >= length || !isLetterIgnoreCase(text.charAt(next))
+                    || !isLowerIgnoreCase(text.charAt(next + 1))) {
+                return end;
+            }
+            end = next + 1;
+        }
+    }
+
+    // Rule 2: i is an opening quote
+    private int replaceQuotedName(int i) {
+        int nameEnd = wordRunEnd(i + 1, false);
+        if (nameEnd < 0 || nameEnd >= length || text.charAt(nameEnd) != '"' || !followedBySpeechVerb(nameEnd + 1)) {
+            return -1;
+        }
+        // The honorific rule ran first: a quoted name that contains an honorific match is no longer intact
+        for (int k = i + 1; k < nameEnd; k++) {
+            if (isSpace(text.charAt(k)) && honorificNameStart(k) >= 0) {
+                return -1;
+            }
+        }
+        replace(i + 1, nameEnd);
+        return nameEnd + 1;
+    }
+
+    private boolean followedBySpeechVerb(int i) {
+        int verbStart = skipSpaces(i);
+        if (verbStart == i) {
+            return false;
+        }
+        for (String verb : SPEECH_VERBS) {
+            if (text.startsWith(verb, verbStart)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Rule 3: i is a capital letter
+    private int replaceCapitalizedRun(int i) {
+        if (i == 0 || i + 1 >= length || !isLower(text.charAt(i + 1)) || afterSentenceEnd(i) || !isWordBoundary(i)) {
+            return -1;
+        }
+        int end = wordRunEnd(i, true);
+        if (end < 0) {
+            return -1;
+        }
+
+        boolean singleWord = true;
+        for (int k = i; k < end && singleWord; k++) {
+            singleWord = !isSpace(text.charAt(k));
+        }
+        if (singleWord ? isCandidateName(i, end) : isKnownName(i, end)) {
+            replace(i, end);
+        }
+        return end;
+    }
+
+    private boolean afterSentenceEnd(int i) {
+        if (charBefore(i, 1) != ' ') {
+            return false;
+        }
+        int c = charBefore(i, 2);
+        return c == '.' || c == '!' || c == '?';
+    }
+
+    /**
+     * Finds the end of the run of capitalized words at {@code start} the way the backtracking regex
+     * {@code [A-ZА-Я][a-zа-я]+(?:\s+[A-ZА-Я][a-zа-я]+)*} does, followed by {@code \b} when
+     * {@code boundary} is set. In that case, the third rule, the run does not continue into an
+     * honorific name, which the first rule has already replaced.
+     *
+     * @return the end of the run, or -1 if there is none
+     */
+    private int wordRunEnd(int start, boolean boundary) {
+        if (start + 1 >= length || !isUpper(text.charAt(start)) || !isLower(text.charAt(start + 1))) {
+            return -1;
+        }
+        // Greedy pass: every word with its longest lowercase tail
+        int lastWordStart = start;
+        int end = lowerRunEnd(start + 1);
+        while (true) {
+            int next = skipSpaces(end);
+            if (next == end || next + 1 >= length || !isUpper(text.charAt(next)) || !isLower(text.charAt(next + 1))
+                    || (boundary && honorificNameStart(end) >= 0)) {
+                break;
+            }
+            lastWordStart = next;
+            end = lowerRunEnd(next + 1);
+        }
+        if (!boundary) {
+            return end;
+        }
+
+        // Backtracking: shorten the last word's tail, then drop the word and retry with the previous one
+        int wordStart = lastWordStart;
+        int wordEnd = end;
+        while (true) {
+            for (int e = wordEnd; e > wordStart + 1; e--) {
+                if (isWordBoundary(e)) {
+                    return e;
+                }
+            }
+            if (wordStart == start) {
+                return -1;
+            }
+            wordEnd = previousWordEnd(wordStart);
+            wordStart = wordStartBefore(wordEnd);
+        }
+    }
+
+    private int lowerRunEnd(int i) {
+        while (i < length && isLower(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private int previousWordEnd(int wordStart) {
+        int i = wordStart;
+        while (isSpace(text.charAt(i - 1))) {
+            i--;
+        }
+        return i;
+    }
+
+    private int wordStartBefore(int wordEnd) {
+        int i = wordEnd - 1;
+        while (!isUpper(text.charAt(i))) {
+            i--;
+        }
+        return i;
+    }
+
+    private int skipSpaces(int i) {
+        while (i < length && isSpace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private boolean isCandidateName(int start, int end) {
+        if (end - start > MAX_NAME_LENGTH) {
+            return false;
+        }
+        text.getChars(start, end, wordBuffer, 0);
+        return excludedWords.find(wordBuffer, 0, end - start) < 0;
+    }
+
+    private boolean isKnownName(int start, int end) {
+        return gazetteer.size() > 0 && isKnownName(text.substring(start, end));
+    }
+
+    private boolean isGazetteerName(String words, int start, int end) {
+        if (end - start > wordBuffer.length) {
+            return false;
+        }
+        words.getChars(start, end, wordBuffer, 0);
+        return gazetteer.find(wordBuffer, 0, end - start) >= 0;
+    }
+
+    /**
+     * {@code \b} at {@code i} as the regex saw it in the text after the first two rules.
+     */
+    private boolean isWordBoundary(int i) {
+        boolean left = false;
+        int before = charBefore(i, 1);
+        if (before >= 0) {
+            int codePoint = before;
+            int high = charBefore(i, 2);
+            if (Character.isLowSurrogate((char) before) && high >= 0 && Character.isHighSurrogate((char) high)) {
+                codePoint = Character.toCodePoint((char) high, (char) before);
+            }
+            left = isWordChar(codePoint) || (isNonSpacingMark(codePoint) && hasBaseCharacter(i, 1));
+        }
+        boolean right = false;
+        if (i < length) {
+            int codePoint = text.codePointAt(i);
+            right = isWordChar(codePoint) || (isNonSpacingMark(codePoint) && hasBaseCharacter(i, 0));
+        }
+        return left != right;
+    }
+
+    // Walks back over non-spacing marks from the k-th character before i to a letter or digit
+    private boolean hasBaseCharacter(int i, int k) {
+        for (; charBefore(i, k) >= 0; k++) {
+            int codePoint = charBefore(i, k);
+            int low = charBefore(i, k - 1);
+            if (Character.isHighSurrogate((char) codePoint) && low >= 0 && Character.isLowSurrogate((char) low)) {
+                codePoint = Character.toCodePoint((char) codePoint, (char) low);
+            }
+            if (Character.isLetterOrDigit(codePoint)) {
+                return true;
+            }
+            if (!isNonSpacingMark(codePoint)) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The k-th character before {@code i} (k = 0 is the character at {@code i}, negative k look
+     * ahead) in the text with the last honorific name replaced, or -1 outside the text.
+     */
+    private int charBefore(int i, int k) {
+        if (regionEnd >= 0 && i >= regionEnd && k > 0 && i - k < regionEnd) {
+            int intoRegion = k - (i - regionEnd);
+            if (intoRegion <= replacement.length()) {
+                return replacement.charAt(replacement.length() - intoRegion);
+            }
+            int index = regionStart - (intoRegion - replacement.length());
+            return index >= 0 ? text.charAt(index) : -1;
+        }
+        int index = i - k;
+        return index >= 0 && index < length ? text.charAt(index) : -1;
+    }
+
+    private static boolean isWordChar(int c) {
+        return c == '_' || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+
+    private static boolean isNonSpacingMark(int codePoint) {
+        return Character.getType(codePoint) == Character.NON_SPACING_MARK;
+    }
+
+    private static boolean isUpper(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'А' && c <= 'Я');
+    }
+
+    private static boolean isLower(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'а' && c <= 'я');
+    }
+
+    // [A-ZА-Я] and [a-zа-я] under (?i) without UNICODE_CASE: ASCII letters match both ways, Cyrillic only as written
+    private static boolean isLetterIgnoreCase(char c) {
+        return isUpper(c) || (c >= 'a' && c <= 'z');
+    }
+
+    private static boolean isLowerIgnoreCase(char c) {
+        return isLower(c) || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || (c >= '\t' && c <= '\r');
+    }
+
+    private static String capitalize(String word) {
+        return word.isEmpty() ? word : Character.toUpperCase(word.charAt(0)) + word.substring(1).toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,120 @@
+package ru.ifmo.text;
+
+import ru.ifmo.dto.SectionUnit;
+
+/**
+ * Rebuilds the text the producer would have sent inline for a section read from the corpus.
+ * The corpus bytes keep the original separators between the units of the section, while an
+ * inline section holds the trimmed units joined by a blank line or a single space. The units are
+ * cut by the rules of the producer's scanners: a whitespace run with at least two line feeds
+ * between paragraphs, a whitespace run after {@code [.!?]} between sentences and any whitespace
+ * run between words. Units are trimmed like {@link String#trim()}, except words, which are only
+ * dropped when blank.
+ */
+public final class SectionText {
+
+    private SectionText() {
+    }
+
+    public static String inline(String corpusText, SectionUnit unit) {
+        if (corpusText == null || unit == null) {
+            return corpusText;
+        }
+        StringBuilder text = new StringBuilder(corpusText.length());
+        String separator = unit == SectionUnit.PARAGRAPH ? "\n\n" : " ";
+        int unitStart = -1;
+        boolean inSeparator = false;
+        int lineFeeds = 0;
+        char previous = 0;
+        for (int i = 0; i < corpusText.length(); i++) {
+            char c = corpusText.charAt(i);
+            boolean space = isSpace(c);
+            switch (unit) {
+                case PARAGRAPH -> {
+                    if (space) {
+                        if (!inSeparator) {
+                            inSeparator = true;
+                            lineFeeds = 0;
+                        }
+                        if (c == '\n') {
+                            lineFeeds++;
+                        }
+                    } else {
+                        if (inSeparator && lineFeeds >= 2) {
+                            append(text, corpusText, unitStart, i, separator, true);
+                            unitStart = -1;
+                        }
+                        inSeparator = false;
+                    }
+                    if (unitStart < 0) {
+                        unitStart = i;
+                    }
+                }
+                case SENTENCE -> {
+                    if (space) {
+                        if (!inSeparator) {
+                            if (isTerminator(previous)) {
+                                append(text, corpusText, unitStart, i, separator, true);
+                                unitStart = -1;
+                                inSeparator = true;
+                            } else if (unitStart < 0) {
+                                unitStart = i;
+                            }
+                        }
+                    } else {
+                        inSeparator = false;
+                        if (unitStart < 0) {
+                            unitStart = i;
+                        }
+                    }
+                }
+                case WORD -> {
+                    if (space) {
+                        append(text, corpusText, unitStart, i, separator, false);
+                        unitStart = -1;
+                    } else if (unitStart < 0) {
+                        unitStart = i;
+                    }
+                }
+            }
+            previous = c;
+        }
+        append(text, corpusText, unitStart, corpusText.length(), separator, unit != SectionUnit.WORD);
+        return corpusText.contentEquals(text) ? corpusText : text.toString();
+    }
+
+    private static void append(StringBuilder text, String corpusText, int from, int to, String separator,
+                               boolean trim) {
+        if (from < 0) {
+            return;
+        }
+        int start = from;
+        int end = to;
+        while (start < end && corpusText.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && corpusText.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            return;
+        }
+        if (!text.isEmpty()) {
+            text.append(separator);
+        }
+        if (trim) {
+            text.append(corpusText, start, end);
+        } else {
+            text.append(corpusText, from, to);
+        }
+    }
+
+    // The regex \s class, as in the producer's scanners
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    private static boolean isTerminator(char c) {
+        return c == '.' || c == '!' || c == '?';
+    }
+}
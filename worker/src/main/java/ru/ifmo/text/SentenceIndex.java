@@ -0,0 +1,226 @@
+package ru.ifmo.text;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The sentences of one section as offset/length pairs into the original text, found in a single
+ * scan. It yields the sentences of the former regex pipeline: the trimmed text with whitespace
+ * runs collapsed to one space, split at every space that follows {@code [.!?]} and precedes
+ * {@code [A-ZА-Я]}, with a period appended to a sentence that does not end in {@code [.!?]}.
+ * That normalized form is only built by {@link #sentence(int)}; ordering uses its length, which
+ * is computed during the scan. Instances are reusable, every {@link #index(String)} overwrites
+ * the previous contents.
+ */
+public class SentenceIndex {
+
+    private int[] offsets = new int[16];
+    private int[] lengths = new int[16];
+    private int[] normalizedLengths = new int[16];
+    private int size;
+
+    private String text;
+
+    public void index(String text) {
+        this.text = text;
+        size = 0;
+        int end = text != null ? text.length() : 0;
+        int start = 0;
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            return;
+        }
+
+        int sentenceStart = start;
+        int collapsed = 0; // chars removed from the sentence by collapsing whitespace runs
+        int i = start;
+        while (i < end) {
+            if (!isSpace(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            int runEnd = i + 1;
+            while (isSpace(text.charAt(runEnd))) {
+                runEnd++;
+            }
+            // Trimming guarantees a non-space char on both sides of the run
+            if (isTerminator(text.charAt(i - 1)) && isUpperCase(text.charAt(runEnd))) {
+                add(sentenceStart, i - sentenceStart, collapsed);
+                sentenceStart = runEnd;
+                collapsed = 0;
+            } else {
+                collapsed += runEnd - i - 1;
+            }
+            i = runEnd;
+        }
+        add(sentenceStart, end - sentenceStart, collapsed);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Splits a section into parts of about {@code partSize} chars or more, each part after the first
+     * starting at a sentence start that follows {@code [.!?]} and exactly one space. Every analyzer
+     * treats such a position the way it treats the start of a text, so the analyzers of the parts
+     * see the same words, names and sentences as those of the whole section.
+     *
+     * @return the start offsets of the parts, the first one 0
+     */
+    public static int[] partStarts(String text, int partSize) {
+        partSize = Math.max(2, partSize);
+        int[] starts = new int[Math.max(1, text.length() / partSize)];
+        int count = 1;
+        int i = partSize;
+        while (i < text.length()) {
+            if (isUpperCase(text.charAt(i)) && text.charAt(i - 1) == ' ' && isTerminator(text.charAt(i - 2))) {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                }
+                starts[count++] = i;
+                i += partSize;
+            } else {
+                i++;
+            }
+        }
+        return Arrays.copyOf(starts, count);
+    }
+
+    public int offset(int index) {
+        return offsets[index];
+    }
+
+    /**
+     * @return the length of the sentence in the original text
+     */
+    public int length(int index) {
+        return lengths[index];
+    }
+
+    /**
+     * @return the length of {@link #sentence(int)}
+     */
+    public int normalizedLength(int index) {
+        return normalizedLengths[index];
+    }
+
+    public String sentence(int index) {
+        return normalize(text, offsets[index], lengths[index]);
+    }
+
+    /**
+     * The normalized form of the sentence at {@code offset}: whitespace runs collapsed to one space,
+     * a period appended unless it ends in {@code [.!?]}. The aggregator builds sentences of results
+     * that carry offsets the same way.
+     */
+    public static String normalize(String text, int offset, int length) {
+        StringBuilder sb = new StringBuilder(length + 1);
+        for (int i = offset; i < offset + length; i++) {
+            char c = text.charAt(i);
+            if (!isSpace(c)) {
+                sb.append(c);
+            } else if (i == offset || !isSpace(text.charAt(i - 1))) {
+                sb.append(' ');
+            }
+        }
+        if (length == 0 || !isTerminator(text.charAt(offset + length - 1))) {
+            sb.append('.');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Orders the sentences by {@link #normalizedLength(int)} with a stable counting sort, so
+     * sentences of equal length keep their order in the text.
+     *
+     * @return sentence indexes, shortest first or longest first
+     */
+    public int[] sortByLength(boolean descending) {
+        return sortByLength(normalizedLengths, size, descending);
+    }
+
+    /**
+     * Stable counting sort of the first {@code size} lengths, which a split section runs over the
+     * sentence lengths of all its parts in text order.
+     *
+     * @return indexes into {@code lengths}, shortest first or longest first
+     */
+    public static int[] sortByLength(int[] lengths, int size, boolean descending) {
+        int maxLength = 0;
+        for (int i = 0; i < size; i++) {
+            maxLength = Math.max(maxLength, lengths[i]);
+        }
+
+        // counts[k + 1] holds the number of lengths with key k, then becomes the first position for key k + 1
+        int[] counts = new int[maxLength + 2];
+        for (int i = 0; i < size; i++) {
+            counts[key(lengths[i], maxLength, descending) + 1]++;
+        }
+        for (int k = 1; k <= maxLength + 1; k++) {
+            counts[k] += counts[k - 1];
+        }
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[counts[key(lengths[i], maxLength, descending)]++] = i;
+        }
+        return order;
+    }
+
+    /**
+     * @return offset/length pairs of the sentences in the order of {@link #sortByLength(boolean)}
+     */
+    public int[] sortedOffsets(boolean descending) {
+        int[] sorted = sortByLength(descending);
+        int[] pairs = new int[sorted.length * 2];
+        for (int i = 0; i < sorted.length; i++) {
+            pairs[2 * i] = offsets[sorted[i]];
+            pairs[2 * i + 1] = lengths[sorted[i]];
+        }
+        return pairs;
+    }
+
+    public List<String> sortedSentences(boolean descending) {
+        int[] sorted = sortByLength(descending);
+        List<String> sentences = new ArrayList<>(sorted.length);
+        for (int index : sorted) {
+            sentences.add(sentence(index));
+        }
+        return sentences;
+    }
+
+    private static int key(int length, int maxLength, boolean descending) {
+        return descending ? maxLength - length : length;
+    }
+
+    private void add(int offset, int length, int collapsed) {
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, size * 2);
+            lengths = Arrays.copyOf(lengths, size * 2);
+            normalizedLengths = Arrays.copyOf(normalizedLengths, size * 2);
+        }
+        offsets[size] = offset;
+        lengths[size] = length;
+        normalizedLengths[size] = length - collapsed + (isTerminator(text.charAt(offset + length - 1)) ? 0 : 1);
+        size++;
+    }
+
+    // The chars of \s
+    private static boolean isSpace(char c) {
+        return c == ' ' || (c >= '\t' && c <= '\r');
+    }
+
+    private static boolean isTerminator(char c) {
+        return c == '.' || c == '!' || c == '?';
+    }
+
+    private static boolean isUpperCase(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'А' && c <= 'Я');
+    }
+}
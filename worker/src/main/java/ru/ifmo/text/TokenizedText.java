@@ -0,0 +1,69 @@
+package ru.ifmo.text;
+
+import java.util.Arrays;
+
+/**
+ * The tokens of one section, shared by all analyzers of a task. Words are lowercase runs of Latin
+ * and Cyrillic letters kept as offset/length pairs into a lowercased copy of the text; a String
+ * is only created when {@link #word(int)} is called. Instances are reusable: every
+ * {@link Tokenizer#tokenize(String, TokenizedText)} overwrites the previous contents.
+ */
+public class TokenizedText {
+
+    char[] chars = new char[0];
+    int[] starts = new int[16];
+    int[] lengths = new int[16];
+    int size;
+    int wordCount;
+
+    /**
+     * @return number of words (letter runs)
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return number of whitespace-separated tokens that contain at least one letter
+     */
+    public int wordCount() {
+        return wordCount;
+    }
+
+    /**
+     * @return the lowercased text that {@link #start(int)} and {@link #length(int)} point into
+     */
+    public char[] chars() {
+        return chars;
+    }
+
+    public int start(int index) {
+        return starts[index];
+    }
+
+    public int length(int index) {
+        return lengths[index];
+    }
+
+    public String word(int index) {
+        return new String(chars, starts[index], lengths[index]);
+    }
+
+    void reset(int textLength) {
+        if (chars.length < textLength) {
+            chars = new char[Math.max(textLength, chars.length * 2)];
+        }
+        size = 0;
+        wordCount = 0;
+    }
+
+    void addWord(int start, int length) {
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, size * 2);
+            lengths = Arrays.copyOf(lengths, size * 2);
+        }
+        starts[size] = start;
+        lengths[size] = length;
+        size++;
+    }
+}
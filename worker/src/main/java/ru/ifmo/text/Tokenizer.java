@@ -0,0 +1,126 @@
+package ru.ifmo.text;
+
+/**
+ * Tokenizes a section in a single pass. It yields the same tokens as the regex pipelines the
+ * analyzers used before: {@code split("\\s+")} filtered by {@code matches(".*[a-zA-Zа-яА-Я].*")}
+ * for the word count, and {@code toLowerCase().replaceAll("[^a-zA-Zа-яА-Я\\s]", " ").split("\\s+")}
+ * for the words. Characters below {@code U+0460} are classified with lookup tables; the
+ * tokenizer itself allocates nothing once the target's buffers are large enough.
+ */
+public final class Tokenizer {
+
+    private static final int TABLE_SIZE = 0x460;
+
+    private static final byte SPACE = 1;
+    private static final byte LETTER = 2;
+    // '.' does not match these, so a token containing one never matched ".*[a-zA-Zа-яА-Я].*"
+    private static final byte LINE_BREAK = 4;
+    // String.toLowerCase() turns 'İ' into 'i' followed by a combining dot, which ends the word
+    private static final byte ENDS_WORD = 8;
+
+    private static final byte[] CLASSES = new byte[TABLE_SIZE];
+    private static final char[] LOWER_LETTERS = new char[TABLE_SIZE];
+
+    static {
+        for (char c = 0; c < TABLE_SIZE; c++) {
+            byte flags = 0;
+            if (c == ' ' || (c >= '\t' && c <= '\r')) {
+                flags |= SPACE;
+            }
+            if (isLetter(c)) {
+                flags |= LETTER;
+            }
+            if (c == '\u0085') {
+                flags |= LINE_BREAK;
+            }
+            if (c == 'İ') {
+                flags |= ENDS_WORD;
+            }
+            CLASSES[c] = flags;
+            LOWER_LETTERS[c] = lowerLetter(c);
+        }
+    }
+
+    private Tokenizer() {
+    }
+
+    public static TokenizedText tokenize(String text) {
+        TokenizedText tokens = new TokenizedText();
+        tokenize(text, tokens);
+        return tokens;
+    }
+
+    public static void tokenize(String text, TokenizedText tokens) {
+        int n = text != null ? text.length() : 0;
+        tokens.reset(n);
+        if (n == 0) {
+            return;
+        }
+
+        char[] chars = tokens.chars;
+        text.getChars(0, n, chars, 0);
+
+        int wordCount = 0;
+        boolean inToken = false;
+        boolean tokenHasLetter = false;
+        boolean tokenHasLineBreak = false;
+        int wordStart = -1;
+
+        for (int i = 0; i < n; i++) {
+            char c = chars[i];
+            int flags;
+            char lower;
+            if (c < TABLE_SIZE) {
+                flags = CLASSES[c];
+                lower = LOWER_LETTERS[c];
+            } else {
+                flags = c == '\u2028' || c == '\u2029' ? LINE_BREAK : 0;
+                lower = lowerLetter(c);
+            }
+
+            if ((flags & SPACE) != 0) {
+                if (inToken && tokenHasLetter && !tokenHasLineBreak) {
+                    wordCount++;
+                }
+                inToken = false;
+                tokenHasLetter = false;
+                tokenHasLineBreak = false;
+            } else {
+                inToken = true;
+                tokenHasLetter |= (flags & LETTER) != 0;
+                tokenHasLineBreak |= (flags & LINE_BREAK) != 0;
+            }
+
+            if (lower != 0) {
+                chars[i] = lower;
+                if (wordStart < 0) {
+                    wordStart = i;
+                }
+            }
+            if ((lower == 0 || (flags & ENDS_WORD) != 0) && wordStart >= 0) {
+                tokens.addWord(wordStart, i + (lower != 0 ? 1 : 0) - wordStart);
+                wordStart = -1;
+            }
+        }
+
+        if (inToken && tokenHasLetter && !tokenHasLineBreak) {
+            wordCount++;
+        }
+        if (wordStart >= 0) {
+            tokens.addWord(wordStart, n - wordStart);
+        }
+        tokens.wordCount = wordCount;
+    }
+
+    /**
+     * @return the lowercase form of {@code c} if that is a Latin or Cyrillic letter, otherwise 0
+     */
+    private static char lowerLetter(char c) {
+        char lower = Character.toLowerCase(c);
+        return (lower >= 'a' && lower <= 'z') || (lower >= 'а' && lower <= 'я') ? lower : 0;
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= 'а' && c <= 'я') || (c >= 'А' && c <= 'Я');
+    }
+}
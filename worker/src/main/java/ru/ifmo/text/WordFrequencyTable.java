@@ -0,0 +1,125 @@
+package ru.ifmo.text;
+
+import java.util.Arrays;
+
+/**
+ * Counts words by their chars without boxing: keys live in a {@link CharKeyTable}, counts in a
+ * parallel int array indexed by key id. {@link #clear()} keeps all capacity, so a table reused
+ * across sections stops allocating once it has grown to the largest vocabulary.
+ */
+public class WordFrequencyTable {
+
+    private final CharKeyTable keys = new CharKeyTable(1024);
+    private int[] counts = new int[1024];
+    private int[] heap = new int[16];
+
+    public void increment(char[] chars, int offset, int length) {
+        int id = keys.add(chars, offset, length);
+        if (id == counts.length) {
+            counts = Arrays.copyOf(counts, id * 2);
+        }
+        counts[id]++;
+    }
+
+    /**
+     * Adds the counts of another table, e.g. of another part of the same section.
+     */
+    public void addAll(WordFrequencyTable other) {
+        for (int otherId = 0; otherId < other.size(); otherId++) {
+            int id = keys.add(other.keys, otherId);
+            if (id == counts.length) {
+                counts = Arrays.copyOf(counts, id * 2);
+            }
+            counts[id] += other.counts[otherId];
+        }
+    }
+
+    public int size() {
+        return keys.size();
+    }
+
+    public int count(int id) {
+        return counts[id];
+    }
+
+    public String word(int id) {
+        return keys.key(id);
+    }
+
+    /**
+     * Selects the {@code n} most frequent words with a bounded min-heap in O(V log n); equal counts
+     * are ordered alphabetically.
+     *
+     * @return the ids of the selected words, most frequent first
+     */
+    public int[] top(int n) {
+        int limit = Math.min(n, keys.size());
+        if (heap.length < limit) {
+            heap = new int[Math.max(limit, heap.length * 2)];
+        }
+
+        // heap[0] is the weakest of the words selected so far
+        int heapSize = 0;
+        for (int id = 0; id < keys.size(); id++) {
+            if (heapSize < limit) {
+                heap[heapSize] = id;
+                siftUp(heapSize++);
+            } else if (limit > 0 && ranksAbove(id, heap[0])) {
+                heap[0] = id;
+                siftDown(0, heapSize);
+            }
+        }
+
+        int[] top = new int[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            top[i] = heap[0];
+            heap[0] = heap[i];
+            siftDown(0, i);
+        }
+        return top;
+    }
+
+    public void clear() {
+        Arrays.fill(counts, 0, keys.size(), 0);
+        keys.clear();
+    }
+
+    private boolean ranksAbove(int id, int otherId) {
+        if (counts[id] != counts[otherId]) {
+            return counts[id] > counts[otherId];
+        }
+        return keys.compare(id, otherId) < 0;
+    }
+
+    private void siftUp(int index) {
+        int id = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!ranksAbove(heap[parent], id)) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = id;
+    }
+
+    private void siftDown(int index, int heapSize) {
+        int id = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && ranksAbove(heap[child], heap[child + 1])) {
+                child++;
+            }
+            if (!ranksAbove(id, heap[child])) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = id;
+    }
+}
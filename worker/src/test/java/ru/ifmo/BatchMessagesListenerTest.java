@@ -0,0 +1,151 @@
+package ru.ifmo;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.rabbitmq.client.Channel;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.ifmo.dto.TextTask;
+import ru.ifmo.service.TestServices;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BatchMessagesListenerTest {
+
+    // Results of these tasks are nacked by the broker
+    private final Set<String> nacked = new HashSet<>();
+    // Results of these tasks cannot be published
+    private final Set<String> unpublishable = new HashSet<>();
+    // basicAck and basicNack calls as "ack <tag>" and "nack <tag>", all with multiple and requeue set
+    private final List<String> settlements = new ArrayList<>();
+    private boolean ackFails;
+
+    @Test
+    void acksTheWholeBatchOnceEveryResultIsConfirmed() {
+        listener().receiveBatch(messages("task-1", "task-2", "task-3"), channel());
+
+        assertEquals(List.of("ack 3"), settlements);
+    }
+
+    @Test
+    void requeuesOnlyTheTasksAfterTheLastConfirmedResult() {
+        nacked.add("task-3");
+
+        listener().receiveBatch(messages("task-1", "task-2", "task-3", "task-4"), channel());
+
+        assertEquals(List.of("ack 2", "nack 4"), settlements);
+    }
+
+    @Test
+    void requeuesTheWholeBatchWhenTheFirstResultIsNotConfirmed() {
+        nacked.add("task-1");
+
+        listener().receiveBatch(messages("task-1", "task-2"), channel());
+
+        assertEquals(List.of("nack 2"), settlements);
+    }
+
+    @Test
+    void stopsTheBatchAtAResultThatCannotBePublished() {
+        unpublishable.add("task-2");
+
+        listener().receiveBatch(messages("task-1", "task-2", "task-3"), channel());
+
+        assertEquals(List.of("ack 1", "nack 3"), settlements);
+    }
+
+    @Test
+    void dropsAnUndecodableTaskWithoutFailingTheBatch() {
+        listener().receiveBatch(messages("task-1", "undecodable", "task-3"), channel());
+
+        assertEquals(List.of("ack 3"), settlements);
+    }
+
+    @Test
+    void requeuesTheBatchWhenTheAckFails() {
+        ackFails = true;
+
+        listener().receiveBatch(messages("task-1", "task-2"), channel());
+
+        assertEquals(List.of("nack 2"), settlements);
+    }
+
+    private BatchMessagesListener listener() {
+        RabbitTemplate rabbitTemplate = new RabbitTemplate() {
+            @Override
+            public void convertAndSend(String routingKey, Object message, CorrelationData correlationData) {
+                if (unpublishable.contains(correlationData.getId())) {
+                    throw new IllegalStateException("Channel closed");
+                }
+                correlationData.getFuture().complete(
+                        new CorrelationData.Confirm(!nacked.contains(correlationData.getId()), null));
+            }
+        };
+        BatchMessagesListener listener = new BatchMessagesListener(TestServices.textProcessingService(),
+                rabbitTemplate, null, new TaskConverter());
+        ReflectionTestUtils.setField(listener, "resultsQueue", "resultsQueue");
+        ReflectionTestUtils.setField(listener, "confirmTimeoutMs", 1000L);
+        return listener;
+    }
+
+    private static List<Message> messages(String... taskIds) {
+        List<Message> messages = new ArrayList<>();
+        for (String taskId : taskIds) {
+            MessageProperties properties = new MessageProperties();
+            properties.setDeliveryTag(messages.size() + 1);
+            messages.add(new Message(taskId.getBytes(StandardCharsets.UTF_8), properties));
+        }
+        return messages;
+    }
+
+    private Channel channel() {
+        return (Channel) Proxy.newProxyInstance(Channel.class.getClassLoader(), new Class<?>[]{Channel.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "basicAck" -> {
+                            if (ackFails) {
+                                throw new IOException("Ack failed");
+                            }
+                            settlements.add("ack " + args[0]);
+                        }
+                        case "basicNack" -> settlements.add("nack " + args[0]);
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    }
+                    return null;
+                });
+    }
+
+    // Reads the task id from the body, like the wire codec reads the whole task
+    private static class TaskConverter implements MessageConverter {
+
+        @Override
+        public Message toMessage(Object object, MessageProperties messageProperties) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Object fromMessage(Message message) {
+            String taskId = new String(message.getBody(), StandardCharsets.UTF_8);
+            if (taskId.equals("undecodable")) {
+                throw new MessageConversionException("Unexpected body");
+            }
+            TextTask task = new TextTask();
+            task.setTaskId(taskId);
+            task.setText("Holmes wrote a letter. Watson read it twice.");
+            task.setTopN(5);
+            return task;
+        }
+    }
+}
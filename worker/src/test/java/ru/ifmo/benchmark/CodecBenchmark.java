@@ -0,0 +1,129 @@
+package ru.ifmo.benchmark;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import ru.ifmo.configuration.WireCodecMessageConverter;
+import ru.ifmo.configuration.WireCodecMessageConverter.WireCodec;
+import ru.ifmo.dto.TextProcessingResult;
+import ru.ifmo.dto.TextTask;
+
+/**
+ * Compares message size and encode/decode throughput of the wire codecs on synthetic sections.
+ * Run with {@code java -cp <worker test classpath> ru.ifmo.benchmark.CodecBenchmark [sectionChars] [iterations]}.
+ */
+public class CodecBenchmark {
+
+    private static final String[] WORDS = {
+            "the", "of", "and", "to", "in", "was", "that", "he", "his", "with", "Holmes", "Watson",
+            "letter", "street", "door", "said", "upon", "which", "there", "little", "good", "terrible",
+            "письмо", "улица", "сказал", "хорошо"
+    };
+
+    public static void main(String[] args) {
+        int sectionChars = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+
+        Random random = new Random(42);
+        List<TextTask> tasks = new ArrayList<>();
+        List<TextProcessingResult> results = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            String text = section(random, sectionChars);
+            tasks.add(task(i, text));
+            results.add(result(i, text));
+        }
+
+        System.out.printf("%-6s %-10s %12s %14s %14s%n", "codec", "payload", "avg bytes", "encode ops/s", "decode ops/s");
+        for (WireCodec codec : WireCodec.values()) {
+            WireCodecMessageConverter converter = new WireCodecMessageConverter(codec);
+            run(converter, codec, "TextTask", tasks, TextTask.class, iterations);
+            run(converter, codec, "Result", results, TextProcessingResult.class, iterations);
+        }
+    }
+
+    private static <T> void run(WireCodecMessageConverter converter, WireCodec codec, String name,
+                                List<T> payloads, Class<T> type, int iterations) {
+        List<Message> messages = new ArrayList<>();
+        long totalBytes = 0;
+        for (T payload : payloads) {
+            Message message = converter.toMessage(payload, new MessageProperties());
+            message.getMessageProperties().setInferredArgumentType(type);
+            messages.add(message);
+            totalBytes += message.getBody().length;
+        }
+
+        // Warm up both paths before measuring
+        for (int i = 0; i < iterations / 10; i++) {
+            converter.toMessage(payloads.get(i % payloads.size()), new MessageProperties());
+            converter.fromMessage(messages.get(i % messages.size()));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            converter.toMessage(payloads.get(i % payloads.size()), new MessageProperties());
+        }
+        long encodeNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            converter.fromMessage(messages.get(i % messages.size()));
+        }
+        long decodeNanos = System.nanoTime() - start;
+
+        System.out.printf("%-6s %-10s %12d %14.0f %14.0f%n", codec, name, totalBytes / payloads.size(),
+                iterations * 1e9 / encodeNanos, iterations * 1e9 / decodeNanos);
+    }
+
+    private static String section(Random random, int chars) {
+        StringBuilder text = new StringBuilder(chars + 16);
+        while (text.length() < chars) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            text.append(text.length() == 0 || random.nextInt(12) == 0
+                    ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+            text.append(random.nextInt(12) == 0 ? ". " : " ");
+        }
+        return text.toString();
+    }
+
+    private static TextTask task(int number, String text) {
+        TextTask task = new TextTask();
+        task.setTaskId(String.format("session-1a2b3c4d-task-%03d", number));
+        task.setText(text);
+        task.setTopN(10);
+        task.setNameReplacement("[NAME]");
+        return task;
+    }
+
+    private static TextProcessingResult result(int number, String text) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (String word : text.toLowerCase().split("[^a-zа-я]+")) {
+            if (word.length() > 1) {
+                counts.merge(word, 1, Integer::sum);
+            }
+        }
+        Map<String, Integer> topWords = new LinkedHashMap<>();
+        counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .limit(10)
+                .forEach(entry -> topWords.put(entry.getKey(), entry.getValue()));
+
+        List<String> sentences = new ArrayList<>(List.of(text.split("(?<=\\.)\\s+")));
+        sentences.sort(Comparator.comparing(String::length));
+
+        TextProcessingResult result = new TextProcessingResult();
+        result.setTaskId(String.format("session-1a2b3c4d-task-%03d", number));
+        result.setWordCount(text.split("\\s+").length);
+        result.setTopWords(topWords);
+        result.setSentiment("NEUTRAL");
+        result.setSentimentScore(0.0125);
+        result.setModifiedText(text.replace("Holmes", "[NAME]"));
+        result.setSortedSentences(sentences);
+        return result;
+    }
+}
@@ -0,0 +1,107 @@
+package ru.ifmo.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ru.ifmo.dto.TextTask;
+import ru.ifmo.service.TestServices;
+import ru.ifmo.service.TextProcessingService;
+
+/**
+ * Throughput of the task pipeline on 1, 2, 4... threads, each running it on its own long-lived
+ * thread as a listener consumer does. It shows how the pipelines contend with each other in one
+ * process; the listener container, message conversion and the broker are left out, so it does not
+ * measure the throughput of the consumers themselves.
+ * Run with {@code java -cp <worker test classpath> ru.ifmo.benchmark.ConsumerScalingBenchmark [sectionChars] [tasksPerConsumer] [PLATFORM|VIRTUAL]}.
+ */
+public class ConsumerScalingBenchmark {
+
+    private static final String[] WORDS = {
+            "the", "of", "and", "to", "in", "was", "that", "he", "his", "with", "Holmes", "Watson",
+            "letter", "street", "door", "said", "upon", "which", "there", "little", "good", "terrible",
+            "письмо", "улица", "сказал", "хорошо"
+    };
+
+    public static void main(String[] args) throws Exception {
+        int sectionChars = args.length > 0 ? Integer.parseInt(args[0]) : 4000;
+        int tasksPerConsumer = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        boolean virtualThreads = args.length > 2 && args[2].equalsIgnoreCase("VIRTUAL");
+
+        Random random = new Random(42);
+        List<TextTask> tasks = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            TextTask task = new TextTask();
+            task.setTaskId(String.format("session-benchmark-task-%03d", i));
+            task.setText(section(random, sectionChars));
+            task.setTopN(10);
+            tasks.add(task);
+        }
+
+        TextProcessingService processing = TestServices.textProcessingService();
+        int cores = Runtime.getRuntime().availableProcessors();
+        List<Integer> consumerCounts = new ArrayList<>();
+        for (int consumers = 1; consumers < cores; consumers *= 2) {
+            consumerCounts.add(consumers);
+        }
+        consumerCounts.add(cores);
+
+        // Warms up the code and every thread's buffers
+        run(processing, tasks, cores, tasksPerConsumer / 4, virtualThreads);
+
+        System.out.printf("%d cores, %s threads, %d chars per section%n",
+                cores, virtualThreads ? "virtual" : "platform", sectionChars);
+        System.out.printf("%-10s %12s %10s %12s%n", "consumers", "tasks/s", "speedup", "efficiency");
+        double baseline = 0;
+        for (int consumers : consumerCounts) {
+            double throughput = run(processing, tasks, consumers, tasksPerConsumer, virtualThreads);
+            if (baseline == 0) {
+                baseline = throughput;
+            }
+            System.out.printf("%-10d %12.0f %10.2f %11.0f%%%n", consumers, throughput,
+                    throughput / baseline, 100 * throughput / baseline / consumers);
+        }
+    }
+
+    /**
+     * @return tasks per second of all consumers together
+     */
+    private static double run(TextProcessingService processing, List<TextTask> tasks, int consumers,
+                              int tasksPerConsumer, boolean virtualThreads) throws Exception {
+        AtomicInteger next = new AtomicInteger();
+        int total = consumers * tasksPerConsumer;
+        try (ExecutorService executor = virtualThreads
+                ? Executors.newVirtualThreadPerTaskExecutor() : Executors.newFixedThreadPool(consumers)) {
+            long start = System.nanoTime();
+            List<Future<?>> running = new ArrayList<>();
+            for (int c = 0; c < consumers; c++) {
+                running.add(executor.submit(() -> {
+                    int index;
+                    while ((index = next.getAndIncrement()) < total) {
+                        processing.processTask(tasks.get(index % tasks.size()));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> consumer : running) {
+                consumer.get();
+            }
+            return total / ((System.nanoTime() - start) / 1e9);
+        }
+    }
+
+    private static String section(Random random, int chars) {
+        StringBuilder text = new StringBuilder(chars + 16);
+        while (text.length() < chars) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            text.append(text.length() == 0 || random.nextInt(12) == 0
+                    ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+            text.append(random.nextInt(12) == 0 ? ". " : random.nextInt(20) == 0 ? ", " : " ");
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,104 @@
+package ru.ifmo.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import ru.ifmo.service.SentimentAnalysisService;
+import ru.ifmo.service.TestServices;
+import ru.ifmo.service.WordCountService;
+import ru.ifmo.text.TokenizedText;
+import ru.ifmo.text.Tokenizer;
+
+/**
+ * Compares the regex tokenization the analyzers used before with the shared {@link Tokenizer}:
+ * time and heap allocation per token for the word count and sentiment passes over a section.
+ * Allocation is read from the current thread's allocation counter.
+ * Run with {@code java -cp <worker test classpath> ru.ifmo.benchmark.TokenizerBenchmark [sectionChars] [iterations]}.
+ */
+public class TokenizerBenchmark {
+
+    private static final String[] WORDS = {
+            "the", "of", "and", "to", "in", "was", "that", "he", "his", "with", "Holmes", "Watson",
+            "letter", "street", "door", "said", "upon", "which", "there", "little", "good", "terrible",
+            "письмо", "улица", "сказал", "хорошо", "don't", "1895"
+    };
+
+    public static void main(String[] args) {
+        int sectionChars = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+
+        Random random = new Random(42);
+        List<String> sections = new ArrayList<>();
+        long tokens = 0;
+        for (int i = 0; i < 64; i++) {
+            String section = section(random, sectionChars);
+            sections.add(section);
+            tokens += Tokenizer.tokenize(section).size();
+        }
+        double tokensPerSection = (double) tokens / sections.size();
+
+        SentimentAnalysisService sentiment = TestServices.sentimentAnalysisService();
+        WordCountService wordCount = TestServices.wordCountService();
+        TokenizedText buffer = new TokenizedText();
+
+        System.out.printf("%-10s %12s %14s%n", "tokenizer", "ns/token", "bytes/token");
+        run("regex", sections, tokensPerSection, iterations, TokenizerBenchmark::regexPasses);
+        run("shared", sections, tokensPerSection, iterations, section -> {
+            Tokenizer.tokenize(section, buffer);
+            return wordCount.countWords(buffer) + sentiment.calculateSentimentScore(buffer);
+        });
+    }
+
+    private static void run(String name, List<String> sections, double tokensPerSection, int iterations,
+                            Pass pass) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        double sink = 0;
+        for (int i = 0; i < iterations / 10; i++) {
+            sink += pass.run(sections.get(i % sections.size()));
+        }
+
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += pass.run(sections.get(i % sections.size()));
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+        double totalTokens = tokensPerSection * iterations;
+        System.out.printf("%-10s %12.1f %14.3f%s%n", name, nanos / totalTokens, allocated / totalTokens,
+                sink == 42.4242 ? " " : "");
+    }
+
+    // The word count and sentiment tokenization as the analyzers did it before the shared tokenizer
+    private static double regexPasses(String text) {
+        long words = Arrays.stream(text.trim().split("\\s+"))
+                .filter(word -> !word.trim().isEmpty())
+                .filter(word -> word.matches(".*[a-zA-Zа-яА-Я].*"))
+                .count();
+        String[] lowered = text.toLowerCase()
+                .replaceAll("[^a-zA-Zа-яА-Я\\s]", " ")
+                .trim()
+                .split("\\s+");
+        return words + lowered.length;
+    }
+
+    private static String section(Random random, int chars) {
+        StringBuilder text = new StringBuilder(chars + 16);
+        while (text.length() < chars) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            text.append(text.length() == 0 || random.nextInt(12) == 0
+                    ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+            text.append(random.nextInt(12) == 0 ? ". " : random.nextInt(20) == 0 ? ", " : " ");
+        }
+        return text.toString();
+    }
+
+    @FunctionalInterface
+    private interface Pass {
+        double run(String section);
+    }
+}
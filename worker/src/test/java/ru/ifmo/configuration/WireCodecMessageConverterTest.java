@@ -0,0 +1,99 @@
+package ru.ifmo.configuration;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import ru.ifmo.configuration.WireCodecMessageConverter.WireCodec;
+import ru.ifmo.dto.TaskOperation;
+import ru.ifmo.dto.TextProcessingResult;
+import ru.ifmo.dto.TextTask;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WireCodecMessageConverterTest {
+
+    @Test
+    void roundTripsTasksAndResults() {
+        for (WireCodec codec : WireCodec.values()) {
+            WireCodecMessageConverter converter = new WireCodecMessageConverter(codec);
+
+            Message taskMessage = converter.toMessage(task(), new MessageProperties());
+            assertEquals(codec.getContentType(), taskMessage.getMessageProperties().getContentType());
+            assertEquals(task(), decode(converter, taskMessage, TextTask.class));
+
+            Message resultMessage = converter.toMessage(result(), new MessageProperties());
+            assertEquals(result(), decode(converter, resultMessage, TextProcessingResult.class));
+        }
+    }
+
+    @Test
+    void readsTheCodecNamedByTheContentType() {
+        WireCodecMessageConverter json = new WireCodecMessageConverter(WireCodec.JSON);
+        WireCodecMessageConverter smile = new WireCodecMessageConverter(WireCodec.SMILE);
+
+        assertEquals(task(), decode(smile, json.toMessage(task(), new MessageProperties()), TextTask.class));
+        assertEquals(task(), decode(json, smile.toMessage(task(), new MessageProperties()), TextTask.class));
+    }
+
+    @Test
+    void readsMessagesWithoutContentTypeAsJsonAndIgnoresUnknownFields() {
+        String body = "{\"taskId\":\"t-1\",\"text\":\"Some text.\",\"topN\":3,\"addedLater\":true}";
+        Message message = new Message(body.getBytes(StandardCharsets.UTF_8), new MessageProperties());
+
+        TextTask task = decode(new WireCodecMessageConverter(WireCodec.SMILE), message, TextTask.class);
+        assertEquals("t-1", task.getTaskId());
+        assertEquals("Some text.", task.getText());
+        assertEquals(3, task.getTopN());
+    }
+
+    @Test
+    void leavesTheCorpusSectionOutOfInlineResults() {
+        TextProcessingResult result = new TextProcessingResult();
+        result.setTaskId("t-1");
+        result.setWordCount(2);
+
+        Message message = new WireCodecMessageConverter(WireCodec.JSON).toMessage(result, new MessageProperties());
+        assertEquals("{\"taskId\":\"t-1\",\"wordCount\":2}", new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    private static <T> T decode(WireCodecMessageConverter converter, Message message, Class<T> type) {
+        message.getMessageProperties().setInferredArgumentType(type);
+        return type.cast(converter.fromMessage(message));
+    }
+
+    private static TextTask task() {
+        TextTask task = new TextTask();
+        task.setTaskId("session-1a2b3c4d-task-001");
+        task.setText("Холмс открыл дверь. Watson said nothing!");
+        task.setTopN(10);
+        task.setNameReplacement("[NAME]");
+        task.setOperations(Set.of(TaskOperation.WORD_COUNT, TaskOperation.NAME_REPLACEMENT));
+        return task;
+    }
+
+    private static TextProcessingResult result() {
+        Map<String, Integer> topWords = new LinkedHashMap<>();
+        topWords.put("дверь", 2);
+        topWords.put("said", 1);
+
+        TextProcessingResult result = new TextProcessingResult();
+        result.setTaskId("session-1a2b3c4d-task-001");
+        result.setWordCount(7);
+        result.setTopWords(topWords);
+        result.setSentiment("NEUTRAL");
+        result.setSentimentScore(0.0125);
+        result.setModifiedText("[NAME] открыл дверь. [NAME] said nothing!");
+        result.setSortedSentences(List.of("Watson said nothing!", "Холмс открыл дверь."));
+        result.setSortedSentenceOffsets(new int[]{0, 20, 21, 19});
+        result.setCorpusRef("session-1a2b3c4d-corpus.txt");
+        result.setOffset(4096L);
+        result.setLength(40);
+        return result;
+    }
+}
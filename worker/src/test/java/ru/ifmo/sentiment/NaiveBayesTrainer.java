@@ -0,0 +1,174 @@
+package ru.ifmo.sentiment;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import ru.ifmo.text.CharKeyTable;
+import ru.ifmo.text.TokenizedText;
+import ru.ifmo.text.Tokenizer;
+
+/**
+ * Trains a multinomial Naive Bayes sentiment model with Laplace smoothing and writes it in the
+ * {@link NaiveBayesModel} format. The training file holds one labelled document per line,
+ * {@code LABEL<TAB>text}; labels are case-insensitive, POSITIVE and NEGATIVE drive the sentiment
+ * score and any other label (e.g. NEUTRAL) becomes a class of its own. Words are tokenized with
+ * the worker's {@link Tokenizer}, so training and scoring see the same tokens.
+ * Run with {@code java -cp <worker test classpath> ru.ifmo.sentiment.NaiveBayesTrainer <training.tsv> <model.bin> [minCount]}.
+ */
+public class NaiveBayesTrainer {
+
+    private final int minCount;
+    private final List<String> labels = new ArrayList<>();
+    private final List<int[]> wordCounts = new ArrayList<>(); // per class, indexed by word id, may be shorter than the vocabulary
+    private final CharKeyTable vocabulary = new CharKeyTable(1 << 16);
+    private final TokenizedText tokens = new TokenizedText();
+    private int[] documentCounts = new int[4];
+
+    public NaiveBayesTrainer(int minCount) {
+        this.minCount = Math.max(1, minCount);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: NaiveBayesTrainer <training.tsv> <model.bin> [minCount]");
+            System.exit(1);
+        }
+        NaiveBayesTrainer trainer = new NaiveBayesTrainer(args.length > 2 ? Integer.parseInt(args[2]) : 1);
+
+        long documents = 0;
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (tab > 0) {
+                    trainer.add(line.substring(0, tab), line.substring(tab + 1));
+                    documents++;
+                }
+            }
+        }
+
+        int vocabularySize = trainer.write(Paths.get(args[1]));
+        System.out.printf("Trained on %d documents, classes %s, vocabulary %d words, model %d bytes%n",
+                documents, trainer.labels, vocabularySize, Files.size(Paths.get(args[1])));
+    }
+
+    public void add(String label, String text) {
+        int classIndex = classIndex(label.trim().toUpperCase(Locale.ROOT));
+        documentCounts[classIndex]++;
+        int[] counts = wordCounts.get(classIndex);
+
+        Tokenizer.tokenize(text, tokens);
+        for (int i = 0; i < tokens.size(); i++) {
+            int id = vocabulary.add(tokens.chars(), tokens.start(i), tokens.length(i));
+            if (id >= counts.length) {
+                counts = Arrays.copyOf(counts, Math.max(id + 1, counts.length * 2));
+                wordCounts.set(classIndex, counts);
+            }
+            counts[id]++;
+        }
+    }
+
+    /**
+     * Writes the model, leaving out words seen fewer than {@code minCount} times.
+     *
+     * @return the vocabulary size of the model
+     */
+    public int write(Path path) throws IOException {
+        int classCount = labels.size();
+        if (classCount == 0) {
+            throw new IllegalStateException("No training documents");
+        }
+
+        // Vocabulary after pruning, and the word totals per class it implies
+        int[] kept = new int[vocabulary.size()];
+        int vocabularySize = 0;
+        long[] totals = new long[classCount];
+        for (int id = 0; id < vocabulary.size(); id++) {
+            long count = 0;
+            for (int c = 0; c < classCount; c++) {
+                count += countOf(c, id);
+            }
+            if (count >= minCount) {
+                kept[vocabularySize++] = id;
+                for (int c = 0; c < classCount; c++) {
+                    totals[c] += countOf(c, id);
+                }
+            }
+        }
+
+        // Load factor at most one half keeps probe sequences short
+        int slotCount = Integer.highestOneBit(Math.max(16, vocabularySize * 2 - 1)) << 1;
+        int slotMask = slotCount - 1;
+        long[] fingerprints = new long[slotCount];
+        float[] logLikelihoods = new float[slotCount * classCount];
+        char[] word = new char[64];
+        for (int k = 0; k < vocabularySize; k++) {
+            int id = kept[k];
+            String key = vocabulary.key(id);
+            if (word.length < key.length()) {
+                word = new char[key.length()];
+            }
+            key.getChars(0, key.length(), word, 0);
+            long fingerprint = NaiveBayesModel.fingerprint(word, 0, key.length());
+
+            int slot = NaiveBayesModel.slotIndex(fingerprint, slotMask);
+            while (fingerprints[slot] != 0 && fingerprints[slot] != fingerprint) {
+                slot = (slot + 1) & slotMask;
+            }
+            fingerprints[slot] = fingerprint;
+            for (int c = 0; c < classCount; c++) {
+                // A 64-bit fingerprint collision merges two words into one
+                logLikelihoods[slot * classCount + c] = (float) Math.log(
+                        (countOf(c, id) + 1.0) / (totals[c] + vocabularySize));
+            }
+        }
+
+        long documents = Arrays.stream(documentCounts, 0, classCount).sum();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(NaiveBayesModel.MAGIC);
+            out.writeInt(NaiveBayesModel.VERSION);
+            out.writeInt(classCount);
+            out.writeInt(slotCount);
+            out.writeInt(vocabularySize);
+            for (int c = 0; c < classCount; c++) {
+                out.writeUTF(labels.get(c));
+                out.writeFloat((float) Math.log((double) documentCounts[c] / documents));
+            }
+            for (int slot = 0; slot < slotCount; slot++) {
+                out.writeLong(fingerprints[slot]);
+                for (int c = 0; c < classCount; c++) {
+                    out.writeFloat(logLikelihoods[slot * classCount + c]);
+                }
+            }
+        }
+        return vocabularySize;
+    }
+
+    private int classIndex(String label) {
+        int index = labels.indexOf(label);
+        if (index < 0) {
+            index = labels.size();
+            labels.add(label);
+            wordCounts.add(new int[1024]);
+            if (index == documentCounts.length) {
+                documentCounts = Arrays.copyOf(documentCounts, index * 2);
+            }
+        }
+        return index;
+    }
+
+    private int countOf(int classIndex, int id) {
+        int[] counts = wordCounts.get(classIndex);
+        return id < counts.length ? counts[id] : 0;
+    }
+}
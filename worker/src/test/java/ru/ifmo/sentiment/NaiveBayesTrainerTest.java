@@ -0,0 +1,65 @@
+package ru.ifmo.sentiment;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.ifmo.service.SentimentAnalysisService;
+import ru.ifmo.service.TestServices;
+import ru.ifmo.text.Tokenizer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NaiveBayesTrainerTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void writesLaplaceSmoothedLogProbabilities() throws IOException {
+        NaiveBayesTrainer trainer = new NaiveBayesTrainer(1);
+        trainer.add("positive", "good good day");
+        trainer.add("Negative", "bad day");
+        trainer.add("POSITIVE", "great");
+        Path path = directory.resolve("model.bin");
+        assertEquals(4, trainer.write(path));
+
+        NaiveBayesModel model = NaiveBayesModel.open(path);
+        assertEquals(2, model.classCount());
+        int positive = model.classIndex("POSITIVE");
+        int negative = model.classIndex("NEGATIVE");
+
+        // POSITIVE: 4 words, good x2; NEGATIVE: 2 words, no good; vocabulary of 4; "unknown" is skipped
+        double[] logJoint = new double[2];
+        assertEquals(2, model.score(Tokenizer.tokenize("Good, good! Unknown"), logJoint));
+        assertEquals(Math.log(2.0 / 3) + 2 * Math.log(3.0 / 8), logJoint[positive], 1e-5);
+        assertEquals(Math.log(1.0 / 3) + 2 * Math.log(1.0 / 6), logJoint[negative], 1e-5);
+    }
+
+    @Test
+    void leavesOutRareWords() throws IOException {
+        NaiveBayesTrainer trainer = new NaiveBayesTrainer(2);
+        trainer.add("POSITIVE", "good good rare");
+        trainer.add("NEGATIVE", "bad bad");
+        assertEquals(2, trainer.write(directory.resolve("model.bin")));
+    }
+
+    @Test
+    void drivesTheSentimentAnalysis() throws IOException {
+        NaiveBayesTrainer trainer = new NaiveBayesTrainer(1);
+        trainer.add("POSITIVE", "a wonderful happy story");
+        trainer.add("NEGATIVE", "a dreadful sad story");
+        trainer.add("NEUTRAL", "a story");
+        Path path = directory.resolve("model.bin");
+        trainer.write(path);
+
+        SentimentAnalysisService service = TestServices.sentimentAnalysisService(path.toString());
+        assertTrue(service.usesModel());
+        assertEquals("POSITIVE", service.analyzeSentiment("What a happy, wonderful day"));
+        assertEquals("NEGATIVE", service.analyzeSentiment("So sad and dreadful"));
+        assertEquals("NEUTRAL", service.analyzeSentiment("Nothing known here"));
+        assertTrue(service.calculateSentimentScore("happy") > 0);
+    }
+}
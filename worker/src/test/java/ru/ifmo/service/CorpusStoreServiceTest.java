@@ -0,0 +1,93 @@
+package ru.ifmo.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CorpusStoreServiceTest {
+
+    @TempDir
+    Path store;
+
+    private CorpusStoreService corpusStore;
+
+    @AfterEach
+    void tearDown() {
+        if (corpusStore != null) {
+            corpusStore.close();
+        }
+    }
+
+    @Test
+    void readsSectionsByByteRange() throws IOException {
+        String text = "Первая секция. Second section!";
+        Files.writeString(store.resolve("corpus.txt"), text);
+        corpusStore = corpusStore(4);
+
+        int split = "Первая секция. ".getBytes(StandardCharsets.UTF_8).length;
+        int total = text.getBytes(StandardCharsets.UTF_8).length;
+        assertEquals("Second section!", corpusStore.readSection("corpus.txt", split, total - split));
+        assertEquals("Первая секция. ", corpusStore.readSection("corpus.txt", 0, split));
+        assertEquals("", corpusStore.readSection("corpus.txt", total, 0));
+
+        assertThrows(IOException.class, () -> corpusStore.readSection("corpus.txt", split, total));
+        assertThrows(IOException.class, () -> corpusStore.readSection("../corpus.txt", 0, 1));
+    }
+
+    @Test
+    void readsConcurrentlyWhileEvicting() throws Exception {
+        List<String> corpora = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            String text = ("corpus " + i + " ").repeat(20_000);
+            Files.writeString(store.resolve("corpus-" + i + ".txt"), text);
+            corpora.add(text);
+        }
+        // Fewer open files than corpora, so the threads keep closing each other's channels
+        corpusStore = corpusStore(2);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int thread = t;
+                readers.add(executor.submit(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        int corpus = (thread + i) % corpora.size();
+                        String text = corpora.get(corpus);
+                        int offset = (i * 7919) % (text.length() - 5000);
+                        int length = 1 + (i * 104729) % 5000;
+                        assertEquals(text.substring(offset, offset + length),
+                                corpusStore.readSection("corpus-" + corpus + ".txt", offset, length));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private CorpusStoreService corpusStore(int maxOpenFiles) {
+        CorpusStoreService corpusStore = new CorpusStoreService();
+        ReflectionTestUtils.setField(corpusStore, "storeDirectory", store.toString());
+        ReflectionTestUtils.setField(corpusStore, "maxOpenFiles", maxOpenFiles);
+        return corpusStore;
+    }
+}
@@ -0,0 +1,105 @@
+package ru.ifmo.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.ifmo.dto.TextTask;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TaskRetryServiceTest {
+
+    private static final int MAX_RETRIES = 2;
+
+    // Queues the broker nacks publishes to
+    private final Set<String> nacked = new HashSet<>();
+    // Queues the broker never confirms publishes to
+    private final Set<String> unconfirmed = new HashSet<>();
+    private final List<String> published = new ArrayList<>();
+
+    private TaskRetryService taskRetryService;
+
+    @BeforeEach
+    void setUp() {
+        RabbitTemplate rabbitTemplate = new RabbitTemplate() {
+            @Override
+            public void convertAndSend(String exchange, String routingKey, Object message,
+                                       MessagePostProcessor messagePostProcessor, CorrelationData correlationData) {
+                publish(routingKey, correlationData);
+            }
+
+            @Override
+            public void convertAndSend(String routingKey, Object message, CorrelationData correlationData) {
+                publish(routingKey, correlationData);
+            }
+        };
+        taskRetryService = new TaskRetryService(rabbitTemplate, null);
+        ReflectionTestUtils.setField(taskRetryService, "taskQueue", "workerQueue");
+        ReflectionTestUtils.setField(taskRetryService, "resultsQueue", "resultsQueue");
+        ReflectionTestUtils.setField(taskRetryService, "deadLetterQueue", "workerQueue.dlq");
+        ReflectionTestUtils.setField(taskRetryService, "maxRetries", MAX_RETRIES);
+        ReflectionTestUtils.setField(taskRetryService, "confirmTimeoutMs", 50L);
+    }
+
+    @Test
+    void schedulesAConfirmedRetry() {
+        assertDoesNotThrow(() -> taskRetryService.handleFailure(task(), 0, null, new RuntimeException("boom")));
+
+        assertEquals(List.of("workerQueue.retry.1"), published);
+    }
+
+    @Test
+    void throwsWhenTheRetryIsNacked() {
+        nacked.add("workerQueue.retry.2");
+
+        assertThrows(IllegalStateException.class,
+                () -> taskRetryService.handleFailure(task(), 1, 5, new RuntimeException("boom")));
+    }
+
+    @Test
+    void throwsWhenTheRetryIsNotConfirmedInTime() {
+        unconfirmed.add("workerQueue.retry.1");
+
+        assertThrows(IllegalStateException.class,
+                () -> taskRetryService.handleFailure(task(), 0, null, new RuntimeException("boom")));
+    }
+
+    @Test
+    void deadLettersTheTaskAndSendsAFailureResultOnceTheRetriesAreUsedUp() {
+        assertDoesNotThrow(() -> taskRetryService.handleFailure(task(), MAX_RETRIES, null, new RuntimeException("boom")));
+
+        assertEquals(List.of("workerQueue.dlq", "resultsQueue"), published);
+    }
+
+    @Test
+    void throwsWhenTheFailureResultIsNacked() {
+        nacked.add("resultsQueue");
+
+        assertThrows(IllegalStateException.class,
+                () -> taskRetryService.handleFailure(task(), MAX_RETRIES, null, new RuntimeException("boom")));
+    }
+
+    private void publish(String queue, CorrelationData correlationData) {
+        published.add(queue);
+        if (!unconfirmed.contains(queue)) {
+            correlationData.getFuture().complete(new CorrelationData.Confirm(!nacked.contains(queue), null));
+        }
+    }
+
+    private static TextTask task() {
+        TextTask task = new TextTask();
+        task.setTaskId("session-1a2b3c4d-task-1");
+        task.setText("Holmes wrote a letter.");
+        return task;
+    }
+}
@@ -0,0 +1,81 @@
+package ru.ifmo.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Builds the worker services with their default properties, for the tests and benchmarks that run
+ * without a Spring context.
+ */
+public final class TestServices {
+
+    private TestServices() {
+    }
+
+    public static WordCountService wordCountService() {
+        return new WordCountService();
+    }
+
+    public static SentimentAnalysisService sentimentAnalysisService() {
+        return sentimentAnalysisService("");
+    }
+
+    public static SentimentAnalysisService sentimentAnalysisService(String modelPath) {
+        SentimentAnalysisService service = new SentimentAnalysisService();
+        ReflectionTestUtils.setField(service, "modelPath", modelPath);
+        try {
+            service.init();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return service;
+    }
+
+    public static NameReplacementService nameReplacementService() {
+        NameReplacementService service = new NameReplacementService();
+        ReflectionTestUtils.setField(service, "gazetteerPath", "");
+        try {
+            service.init();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return service;
+    }
+
+    public static CorpusStoreService corpusStoreService(String storeDirectory) {
+        CorpusStoreService corpusStore = new CorpusStoreService();
+        ReflectionTestUtils.setField(corpusStore, "storeDirectory", storeDirectory);
+        ReflectionTestUtils.setField(corpusStore, "maxOpenFiles", 64);
+        return corpusStore;
+    }
+
+    /**
+     * The task pipeline with sequential stages and without splitting, shuffle, sentiment model or
+     * result cache.
+     */
+    public static TextProcessingService textProcessingService() {
+        return textProcessingService(corpusStoreService("corpora"), 0, 131072);
+    }
+
+    /**
+     * Like {@link #textProcessingService()}, but splits sections of at least {@code splitThreshold}
+     * chars on the common pool (0 = never).
+     */
+    public static TextProcessingService textProcessingService(CorpusStoreService corpusStore, int splitThreshold,
+                                                              int splitPartSize) {
+        Optional<ForkJoinPool> splitPool = splitThreshold > 0
+                ? Optional.of(ForkJoinPool.commonPool()) : Optional.empty();
+        TextProcessingService service = new TextProcessingService(wordCountService(), new TopWordsService(),
+                sentimentAnalysisService(), nameReplacementService(), new SentenceSortingService(), corpusStore,
+                new WordCountShuffleService(null), Optional.empty(), splitPool, new StageMetrics(0),
+                new ResultCacheService(null));
+        ReflectionTestUtils.setField(service, "parallelThreshold", 0);
+        ReflectionTestUtils.setField(service, "splitThreshold", splitThreshold);
+        ReflectionTestUtils.setField(service, "splitPartSize", splitPartSize);
+        return service;
+    }
+}
@@ -0,0 +1,121 @@
+package ru.ifmo.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.ifmo.dto.SectionUnit;
+import ru.ifmo.dto.TextProcessingResult;
+import ru.ifmo.dto.TextTask;
+import ru.ifmo.text.SentenceIndex;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TextProcessingServiceTest {
+
+    private static final int PART_SIZE = 300;
+
+    private static final String[] WORDS = {
+            "the", "of", "and", "letter", "street", "said", "upon", "good", "terrible", "happy", "bad",
+            "Holmes", "Watson", "Baker", "Street", "I", "Mr.", "письмо", "сказал", "Шерлок", "Ватсон", "3.14"
+    };
+    private static final String[] ENDS = {"", "", "", "", ",", ".", ".", "!", "?"};
+    private static final String[] GAPS = {" ", " ", " ", " ", "  ", "\n", "\n\n", " \n\n  "};
+
+    @TempDir
+    Path store;
+
+    private CorpusStoreService corpusStore;
+    private TextProcessingService single;
+    private TextProcessingService split;
+
+    @BeforeEach
+    void setUp() {
+        corpusStore = TestServices.corpusStoreService(store.toString());
+        single = TestServices.textProcessingService(corpusStore, 0, PART_SIZE);
+        split = TestServices.textProcessingService(corpusStore, 1, PART_SIZE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        corpusStore.close();
+    }
+
+    @Test
+    void mergesThePartsOfInlineSectionsIntoTheSinglePassResult() throws IOException {
+        Random random = new Random(25);
+        for (int i = 0; i < 200; i++) {
+            String text = text(random, 2000 + random.nextInt(4000));
+            TextTask task = task("task-" + i, random);
+            task.setText(text);
+
+            assertSameResult(task, text);
+        }
+    }
+
+    @Test
+    void mergesThePartsOfCorpusSectionsIntoTheSinglePassResult() throws IOException {
+        ReflectionTestUtils.setField(single, "sentenceOffsets", true);
+        ReflectionTestUtils.setField(split, "sentenceOffsets", true);
+        Random random = new Random(52);
+        for (int i = 0; i < 100; i++) {
+            String text = text(random, 2000 + random.nextInt(4000));
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            Files.write(store.resolve("corpus-" + i + ".txt"), bytes);
+            TextTask task = task("task-" + i, random);
+            task.setCorpusRef("corpus-" + i + ".txt");
+            task.setLength(bytes.length);
+            task.setUnit(SectionUnit.values()[random.nextInt(SectionUnit.values().length)]);
+
+            assertSameResult(task, text);
+        }
+    }
+
+    private void assertSameResult(TextTask task, String text) throws IOException {
+        assertTrue(SentenceIndex.partStarts(text, PART_SIZE).length > 1, "the text is split");
+
+        TextProcessingResult expected = single.processTask(task);
+        TextProcessingResult actual = split.processTask(task);
+
+        assertEquals(expected.getWordCount(), actual.getWordCount());
+        assertEquals(expected.getTopWords(), actual.getTopWords());
+        assertEquals(expected.getSentiment(), actual.getSentiment());
+        assertEquals(expected.getSentimentScore(), actual.getSentimentScore());
+        assertEquals(expected.getModifiedText(), actual.getModifiedText());
+        assertEquals(expected.getSortedSentences(), actual.getSortedSentences());
+        assertArrayEquals(expected.getSortedSentenceOffsets(), actual.getSortedSentenceOffsets());
+        assertEquals(expected.getCorpusRef(), actual.getCorpusRef());
+        assertEquals(expected.getLength(), actual.getLength());
+    }
+
+    private static TextTask task(String taskId, Random random) {
+        TextTask task = new TextTask();
+        task.setTaskId(taskId);
+        task.setTopN(1 + random.nextInt(10));
+        task.setNameReplacement(random.nextBoolean() ? "NAME" : "[имя]");
+        return task;
+    }
+
+    private static String text(Random random, int chars) {
+        StringBuilder text = new StringBuilder(chars + 32);
+        boolean sentenceStart = true;
+        while (text.length() < chars) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            text.append(sentenceStart ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+            String end = ENDS[random.nextInt(ENDS.length)];
+            text.append(end);
+            sentenceStart = end.matches("[.!?]");
+            text.append(GAPS[random.nextInt(GAPS.length)]);
+        }
+        return text.toString();
+    }
+}
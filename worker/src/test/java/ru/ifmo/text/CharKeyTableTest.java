@@ -0,0 +1,69 @@
+package ru.ifmo.text;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CharKeyTableTest {
+
+    @Test
+    void assignsIdsLikeAHashMap() {
+        Random random = new Random(3);
+        CharKeyTable table = new CharKeyTable(4);
+        for (int round = 0; round < 3; round++) {
+            // The table is reused after clear(), as the word tables of a worker thread are
+            table.clear();
+            Map<String, Integer> ids = new HashMap<>();
+            for (int i = 0; i < 20_000; i++) {
+                String key = randomKey(random);
+                char[] chars = ("#" + key + "#").toCharArray();
+                if (random.nextBoolean()) {
+                    assertEquals(ids.getOrDefault(key, -1).intValue(), table.find(chars, 1, key.length()), key);
+                } else {
+                    int id = table.add(chars, 1, key.length());
+                    assertEquals(ids.computeIfAbsent(key, k -> ids.size()).intValue(), id, key);
+                }
+            }
+
+            assertEquals(ids.size(), table.size());
+            ids.forEach((key, id) -> assertEquals(key, table.key(id)));
+            List<String> keys = new ArrayList<>(ids.keySet());
+            for (int i = 0; i < 1000; i++) {
+                String key = keys.get(random.nextInt(keys.size()));
+                String otherKey = keys.get(random.nextInt(keys.size()));
+                assertEquals(Integer.signum(key.compareTo(otherKey)),
+                        Integer.signum(table.compare(ids.get(key), ids.get(otherKey))), key + " vs " + otherKey);
+            }
+        }
+    }
+
+    @Test
+    void addsKeysOfAnotherTable() {
+        CharKeyTable other = new CharKeyTable(16);
+        other.add("river");
+        int id = other.add("москва");
+
+        CharKeyTable table = new CharKeyTable(16);
+        table.add("москва");
+        assertEquals(0, table.add(other, id));
+        assertEquals(1, table.add(other, 0));
+        assertEquals("river", table.key(1));
+    }
+
+    // Short keys over a small alphabet, so many collide, share prefixes or repeat
+    private static String randomKey(Random random) {
+        String alphabet = "abcяж";
+        StringBuilder key = new StringBuilder();
+        int length = random.nextInt(7);
+        for (int i = 0; i < length; i++) {
+            key.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return key.toString();
+    }
+}
@@ -0,0 +1,142 @@
+package ru.ifmo.text;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NameRecognizerTest {
+
+    // The three sweeps NameReplacementService ran before the recognizer
+    private static final Pattern NAME_PATTERN = Pattern.compile(
+            "(?<!^)(?<!\\. )(?<!\\! )(?<!\\? )\\b[A-ZА-Я][a-zа-я]{1,}(?:\\s+[A-ZА-Я][a-zа-я]{1,})*\\b"
+    );
+
+    private static final Pattern CONTEXT_NAME_PATTERN = Pattern.compile(
+            "(?i)(?:мистер|мисс|миссис|господин|госпожа|mr|ms|mrs|dr|prof)\\s+([A-ZА-Я][a-zа-я]+" +
+                    "(?:\\s+[A-ZА-Я][a-zа-я]+)*)"
+    );
+
+    private static final Pattern QUOTED_NAME_PATTERN = Pattern.compile(
+            "\"([A-ZА-Я][a-zа-я]+(?:\\s+[A-ZА-Я][a-zа-я]+)*)\"(?=\\s+" +
+                    "(?:сказал|говорит|ответил|спросил|said|replied|asked))"
+    );
+
+    private static final Set<String> EXCLUDED_WORDS = Set.of(
+            "january", "may", "monday", "май", "среда", "the", "this", "это", "как", "god", "бог", "america", "европа"
+    );
+
+    private static final List<String> GAZETTEER = List.of("Anna", "Karenina", "Sherlock", "holmes", "Лев", "Толстой");
+
+    private static final String[] PIECES = {
+            "Anna", "Karenina", "Sherlock", "Holmes", "Watson", "Лев", "Толстой", "Москва", "Ivanovich", "X",
+            "May", "Monday", "The", "This", "Это", "Бог", "America", "Европа", "Abcdefghijklmnopqrstu",
+            "Mr", "MR", "mr", "Mrs", "Dr", "dr", "Prof", "ms", "мистер", "Мистер", "госпожа", "мисс",
+            "said", "replied", "сказал", "спросил", "saying", "the", "river", "a", "и", "в", "dog",
+            "\"", "\"", ".", "!", "?", ",", "-", "_", "1", "x1", "'s", "é", "\u0301", "naïve", "MacDonald",
+            "ANNA", "aNNA", "Ёлка"
+    };
+
+    private static final String[] GAPS = {" ", " ", " ", " ", "", "", "  ", "\t", "\n", ". ", "! ", "\" "};
+
+    private static final String[] REPLACEMENTS = {"[NAME]", "***", "<имя>", "_", "1"};
+
+    @Test
+    void replacesNamesLikeTheRegexSweeps() {
+        Random random = new Random(13);
+        NameRecognizer recognizer = new NameRecognizer(List.of());
+        NameRecognizer withGazetteer = new NameRecognizer(GAZETTEER);
+        for (int i = 0; i < 100_000; i++) {
+            String text = randomText(random, 1 + random.nextInt(12));
+            String replacement = REPLACEMENTS[random.nextInt(REPLACEMENTS.length)];
+            assertEquals(regexSweeps(text, replacement, List.of()), recognizer.replaceNames(text, replacement),
+                    () -> "names in " + escape(text));
+            assertEquals(regexSweeps(text, replacement, GAZETTEER), withGazetteer.replaceNames(text, replacement),
+                    () -> "gazetteer names in " + escape(text));
+        }
+    }
+
+    @Test
+    void replacesTheRegressionCorpus() {
+        NameRecognizer recognizer = new NameRecognizer(GAZETTEER);
+        String[] corpus = {
+                "Yesterday Mr Holmes met Watson in London.",
+                "He said \"Anna\" replied and left. Then Anna Karenina smiled.",
+                "On Monday the doctor, Dr Watson, wrote to Мистер Иванов.",
+                "Когда Лев Толстой приехал в Москву, госпожа Анна сказала: \"Петр\" спросил.",
+                "MR SMITH and mr Jones. May came, and so did May.",
+                "Start. Sherlock Holmes! Sherlock Holmes? x_Anna 1Anna Anna1 Anna_ naïve Anna",
+                "The river flows past Abcdefghijklmnopqrstu and Abcdefghijklmnopqrst.",
+                "\"Sherlock Holmes\" said nothing, while \"mr Watson\" asked."
+        };
+        for (String text : corpus) {
+            for (String replacement : REPLACEMENTS) {
+                assertEquals(regexSweeps(text, replacement, GAZETTEER), recognizer.replaceNames(text, replacement),
+                        () -> "names in " + text);
+            }
+        }
+    }
+
+    @Test
+    void supportsReplacementsThatCannotBeMatchedAgain() {
+        assertTrue(NameRecognizer.supports("[NAME]"));
+        assertTrue(NameRecognizer.supports("<имя>"));
+        assertFalse(NameRecognizer.supports(""));
+        assertFalse(NameRecognizer.supports("Name"));
+        assertFalse(NameRecognizer.supports("NAME"));
+        assertFalse(NameRecognizer.supports("$1"));
+        assertFalse(NameRecognizer.supports("\"x\""));
+    }
+
+    private static String regexSweeps(String text, String replacement, List<String> gazetteer) {
+        String result = CONTEXT_NAME_PATTERN.matcher(text)
+                .replaceAll(matchResult -> Matcher.quoteReplacement(
+                        matchResult.group().substring(0, matchResult.start(1) - matchResult.start()) + replacement));
+        result = QUOTED_NAME_PATTERN.matcher(result)
+                .replaceAll(Matcher.quoteReplacement("\"" + replacement + "\""));
+
+        Matcher nameMatcher = NAME_PATTERN.matcher(result);
+        StringBuilder sb = new StringBuilder();
+        while (nameMatcher.find()) {
+            String match = nameMatcher.group();
+            boolean name = isPotentialName(match) || isKnownName(match, gazetteer);
+            nameMatcher.appendReplacement(sb, Matcher.quoteReplacement(name ? replacement : match));
+        }
+        nameMatcher.appendTail(sb);
+        return sb.toString();
+    }
+
+    // The full exclusion list lives in NameRecognizer; these are the words the random texts use
+    private static boolean isPotentialName(String word) {
+        return !EXCLUDED_WORDS.contains(word.toLowerCase())
+                && word.length() >= 2 && word.length() <= 20 && word.matches("^[A-ZА-Я][a-zа-я]+$");
+    }
+
+    private static boolean isKnownName(String words, List<String> gazetteer) {
+        String[] parts = words.split("\\s+");
+        return parts.length > 1 && Arrays.stream(parts)
+                .allMatch(part -> gazetteer.stream().anyMatch(name -> name.equalsIgnoreCase(part)));
+    }
+
+    private static String randomText(Random random, int pieces) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < pieces; i++) {
+            text.append(PIECES[random.nextInt(PIECES.length)]).append(GAPS[random.nextInt(GAPS.length)]);
+        }
+        return text.toString();
+    }
+
+    private static String escape(String text) {
+        StringBuilder escaped = new StringBuilder();
+        text.chars().forEach(c -> escaped.append(c < 0x20 || c == 0x7F ? String.format("\\u%04X", c) : (char) c));
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,68 @@
+package ru.ifmo.text;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import ru.ifmo.dto.SectionUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class SectionTextTest {
+
+    private static final String[] WORDS = {"the", "Anna", "river", "Москва", "naïve", "x", "\u0001", "end"};
+    private static final String[] GAPS = {" ", " ", " ", "  ", "\t", "\n", "\r\n", "\n \n", "\n\n\n", " \u0001 "};
+    private static final String[] TERMINATORS = {".", "!", "?", "", "", ""};
+
+    @Test
+    void joinsUnitsLikeTheProducerSplit() {
+        Random random = new Random(7);
+        for (int i = 0; i < 5000; i++) {
+            String text = randomText(random, random.nextInt(40));
+            assertEquals(join(text.split("\\n\\s*\\n"), "\n\n", true), SectionText.inline(text, SectionUnit.PARAGRAPH),
+                    () -> "paragraphs of " + escape(text));
+            assertEquals(join(text.split("(?<=[.!?])\\s+"), " ", true), SectionText.inline(text, SectionUnit.SENTENCE),
+                    () -> "sentences of " + escape(text));
+            assertEquals(join(text.split("\\s+"), " ", false), SectionText.inline(text, SectionUnit.WORD),
+                    () -> "words of " + escape(text));
+        }
+    }
+
+    @Test
+    void keepsTextThatIsAlreadyInline() {
+        String text = "First sentence. Second one!\n\nNext paragraph.";
+        assertSame(text, SectionText.inline(text, SectionUnit.PARAGRAPH));
+        assertSame(text, SectionText.inline(text, null));
+        assertEquals("First sentence. Second one! Next paragraph.", SectionText.inline(text, SectionUnit.SENTENCE));
+    }
+
+    // The in-memory split of the producer: blank units dropped, the others trimmed unless they are words
+    private static String join(String[] units, String separator, boolean trim) {
+        List<String> kept = new ArrayList<>();
+        for (String unit : units) {
+            if (!unit.trim().isEmpty()) {
+                kept.add(trim ? unit.trim() : unit);
+            }
+        }
+        return String.join(separator, kept);
+    }
+
+    private static String randomText(Random random, int words) {
+        StringBuilder text = new StringBuilder();
+        if (random.nextBoolean()) {
+            text.append(GAPS[random.nextInt(GAPS.length)]);
+        }
+        for (int i = 0; i < words; i++) {
+            text.append(WORDS[random.nextInt(WORDS.length)])
+                    .append(TERMINATORS[random.nextInt(TERMINATORS.length)])
+                    .append(GAPS[random.nextInt(GAPS.length)]);
+        }
+        return text.toString();
+    }
+
+    private static String escape(String text) {
+        return text.replace("\n", "\\n").replace("\r", "\\r").replace("\t", "\\t").replace("\u0001", "\\u0001");
+    }
+}
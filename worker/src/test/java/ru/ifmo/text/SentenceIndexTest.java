@@ -0,0 +1,126 @@
+package ru.ifmo.text;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SentenceIndexTest {
+
+    private static final Pattern SENTENCE_PATTERN = Pattern.compile("(?<=[.!?])\\s+(?=[A-ZА-Я])");
+
+    private static final String[] PIECES = {"the", "River", "Москва", "ёлка", "Ёлка", "I", "Mr.", "e.g.", "3.14", "x"};
+    private static final String[] ENDS = {"", "", "", ".", "!", "?", "?!", "..."};
+    private static final String[] GAPS = {" ", " ", " ", "  ", "\t", "\n", "\r\n", "\n\n", "\f", "\u000B", "\u0001", " \u0001 "};
+
+    @Test
+    void sortsTheCorpusLikeTheRegexSplit() throws IOException {
+        for (String text : corpus()) {
+            assertSentences(text);
+        }
+    }
+
+    @Test
+    void sortsRandomTextsLikeTheRegexSplit() {
+        Random random = new Random(18);
+        for (int i = 0; i < 20_000; i++) {
+            StringBuilder text = new StringBuilder();
+            int pieces = random.nextInt(20);
+            for (int p = 0; p < pieces; p++) {
+                text.append(PIECES[random.nextInt(PIECES.length)])
+                        .append(ENDS[random.nextInt(ENDS.length)])
+                        .append(GAPS[random.nextInt(GAPS.length)]);
+            }
+            assertSentences(text.toString());
+        }
+    }
+
+    private static void assertSentences(String text) {
+        SentenceIndex index = new SentenceIndex();
+        index.index(text);
+        List<String> expected = regexSentences(text);
+        assertEquals(expected.size(), index.size(), () -> "sentences of " + escape(text));
+        for (int i = 0; i < index.size(); i++) {
+            assertEquals(expected.get(i), index.sentence(i), () -> "sentence of " + escape(text));
+            assertEquals(expected.get(i).length(), index.normalizedLength(i));
+        }
+
+        List<String> ascending = expected.stream().sorted(Comparator.comparingInt(String::length)).toList();
+        List<String> descending = expected.stream().sorted(Comparator.comparingInt(String::length).reversed()).toList();
+        assertEquals(ascending, index.sortedSentences(false), () -> "sorted sentences of " + escape(text));
+        assertEquals(descending, index.sortedSentences(true), () -> "sorted sentences of " + escape(text));
+
+        // The offsets the aggregator resolves give the same sentences
+        int[] pairs = index.sortedOffsets(false);
+        List<String> resolved = new ArrayList<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            resolved.add(SentenceIndex.normalize(text, pairs[i], pairs[i + 1]));
+        }
+        assertEquals(ascending, resolved, () -> "sentences at the offsets of " + escape(text));
+    }
+
+    // SentenceSortingService before the index
+    private static List<String> regexSentences(String text) {
+        List<String> sentences = new ArrayList<>();
+        String cleanText = text.trim().replaceAll("\\s+", " ");
+        if (cleanText.isEmpty()) {
+            return sentences;
+        }
+        for (String sentence : SENTENCE_PATTERN.split(cleanText)) {
+            String trimmed = sentence.trim();
+            if (!trimmed.isEmpty()) {
+                sentences.add(trimmed.matches(".*[.!?]$") ? trimmed : trimmed + ".");
+            }
+        }
+        return sentences;
+    }
+
+    /**
+     * The shared sentence corpus, one text per line with {@code \n}, {@code \r}, {@code \t},
+     * {@code \f} and {@code \}{@code uXXXX} escapes. The aggregator tests use the same file.
+     */
+    private static List<String> corpus() throws IOException {
+        try (InputStream in = SentenceIndexTest.class.getResourceAsStream("/sentences.txt")) {
+            String content = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            return content.lines().map(SentenceIndexTest::unescape).toList();
+        }
+    }
+
+    private static String unescape(String line) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c != '\\' || i + 1 == line.length()) {
+                text.append(c);
+                continue;
+            }
+            char escape = line.charAt(++i);
+            switch (escape) {
+                case 'n' -> text.append('\n');
+                case 'r' -> text.append('\r');
+                case 't' -> text.append('\t');
+                case 'f' -> text.append('\f');
+                case 'u' -> {
+                    text.append((char) Integer.parseInt(line.substring(i + 1, i + 5), 16));
+                    i += 4;
+                }
+                default -> text.append(escape);
+            }
+        }
+        return text.toString();
+    }
+
+    private static String escape(String text) {
+        StringBuilder escaped = new StringBuilder();
+        text.chars().forEach(c -> escaped.append(c < 0x20 || c == 0x7F ? String.format("\\u%04X", c) : (char) c));
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,91 @@
+package ru.ifmo.text;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TokenizerTest {
+
+    // Besides plain words: letters outside the tables, letters that lowercase into them ('İ', the Kelvin sign),
+    // line terminators '.' does not match, and separators \s does not know
+    private static final String[] PIECES = {
+            "the", "Holmes", "DOOR", "письмо", "Москва", "ёлка", "don't", "1895", "x", "naïve", "straße",
+            "İstanbul", "\u212Aelvin", "a-b", "...", ",", "\u0001", "\u0085", "\u2028", "\u2029", "\u00A0"
+    };
+    private static final String[] GAPS = {" ", " ", " ", "  ", "\t", "\n", "\r\n", "\u000B", "\f", ""};
+
+    @Test
+    void matchesTheRegexPipelines() {
+        Random random = new Random(11);
+        TokenizedText tokens = new TokenizedText();
+        for (int i = 0; i < 20_000; i++) {
+            String text = randomText(random, random.nextInt(30));
+            Tokenizer.tokenize(text, tokens);
+
+            assertEquals(regexWordCount(text), tokens.wordCount(), () -> "word count of " + escape(text));
+            List<String> words = new ArrayList<>();
+            for (int w = 0; w < tokens.size(); w++) {
+                words.add(tokens.word(w));
+            }
+            assertEquals(regexWords(text), words, () -> "words of " + escape(text));
+        }
+    }
+
+    @Test
+    void handlesEmptyText() {
+        assertEquals(0, Tokenizer.tokenize(null).size());
+        assertEquals(0, Tokenizer.tokenize("").wordCount());
+        assertEquals(0, Tokenizer.tokenize(" \t\n").wordCount());
+    }
+
+    @Test
+    void reusesTheBuffers() {
+        TokenizedText tokens = new TokenizedText();
+        Tokenizer.tokenize("A much longer first section, with many words in it", tokens);
+        Tokenizer.tokenize("Short one", tokens);
+        assertEquals(2, tokens.size());
+        assertEquals(2, tokens.wordCount());
+        assertEquals("short", tokens.word(0));
+        assertEquals("one", tokens.word(1));
+    }
+
+    // WordCountService before the tokenizer
+    private static long regexWordCount(String text) {
+        if (text.trim().isEmpty()) {
+            return 0;
+        }
+        return Arrays.stream(text.trim().split("\\s+"))
+                .filter(word -> !word.trim().isEmpty())
+                .filter(word -> word.matches(".*[a-zA-Zа-яА-Я].*"))
+                .count();
+    }
+
+    // TopWordsService and SentimentAnalysisService before the tokenizer
+    private static List<String> regexWords(String text) {
+        return Arrays.stream(text.toLowerCase()
+                        .replaceAll("[^a-zA-Zа-яА-Я\\s]", " ")
+                        .trim()
+                        .split("\\s+"))
+                .filter(word -> !word.isEmpty())
+                .toList();
+    }
+
+    private static String randomText(Random random, int pieces) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < pieces; i++) {
+            text.append(PIECES[random.nextInt(PIECES.length)]).append(GAPS[random.nextInt(GAPS.length)]);
+        }
+        return text.toString();
+    }
+
+    private static String escape(String text) {
+        StringBuilder escaped = new StringBuilder();
+        text.chars().forEach(c -> escaped.append(c < 0x20 || c > 0x7E ? String.format("\\u%04X", c) : (char) c));
+        return escaped.toString();
+    }
+}
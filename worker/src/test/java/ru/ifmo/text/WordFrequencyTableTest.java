@@ -0,0 +1,86 @@
+package ru.ifmo.text;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WordFrequencyTableTest {
+
+    private static final Comparator<Map.Entry<String, Integer>> RANK =
+            Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey());
+
+    @Test
+    void countsAndSelectsLikeAHashMap() {
+        Random random = new Random(5);
+        WordFrequencyTable table = new WordFrequencyTable();
+        for (int round = 0; round < 200; round++) {
+            table.clear();
+            Map<String, Integer> counts = new HashMap<>();
+            int words = random.nextInt(3000);
+            for (int i = 0; i < words; i++) {
+                String word = randomWord(random);
+                table.increment(word.toCharArray(), 0, word.length());
+                counts.merge(word, 1, Integer::sum);
+            }
+
+            assertEquals(counts, toMap(table));
+            int n = random.nextInt(40);
+            assertEquals(expectedTop(counts, n), top(table, n), "top " + n);
+        }
+    }
+
+    @Test
+    void mergesTablesOfParts() {
+        Random random = new Random(9);
+        WordFrequencyTable whole = new WordFrequencyTable();
+        WordFrequencyTable merged = new WordFrequencyTable();
+        for (int part = 0; part < 5; part++) {
+            WordFrequencyTable partTable = new WordFrequencyTable();
+            for (int i = 0; i < 2000; i++) {
+                char[] word = randomWord(random).toCharArray();
+                partTable.increment(word, 0, word.length);
+                whole.increment(word, 0, word.length);
+            }
+            merged.addAll(partTable);
+        }
+
+        assertEquals(toMap(whole), toMap(merged));
+        assertEquals(top(whole, 25), top(merged, 25));
+    }
+
+    private static List<String> expectedTop(Map<String, Integer> counts, int n) {
+        return counts.entrySet().stream()
+                .sorted(RANK)
+                .limit(n)
+                .map(entry -> entry.getKey() + "=" + entry.getValue())
+                .toList();
+    }
+
+    private static List<String> top(WordFrequencyTable table, int n) {
+        List<String> top = new ArrayList<>();
+        Arrays.stream(table.top(n)).forEach(id -> top.add(table.word(id) + "=" + table.count(id)));
+        return top;
+    }
+
+    private static Map<String, Integer> toMap(WordFrequencyTable table) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (int id = 0; id < table.size(); id++) {
+            counts.put(table.word(id), table.count(id));
+        }
+        return counts;
+    }
+
+    // A skewed vocabulary, so counts range from many ties to a few frequent words
+    private static String randomWord(Random random) {
+        int rank = (int) Math.pow(random.nextInt(1 << 12), 1.5) / 64;
+        return (rank % 2 == 0 ? "w" : "с") + Integer.toString(rank, 36);
+    }
+}